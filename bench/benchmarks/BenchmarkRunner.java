@@ -0,0 +1,51 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks - runs JMH with the given command line options
+ * (e.g. a regular expression of the benchmarks to run) and always adds the GC
+ * profiler, so the results report the allocation rate (gc.alloc.rate.norm, in
+ * bytes per operation) next to the throughput.
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class BenchmarkRunner {
+	/**
+	 * Private constructor to hide the public one
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Run the benchmarks
+	 * 
+	 * @param args JMH command line options
+	 * @throws RunnerException            if the benchmarks failed
+	 * @throws CommandLineOptionException if the options are illegal
+	 * @throws IOException                if the help can't be printed
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp()) {
+			options.showHelp();
+			return;
+		}
+		Runner runner = new Runner(new OptionsBuilder() //
+				.parent(options) //
+				.addProfiler(GCProfiler.class) //
+				.build());
+		if (options.shouldList())
+			runner.list();
+		else
+			runner.run();
+	}
+}
@@ -0,0 +1,125 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import renderer.*;
+import scene.MeshLoader;
+import scene.Scene;
+import unittest.special.TeapotTest;
+
+/**
+ * Scenes shared by the render benchmarks and the headless render entry point.
+ * The cameras are returned with their ray tracer and without an image writer.
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class BenchmarkScenes {
+	/**
+	 * Private constructor to hide the public one
+	 */
+	private BenchmarkScenes() {
+	}
+
+	/**
+	 * Camera looking at the teapot model
+	 * 
+	 * @return the camera
+	 */
+	public static Camera teapot() {
+		Scene scene = new Scene("Teapot");
+		scene.geometries.add(TeapotTest.teapotModel());
+		scene.geometries.buildBVH();
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKQ(0.000001));
+		return new Camera(new Point(0, 0, -1000), new Vector(0, 0, 1), new Vector(0, 1, 0)) //
+				.setViewPlaneDistance(1000).setViewPlaneSize(200, 200) //
+				.setRayTracer(new RayTracerBasic(scene));
+	}
+
+	/**
+	 * Camera looking at two spheres between two mirrors (the scene of
+	 * {@code ReflectionRefractionTests.twoSpheresOnMirrors})
+	 * 
+	 * @return the camera
+	 */
+	public static Camera reflectionRefraction() {
+		Scene scene = new Scene("Reflection and refraction");
+		scene.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+		scene.geometries.add( //
+				new Sphere(new Point(-950, -900, -1000), 400d).setEmission(new Color(0, 0, 100)) //
+						.setMaterial(new Material().setKD(0.25).setKS(0.25).setNShininess(20).setKT(0.5)),
+				new Sphere(new Point(-950, -900, -1000), 200d).setEmission(new Color(100, 20, 20)) //
+						.setMaterial(new Material().setKD(0.25).setKS(0.25).setNShininess(20)),
+				new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500), new Point(670, 670, 3000)) //
+						.setEmission(new Color(20, 20, 20)) //
+						.setMaterial(new Material().setKR(1)),
+				new Triangle(new Point(1500, -1500, -1500), new Point(-1500, 1500, -1500),
+						new Point(-1500, -1500, -2000)) //
+						.setEmission(new Color(20, 20, 20)) //
+						.setMaterial(new Material().setKR(0.5)));
+		scene.lights.add(new SpotLight(new Color(1020, 400, 400), new Point(-750, -750, -150), new Vector(-1, -1, -4)) //
+				.setKL(0.00001).setKQ(0.000005));
+		return new Camera(new Point(0, 0, 10000), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(2500, 2500).setViewPlaneDistance(10000) //
+				.setRayTracer(new RayTracerBasic(scene));
+	}
+
+	/**
+	 * Camera looking at glass spheres between two parallel mirrors - every glass
+	 * point both reflects and refracts, so the tree of the secondary rays is as
+	 * deep and as wide as the ray tracer allows
+	 * 
+	 * @param branching the branching of the secondary rays
+	 * @return the camera
+	 */
+	public static Camera glass(RayTracerBasic.BRANCHING_TYPE branching) {
+		Scene scene = new Scene("Glass between mirrors");
+		scene.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+		Material glass = new Material().setKD(0.1).setKS(0.3).setNShininess(50).setKT(0.6).setKR(0.3);
+		scene.geometries.add( //
+				new Sphere(new Point(-120, 0, -300), 80d).setEmission(new Color(0, 0, 60)).setMaterial(glass),
+				new Sphere(new Point(0, 40, -500), 100d).setEmission(new Color(0, 60, 0)).setMaterial(glass),
+				new Sphere(new Point(120, -20, -250), 60d).setEmission(new Color(60, 0, 0)).setMaterial(glass),
+				new Plane(new Point(-300, 0, 0), new Vector(1, 0, 0)).setEmission(new Color(10, 10, 10)) //
+						.setMaterial(new Material().setKD(0.1).setKR(0.85)),
+				new Plane(new Point(300, 0, 0), new Vector(-1, 0, 0)).setEmission(new Color(10, 10, 10)) //
+						.setMaterial(new Material().setKD(0.1).setKR(0.85)),
+				new Plane(new Point(0, -150, 0), new Vector(0, 1, 0)).setEmission(new Color(40, 40, 40)) //
+						.setMaterial(new Material().setKD(0.6).setKS(0.2).setNShininess(10)));
+		scene.geometries.buildBVH();
+		scene.lights.add(new PointLight(new Color(800, 700, 600), new Point(0, 300, 0)).setKL(0.001));
+		return new Camera(new Point(0, 0, 400), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(200, 200).setViewPlaneDistance(200) //
+				.setRayTracer(new RayTracerBasic(scene).setBranching(branching));
+	}
+
+	/**
+	 * Camera looking at a model loaded from an OBJ or a PLY file, from the -z side
+	 * of the model with a light next to the camera
+	 * 
+	 * @param path the model file
+	 * @return the camera
+	 * @throws IOException if the model can't be loaded
+	 */
+	public static Camera model(Path path) throws IOException {
+		Scene scene = new Scene(path.getFileName().toString());
+		TriangleMesh mesh = MeshLoader.load(path);
+		mesh.setEmission(new Color(200, 0, 0)).setMaterial(new Material().setKD(0.5).setKS(0.5).setNShininess(60));
+		scene.geometries.add(mesh);
+		BoundingBox box = mesh.getBoundingBox();
+		double size = Math.max(box.getMax(0) - box.getMin(0), box.getMax(1) - box.getMin(1));
+		Point center = new Point(box.getCenter(0), box.getCenter(1), box.getCenter(2));
+		// the model fills most of the view plane from a distance of twice its size
+		Point position = center.add(new Vector(0, 0, box.getMin(2) - box.getCenter(2) - 2 * size));
+		double distance = center.distance(position);
+		scene.lights.add(new PointLight(new Color(500, 500, 500), position.add(new Vector(size, size, 0))) //
+				.setKQ(1 / (distance * distance)));
+		return new Camera(position, new Vector(0, 0, 1), new Vector(0, 1, 0)) //
+				.setViewPlaneDistance(distance).setViewPlaneSize(size * 1.2, size * 1.2) //
+				.setRayTracer(new RayTracerBasic(scene));
+	}
+}
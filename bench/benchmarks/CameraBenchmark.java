@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import primitives.*;
+import renderer.Camera;
+
+/**
+ * Cost of constructing the primary rays of the camera
+ * 
+ * @author elana
+ * @author elish
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CameraBenchmark {
+	private static final int SIZE = 800;
+
+	private Camera camera;
+	private int pixel = 0;
+
+	/**
+	 * Build the camera
+	 */
+	@Setup
+	public void setup() {
+		camera = new Camera(new Point(0, 0, -1000), new Vector(0, 0, 1), new Vector(0, 1, 0)) //
+				.setViewPlaneDistance(1000).setViewPlaneSize(200, 200);
+	}
+
+	/**
+	 * Construct the ray through the next pixel of an 800x800 image
+	 * 
+	 * @return the ray
+	 */
+	@Benchmark
+	public Ray constructRayThroughPixel() {
+		pixel = (pixel + 1) % (SIZE * SIZE);
+		return camera.constructRayThroughPixel(SIZE, SIZE, pixel % SIZE, pixel / SIZE);
+	}
+}
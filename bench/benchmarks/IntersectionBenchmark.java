@@ -0,0 +1,140 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+import unittest.special.TeapotTest;
+
+/**
+ * Throughput of the ray intersection of the different geometries. Every
+ * invocation intersects the next ray of a fixed set of rays from the camera
+ * towards the model (about half of them hit each geometry).
+ * 
+ * @author elana
+ * @author elish
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntersectionBenchmark {
+	private static final int RAYS = 1024;
+
+	private Ray[] rays;
+	private int next = 0;
+
+	private Sphere sphere;
+	private Plane plane;
+	private Triangle triangle;
+	private Geometries teapot;
+	private Geometries teapotBVH;
+	private TriangleMesh teapotMesh;
+
+	/**
+	 * Build the geometries and the rays
+	 */
+	@Setup
+	public void setup() {
+		sphere = new Sphere(new Point(0, 0, 0), 40);
+		plane = new Plane(new Point(0, 0, 0), new Vector(0, 1, -1));
+		triangle = new Triangle(new Point(-50, -50, 0), new Point(50, -50, 0), new Point(0, 50, 0));
+		teapot = TeapotTest.teapotModel();
+		teapotBVH = TeapotTest.teapotModel().buildBVH();
+		teapotMesh = TeapotTest.teapotMesh();
+
+		Random random = new Random(42);
+		Point origin = new Point(0, 0, -1000);
+		rays = new Ray[RAYS];
+		for (int i = 0; i < RAYS; ++i) {
+			Point target = new Point(random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60, 0);
+			rays[i] = new Ray(origin, target.subtract(origin));
+		}
+	}
+
+	/**
+	 * Get the next ray of the set
+	 * 
+	 * @return the ray
+	 */
+	private Ray nextRay() {
+		next = (next + 1) & (RAYS - 1);
+		return rays[next];
+	}
+
+	/**
+	 * Sphere - all the intersections
+	 * 
+	 * @return the intersections
+	 */
+	@Benchmark
+	public Object sphere() {
+		return sphere.findGeoIntersections(nextRay());
+	}
+
+	/**
+	 * Plane - all the intersections
+	 * 
+	 * @return the intersections
+	 */
+	@Benchmark
+	public Object plane() {
+		return plane.findGeoIntersections(nextRay());
+	}
+
+	/**
+	 * Triangle - all the intersections
+	 * 
+	 * @return the intersections
+	 */
+	@Benchmark
+	public Object triangle() {
+		return triangle.findGeoIntersections(nextRay());
+	}
+
+	/**
+	 * Teapot model as a flat list of triangles - all the intersections
+	 * 
+	 * @return the intersections
+	 */
+	@Benchmark
+	public Object geometriesFlat() {
+		return teapot.findGeoIntersections(nextRay());
+	}
+
+	/**
+	 * Teapot model with a BVH - all the intersections
+	 * 
+	 * @return the intersections
+	 */
+	@Benchmark
+	public Object geometriesBVH() {
+		return teapotBVH.findGeoIntersections(nextRay());
+	}
+
+	/**
+	 * Teapot model with a BVH - closest intersection only
+	 * 
+	 * @return the closest intersection
+	 */
+	@Benchmark
+	public GeoPoint geometriesBVHClosest() {
+		return teapotBVH.findClosestGeoIntersection(nextRay());
+	}
+
+	/**
+	 * Teapot model as a triangle mesh - closest intersection only
+	 * 
+	 * @return the closest intersection
+	 */
+	@Benchmark
+	public GeoPoint meshClosest() {
+		return teapotMesh.findClosestGeoIntersection(nextRay());
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import renderer.*;
+import renderer.Camera.SUPERSAMPLING_TYPE;
+
+/**
+ * Full-frame renders (single threaded, into memory - the image is not written
+ * to a file) of the scenes of {@link BenchmarkScenes}.
+ * 
+ * @author elana
+ * @author elish
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class RenderBenchmark {
+	/**
+	 * Scenes to render
+	 */
+	public enum SceneType {
+		/** Teapot model with a BVH */
+		TEAPOT,
+		/** Spheres and mirrors with reflection and refraction */
+		REFLECTION_REFRACTION
+	}
+
+	@Param
+	private SceneType sceneType;
+
+	@Param({ "NONE", "ADAPTIVE" })
+	private SUPERSAMPLING_TYPE supersampling;
+
+	@Param({ "200" })
+	private int resolution;
+
+	private Camera camera;
+
+	/**
+	 * Build the scene and the camera
+	 */
+	@Setup
+	public void setup() {
+		camera = switch (sceneType) {
+		case TEAPOT -> BenchmarkScenes.teapot();
+		case REFLECTION_REFRACTION -> BenchmarkScenes.reflectionRefraction();
+		};
+		camera.setImageWriter(new ImageWriter("benchmark", resolution, resolution)) //
+				.setSupersampling(supersampling);
+	}
+
+	/**
+	 * Render the whole image
+	 * 
+	 * @return the camera
+	 */
+	@Benchmark
+	public Camera render() {
+		return camera.renderImage();
+	}
+}
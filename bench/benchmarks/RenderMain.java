@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import renderer.Camera;
+import renderer.Camera.SUPERSAMPLING_TYPE;
+import renderer.ImageWriter;
+import renderer.RayTracerBasic.BRANCHING_TYPE;
+import renderer.StreamingImageWriter;
+import renderer.StreamingImageWriter.Format;
+
+/**
+ * Headless render entry point - renders one of the scenes of
+ * {@link BenchmarkScenes} into the images folder and prints the render time.
+ * Meant for perf regression jobs and profiling (e.g. with JFR), so it can be
+ * launched with any JVM flags: <br/>
+ * {@code RenderMain [scene] [resolution] [threads] [supersampling] [output] [budget] [branching]}
+ * <ul>
+ * <li>scene - teapot (default), reflection, glass, or the path of an OBJ or a
+ * PLY model</li>
+ * <li>resolution - width and height of the image in pixels (default 800)</li>
+ * <li>threads - rendering threads, 0 for single threaded, negative for all the
+ * available cores (default -1)</li>
+ * <li>supersampling - NONE, REGULAR or ADAPTIVE (default ADAPTIVE)</li>
+ * <li>output - memory (default) to write the image at the end, png or ppm to
+ * stream it into its file while it's rendered (for very large images)</li>
+ * <li>budget - wall-clock budget of the rendering in seconds, 0 for no budget
+ * (default 0)</li>
+ * <li>branching - FULL or RUSSIAN_ROULETTE, the branching of the secondary rays
+ * of the glass scene (default FULL)</li>
+ * </ul>
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class RenderMain {
+	/**
+	 * Private constructor to hide the public one
+	 */
+	private RenderMain() {
+	}
+
+	/**
+	 * Render the scene
+	 * 
+	 * @param args scene, resolution, threads, supersampling, output, budget and
+	 *             branching
+	 * @throws IllegalArgumentException if an argument is illegal
+	 * @throws IOException              if the model can't be loaded
+	 */
+	public static void main(String[] args) throws IOException {
+		String sceneName = args.length > 0 ? args[0] : "teapot";
+		int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+		SUPERSAMPLING_TYPE supersampling = args.length > 3 ? SUPERSAMPLING_TYPE.valueOf(args[3].toUpperCase())
+				: SUPERSAMPLING_TYPE.ADAPTIVE;
+		String output = args.length > 4 ? args[4].toLowerCase() : "memory";
+		double budget = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+		BRANCHING_TYPE branching = args.length > 6 ? BRANCHING_TYPE.valueOf(args[6].toUpperCase())
+				: BRANCHING_TYPE.FULL;
+
+		Camera camera = switch (sceneName) {
+		case "teapot" -> BenchmarkScenes.teapot();
+		case "reflection" -> BenchmarkScenes.reflectionRefraction();
+		case "glass" -> BenchmarkScenes.glass(branching);
+		default -> BenchmarkScenes.model(Path.of(sceneName));
+		};
+		String imageName = "render-" + Path.of(sceneName).getFileName().toString().replace('.', '-');
+		ImageWriter imageWriter = switch (output) {
+		case "memory" -> new ImageWriter(imageName, resolution, resolution);
+		case "png" -> new StreamingImageWriter(imageName, resolution, resolution, Format.PNG);
+		case "ppm" -> new StreamingImageWriter(imageName, resolution, resolution, Format.PPM);
+		default -> throw new IllegalArgumentException("Unknown output: " + output);
+		};
+		camera.setImageWriter(imageWriter) //
+				.setSupersampling(supersampling) //
+				.setMultithreading(threads) //
+				.setRenderTimeBudget(budget);
+
+		long start = System.nanoTime();
+		camera.renderImage();
+		long elapsed = System.nanoTime() - start;
+		camera.writeToImage();
+		System.out.printf("%s %dx%d (%s, threads %d): %.3f s%n", sceneName, resolution, resolution, supersampling,
+				threads, elapsed / 1e9);
+	}
+}
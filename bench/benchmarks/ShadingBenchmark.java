@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import renderer.RayTracerBasic;
+import scene.Scene;
+
+/**
+ * Cost of {@link RayTracerBasic#traceRay(Ray)} for a single ray hitting a
+ * sphere of a given material type, standing on a plane and lit by two lights.
+ * 
+ * @author elana
+ * @author elish
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShadingBenchmark {
+	/**
+	 * Material types of the sphere
+	 */
+	public enum MaterialType {
+		/** Emission only (default material) */
+		EMISSIVE,
+		/** Diffuse and specular */
+		DIFFUSE,
+		/** Full mirror */
+		MIRROR,
+		/** Transparent */
+		GLASS
+	}
+
+	@Param
+	private MaterialType material;
+
+	private RayTracerBasic rayTracer;
+	private Ray ray;
+
+	/**
+	 * Build the scene
+	 */
+	@Setup
+	public void setup() {
+		Material sphereMaterial = switch (material) {
+		case EMISSIVE -> new Material();
+		case DIFFUSE -> new Material().setKD(0.5).setKS(0.5).setNShininess(60);
+		case MIRROR -> new Material().setKR(1);
+		case GLASS -> new Material().setKD(0.2).setKS(0.2).setNShininess(30).setKT(0.7);
+		};
+		Scene scene = new Scene("Shading benchmark") //
+				.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1));
+		scene.geometries.add( //
+				new Sphere(new Point(0, 0, -100), 50).setEmission(new Color(20, 20, 100)).setMaterial(sphereMaterial),
+				new Plane(new Point(0, -50, 0), new Vector(0, 1, 0)).setEmission(new Color(30, 30, 30))
+						.setMaterial(new Material().setKD(0.5).setKS(0.3).setNShininess(20).setKR(0.3)));
+		scene.lights.add(new PointLight(new Color(500, 300, 300), new Point(100, 100, 100)).setKL(0.0005));
+		scene.lights.add(new SpotLight(new Color(300, 300, 500), new Point(-100, 100, 0), new Vector(1, -1, -1)));
+		rayTracer = new RayTracerBasic(scene);
+		ray = new Ray(new Point(0, 0, 1000), new Vector(0.01, 0.02, -1));
+	}
+
+	/**
+	 * Trace a single ray
+	 * 
+	 * @return the color of the ray
+	 */
+	@Benchmark
+	public Color traceRay() {
+		return rayTracer.traceRay(ray);
+	}
+}
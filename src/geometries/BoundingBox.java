@@ -0,0 +1,256 @@
+package geometries;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+
+/**
+ * Class representing an axis-aligned bounding box (AABB) around a geometry
+ * 
+ * @author elana
+ * @author elish
+ */
+public class BoundingBox {
+	/**
+	 * Infinite box - marks geometries that are unbounded (e.g. planes and tubes)
+	 */
+	public static final BoundingBox INFINITE = new BoundingBox(
+			new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY },
+			new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY });
+
+	/**
+	 * Minimal coordinates of the box (x, y, z)
+	 */
+	private final double[] min;
+
+	/**
+	 * Maximal coordinates of the box (x, y, z)
+	 */
+	private final double[] max;
+
+	/**
+	 * Whether the box is unbounded in any axis
+	 */
+	private final boolean infinite;
+
+	/**
+	 * Constructor from the minimal and the maximal corners of the box
+	 * 
+	 * @param min minimal corner
+	 * @param max maximal corner
+	 * @throws IllegalArgumentException if the minimal corner is greater than the
+	 *                                  maximal corner in any axis
+	 */
+	public BoundingBox(Point min, Point max) {
+		this(new double[] { min.xyz.d1, min.xyz.d2, min.xyz.d3 }, //
+				new double[] { max.xyz.d1, max.xyz.d2, max.xyz.d3 });
+	}
+
+	/**
+	 * Constructor of the tightest box containing all the given points
+	 * 
+	 * @param points points to bound
+	 * @return the bounding box of the points
+	 */
+	public static BoundingBox of(Point... points) {
+		double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (Point p : points) {
+			for (int axis = 0; axis < 3; ++axis) {
+				double c = component(p.xyz, axis);
+				min[axis] = Math.min(min[axis], c);
+				max[axis] = Math.max(max[axis], c);
+			}
+		}
+		return new BoundingBox(min, max);
+	}
+
+	/**
+	 * Private constructor over the coordinate arrays (the arrays are not copied)
+	 * 
+	 * @param min minimal coordinates
+	 * @param max maximal coordinates
+	 */
+	private BoundingBox(double[] min, double[] max) {
+		for (int axis = 0; axis < 3; ++axis)
+			if (min[axis] > max[axis])
+				throw new IllegalArgumentException("Bounding box minimum must not be greater than its maximum");
+		this.min = min;
+		this.max = max;
+		infinite = Double.isInfinite(min[0]) || Double.isInfinite(min[1]) || Double.isInfinite(min[2])
+				|| Double.isInfinite(max[0]) || Double.isInfinite(max[1]) || Double.isInfinite(max[2]);
+	}
+
+	/**
+	 * Checks whether the box is unbounded
+	 * 
+	 * @return true if the box is infinite in any axis, false otherwise
+	 */
+	public boolean isInfinite() {
+		return infinite;
+	}
+
+	/**
+	 * Get the minimal coordinate of the box along an axis
+	 * 
+	 * @param axis 0 for x, 1 for y, 2 for z
+	 * @return minimal coordinate
+	 */
+	public double getMin(int axis) {
+		return min[axis];
+	}
+
+	/**
+	 * Get the maximal coordinate of the box along an axis
+	 * 
+	 * @param axis 0 for x, 1 for y, 2 for z
+	 * @return maximal coordinate
+	 */
+	public double getMax(int axis) {
+		return max[axis];
+	}
+
+	/**
+	 * Get the center of the box along an axis
+	 * 
+	 * @param axis 0 for x, 1 for y, 2 for z
+	 * @return center coordinate
+	 */
+	public double getCenter(int axis) {
+		return (min[axis] + max[axis]) / 2;
+	}
+
+	/**
+	 * Create the smallest box containing both this box and another one
+	 * 
+	 * @param other the other box
+	 * @return a new box bounding both boxes
+	 */
+	public BoundingBox union(BoundingBox other) {
+		return new BoundingBox( //
+				new double[] { Math.min(min[0], other.min[0]), Math.min(min[1], other.min[1]),
+						Math.min(min[2], other.min[2]) }, //
+				new double[] { Math.max(max[0], other.max[0]), Math.max(max[1], other.max[1]),
+						Math.max(max[2], other.max[2]) });
+	}
+
+	/**
+	 * Surface area of the box (used by the surface area heuristic of the BVH)
+	 * 
+	 * @return the surface area
+	 */
+	public double surfaceArea() {
+		double dx = max[0] - min[0];
+		double dy = max[1] - min[1];
+		double dz = max[2] - min[2];
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Slab test - checks whether the ray passes through the box before the max
+	 * distance
+	 * 
+	 * @param ray         the ray to test
+	 * @param maxDistance the maximum distance along the ray
+	 * @return true if the ray intersects the box, false otherwise
+	 */
+	public boolean intersects(Ray ray, double maxDistance) {
+		return infinite || intersectionDistance(ray, maxDistance) != Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Slab test - finds the distance along the ray where it enters the box
+	 * 
+	 * @param ray         the ray to test
+	 * @param maxDistance the maximum distance along the ray
+	 * @return the distance to the box (0 if the ray starts inside it), or positive
+	 *         infinity if the ray misses the box before the max distance
+	 */
+	public double intersectionDistance(Ray ray, double maxDistance) {
+		if (infinite)
+			return 0;
+		double tNear = 0;
+		double tFar = maxDistance;
+		for (int axis = 0; axis < 3; ++axis) {
+			double origin = component(ray.p0.xyz, axis);
+			double direction = component(ray.dir.xyz, axis);
+			if (direction == 0) {
+				// the ray is parallel to the slab - it must start between its planes
+				if (origin < min[axis] || origin > max[axis])
+					return Double.POSITIVE_INFINITY;
+				continue;
+			}
+			double t1 = (min[axis] - origin) / direction;
+			double t2 = (max[axis] - origin) / direction;
+			if (t1 > t2) {
+				double tmp = t1;
+				t1 = t2;
+				t2 = tmp;
+			}
+			if (t1 > tNear)
+				tNear = t1;
+			if (t2 < tFar)
+				tFar = t2;
+			if (tNear > tFar)
+				return Double.POSITIVE_INFINITY;
+		}
+		return tNear;
+	}
+
+	/**
+	 * Slab test of a packet of rays - finds the distance where the nearest ray of
+	 * the packet enters the box. Every ray is tested up to its own max distance.
+	 * A ray that is parallel to a slab and starts on one of its planes may be
+	 * reported as entering the box (the test is conservative).
+	 *
+	 * @param packet the rays to test
+	 * @return the smallest distance to the box of the rays that hit it (0 if a
+	 *         ray starts inside it), or positive infinity if the whole packet
+	 *         misses the box
+	 */
+	public double intersectionDistance(RayPacket packet) {
+		if (infinite)
+			return 0;
+		double nearest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < packet.size; ++i) {
+			double tNear = 0;
+			double tFar = packet.maxDistance[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				double origin = packet.origin[axis][i];
+				double inverse = packet.inverseDirection[axis][i];
+				double t1 = (min[axis] - origin) * inverse;
+				double t2 = (max[axis] - origin) * inverse;
+				// a NaN (0 * infinity) fails the comparisons and keeps the interval
+				if (t1 > t2) {
+					double tmp = t1;
+					t1 = t2;
+					t2 = tmp;
+				}
+				if (t1 > tNear)
+					tNear = t1;
+				if (t2 < tFar)
+					tFar = t2;
+			}
+			if (tNear <= tFar && tNear < nearest)
+				nearest = tNear;
+		}
+		return nearest;
+	}
+
+	/**
+	 * Get a component of a triad by its axis
+	 * 
+	 * @param d    the triad
+	 * @param axis 0 for d1, 1 for d2, 2 for d3
+	 * @return the component
+	 */
+	private static double component(Double3 d, int axis) {
+		return axis == 0 ? d.d1 : axis == 1 ? d.d2 : d.d3;
+	}
+
+	@Override
+	public String toString() {
+		return "[(" + min[0] + "," + min[1] + "," + min[2] + ")-(" + max[0] + "," + max[1] + "," + max[2] + ")]";
+	}
+}
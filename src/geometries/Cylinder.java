@@ -1,6 +1,7 @@
 package geometries;
 
 import primitives.Vector;
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
 
@@ -24,10 +25,32 @@ public class Cylinder extends Tube {
 	public Cylinder(double rad, Ray ray, double h) {
 		super(ray, rad);
 		height = h;
+		// the cylinder is bounded by its two bases - along each axis a base extends
+		// radius * sin(angle between the axis and the cylinder's direction)
+		Point base = ray.p0;
+		Point top = ray.getPoint(h);
+		Double3 d = ray.dir.xyz;
+		double ex = rad * Math.sqrt(Math.max(0, 1 - d.d1 * d.d1));
+		double ey = rad * Math.sqrt(Math.max(0, 1 - d.d2 * d.d2));
+		double ez = rad * Math.sqrt(Math.max(0, 1 - d.d3 * d.d3));
+		box = new BoundingBox( //
+				new Point(Math.min(base.xyz.d1, top.xyz.d1) - ex, Math.min(base.xyz.d2, top.xyz.d2) - ey,
+						Math.min(base.xyz.d3, top.xyz.d3) - ez), //
+				new Point(Math.max(base.xyz.d1, top.xyz.d1) + ex, Math.max(base.xyz.d2, top.xyz.d2) + ey,
+						Math.max(base.xyz.d3, top.xyz.d3) + ez));
 	}
 
 	@Override
 	public Vector getNormal(Point point) {
 		return null;
 	}
+
+	/**
+	 * Getter for the cylinder's height
+	 * 
+	 * @return the height
+	 */
+	public double getHeight() {
+		return height;
+	}
 }
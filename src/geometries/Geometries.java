@@ -1,9 +1,13 @@
 package geometries;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import primitives.Double3;
 import primitives.Ray;
+import primitives.RayPacket;
 
 /**
  * Class representing a collection of Geometries
@@ -13,6 +17,21 @@ import primitives.Ray;
  */
 public class Geometries extends Intersectable {
 
+    /**
+     * Number of bins per axis used by the binned SAH when building the BVH
+     */
+    private static final int BVH_BINS = 12;
+
+    /**
+     * Max amount of geometries in a leaf of the BVH
+     */
+    private static final int BVH_MAX_LEAF_SIZE = 2;
+
+    /**
+     * The collections that contain the collection - their boxes grow with its box
+     */
+    private final List<Geometries> parents = new ArrayList<>(1);
+
     /**
      * List of geometries
      */
@@ -34,7 +53,186 @@ public class Geometries extends Intersectable {
      * @param geometries Geometries to add
      */
     public void add(Intersectable... geometries) {
-        geometryList.addAll(List.of(geometries));
+        // grow the bounding box of the collection by the added geometries
+        // (an empty collection keeps the default infinite box)
+        for (Intersectable geometry : geometries) {
+            box = geometryList.isEmpty() ? geometry.getBoundingBox() : box.union(geometry.getBoundingBox());
+            geometryList.add(geometry);
+            if (geometry instanceof Geometries nested) {
+                nested.parents.add(this);
+            }
+        }
+        for (Geometries parent : parents) {
+            parent.grow(box);
+        }
+    }
+
+    /**
+     * Grow the bounding box of the collection, and of the collections that
+     * contain it, by the box of a nested collection that grew
+     * 
+     * @param nested the box of the nested collection
+     */
+    private void grow(BoundingBox nested) {
+        box = box.union(nested);
+        for (Geometries parent : parents) {
+            parent.grow(box);
+        }
+    }
+
+    /**
+     * Getter for the geometries of the collection
+     * 
+     * @return unmodifiable view of the geometries
+     */
+    public List<Intersectable> getGeometries() {
+        return Collections.unmodifiableList(geometryList);
+    }
+
+    /**
+     * Build a bounding volume hierarchy over the geometries of the collection
+     * using the binned surface area heuristic (SAH). Nested collections are
+     * flattened into the hierarchy, unbounded geometries (e.g. planes) are kept at
+     * the top level since they can't be bounded. Should be called after all the
+     * geometries were added.
+     * 
+     * @return this collection
+     */
+    public Geometries buildBVH() {
+        List<Intersectable> bounded = new ArrayList<>();
+        List<Intersectable> topLevel = new LinkedList<>();
+        collectGeometries(this, bounded, topLevel);
+        if (!bounded.isEmpty()) {
+            topLevel.add(buildBVHNode(bounded));
+        }
+        geometryList = topLevel;
+        return this;
+    }
+
+    /**
+     * Collect the geometries of a collection (and of its nested collections)
+     * 
+     * @param geometries collection to collect from
+     * @param bounded    list to collect the bounded geometries into
+     * @param unbounded  list to collect the unbounded geometries into
+     */
+    private static void collectGeometries(Geometries geometries, List<Intersectable> bounded,
+            List<Intersectable> unbounded) {
+        for (Intersectable geometry : geometries.geometryList) {
+            if (geometry instanceof Geometries) {
+                collectGeometries((Geometries) geometry, bounded, unbounded);
+            } else if (geometry.getBoundingBox().isInfinite()) {
+                unbounded.add(geometry);
+            } else {
+                bounded.add(geometry);
+            }
+        }
+    }
+
+    /**
+     * Recursively build a node of the BVH by splitting the geometries into two
+     * groups with the lowest SAH cost
+     * 
+     * @param geometries bounded geometries of the node (at least one)
+     * @return the node - either a geometry or a collection of the node's children
+     */
+    private static Intersectable buildBVHNode(List<Intersectable> geometries) {
+        int size = geometries.size();
+        if (size == 1) {
+            return geometries.get(0);
+        }
+        if (size <= BVH_MAX_LEAF_SIZE) {
+            return new Geometries(geometries.toArray(new Intersectable[size]));
+        }
+
+        // bounds of the centers of the geometries' boxes
+        double[] centerMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] centerMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (Intersectable geometry : geometries) {
+            BoundingBox geometryBox = geometry.getBoundingBox();
+            for (int axis = 0; axis < 3; ++axis) {
+                centerMin[axis] = Math.min(centerMin[axis], geometryBox.getCenter(axis));
+                centerMax[axis] = Math.max(centerMax[axis], geometryBox.getCenter(axis));
+            }
+        }
+
+        // find the split (axis and bin) with the lowest cost:
+        // area(left) * count(left) + area(right) * count(right)
+        int bestAxis = -1;
+        int bestSplit = 0;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; ++axis) {
+            double extent = centerMax[axis] - centerMin[axis];
+            if (extent <= 0) {
+                continue;
+            }
+            int[] counts = new int[BVH_BINS];
+            BoundingBox[] bins = new BoundingBox[BVH_BINS];
+            for (Intersectable geometry : geometries) {
+                BoundingBox geometryBox = geometry.getBoundingBox();
+                int bin = binIndex(geometryBox.getCenter(axis), centerMin[axis], extent);
+                ++counts[bin];
+                bins[bin] = bins[bin] == null ? geometryBox : bins[bin].union(geometryBox);
+            }
+            // sweep from the right to get the area and count of every right side
+            double[] rightAreas = new double[BVH_BINS];
+            int[] rightCounts = new int[BVH_BINS];
+            BoundingBox rightBox = null;
+            int rightCount = 0;
+            for (int bin = BVH_BINS - 1; bin > 0; --bin) {
+                if (bins[bin] != null) {
+                    rightBox = rightBox == null ? bins[bin] : rightBox.union(bins[bin]);
+                    rightCount += counts[bin];
+                }
+                rightAreas[bin] = rightBox == null ? 0 : rightBox.surfaceArea();
+                rightCounts[bin] = rightCount;
+            }
+            // sweep from the left, splitting before every bin
+            BoundingBox leftBox = null;
+            int leftCount = 0;
+            for (int split = 1; split < BVH_BINS; ++split) {
+                if (bins[split - 1] != null) {
+                    leftBox = leftBox == null ? bins[split - 1] : leftBox.union(bins[split - 1]);
+                    leftCount += counts[split - 1];
+                }
+                if (leftCount == 0 || rightCounts[split] == 0) {
+                    continue;
+                }
+                double cost = leftBox.surfaceArea() * leftCount + rightAreas[split] * rightCounts[split];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestSplit = split;
+                }
+            }
+        }
+
+        List<Intersectable> left = new ArrayList<>();
+        List<Intersectable> right = new ArrayList<>();
+        if (bestAxis == -1) {
+            // all the centers are in the same point - split the list in half
+            left.addAll(geometries.subList(0, size / 2));
+            right.addAll(geometries.subList(size / 2, size));
+        } else {
+            double extent = centerMax[bestAxis] - centerMin[bestAxis];
+            for (Intersectable geometry : geometries) {
+                int bin = binIndex(geometry.getBoundingBox().getCenter(bestAxis), centerMin[bestAxis], extent);
+                (bin < bestSplit ? left : right).add(geometry);
+            }
+        }
+        return new Geometries(buildBVHNode(left), buildBVHNode(right));
+    }
+
+    /**
+     * Find the SAH bin of a box center along an axis
+     * 
+     * @param center the center coordinate
+     * @param min    minimal center coordinate along the axis
+     * @param extent extent of the centers along the axis
+     * @return the index of the bin
+     */
+    private static int binIndex(double center, double min, double extent) {
+        return Math.min(BVH_BINS - 1, (int) ((center - min) / extent * BVH_BINS));
     }
 
     /**
@@ -54,6 +252,7 @@ public class Geometries extends Intersectable {
         List<GeoPoint> intersections = null;
         for (Intersectable geometry : geometryList) {
             // get the intersection points of the current geometry
+            // (geometries whose bounding box is missed by the ray are rejected early)
             List<GeoPoint> tempIntersections = geometry.findGeoIntersections(ray, maxDistance);
             // if there are no intersection points, continue
             // otherwise, add the intersection points to the list of intersection points
@@ -70,4 +269,142 @@ public class Geometries extends Intersectable {
         return intersections;
     }
 
+    /**
+     * Diminishes the transparency along the ray by the geometries of the
+     * collection, stops as soon as the ray becomes opaque
+     * 
+     * @param ray         the ray to test
+     * @param maxDistance the maximum distance to look for intersections
+     * @param ktr         the transparency accumulated so far along the ray
+     * @param minK        transparency below which the ray is considered opaque
+     * @param occluder    array to put the geometry that blocked the ray by itself
+     *                    into, null if it is not needed
+     * @return the transparency along the ray, Double3.ZERO if it is opaque
+     */
+    @Override
+    protected Double3 findTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK,
+            Intersectable[] occluder) {
+        for (Intersectable geometry : geometryList) {
+            ktr = geometry.findTransparency(ray, maxDistance, ktr, minK, occluder);
+            if (ktr.lowerThan(minK)) {
+                return Double3.ZERO;
+            }
+        }
+        return ktr;
+    }
+
+    /**
+     * Finds the closest intersection with the geometries of the collection.
+     * The max distance shrinks with every intersection found, so geometries
+     * behind it are rejected by their bounding boxes
+     * 
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance of the intersection
+     * @return the closest geoPoint, or null if there are no intersections
+     */
+    @Override
+    protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+        if (geometryList.size() == 2) {
+            return findClosestOfTwo(ray, maxDistance);
+        }
+        GeoPoint closest = null;
+        for (Intersectable geometry : geometryList) {
+            GeoPoint intersection = geometry.findClosestGeoIntersection(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+                maxDistance = intersection.getDistance(ray);
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Finds the closest intersection with a collection of two geometries (e.g. a
+     * node of the BVH). The geometry whose bounding box is nearer is tested first,
+     * so the farther one is skipped when the intersection is in front of its box
+     * 
+     * @param ray         the ray to intersect
+     * @param maxDistance the maximum distance of the intersection
+     * @return the closest geoPoint, or null if there are no intersections
+     */
+    private GeoPoint findClosestOfTwo(Ray ray, double maxDistance) {
+        Intersectable near = geometryList.get(0);
+        Intersectable far = geometryList.get(1);
+        double nearDistance = near.getBoundingBox().intersectionDistance(ray, maxDistance);
+        double farDistance = far.getBoundingBox().intersectionDistance(ray, maxDistance);
+        if (farDistance < nearDistance) {
+            Intersectable geometry = near;
+            near = far;
+            far = geometry;
+            double distance = nearDistance;
+            nearDistance = farDistance;
+            farDistance = distance;
+        }
+        // both boxes are missed
+        if (nearDistance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        GeoPoint closest = near.findClosestGeoIntersectionHelper(ray, maxDistance);
+        if (closest != null) {
+            maxDistance = closest.getDistance(ray);
+        }
+        if (farDistance < maxDistance) {
+            GeoPoint intersection = far.findClosestGeoIntersectionHelper(ray, maxDistance);
+            if (intersection != null) {
+                closest = intersection;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with the geometries of
+     * the collection, the packet traverses the BVH together
+     *
+     * @param packet  the rays to intersect
+     * @param closest the closest intersection of every ray found so far
+     */
+    @Override
+    protected void findClosestGeoIntersectionsHelper(RayPacket packet, GeoPoint[] closest) {
+        if (geometryList.size() == 2) {
+            findClosestOfTwo(packet, closest);
+            return;
+        }
+        for (Intersectable geometry : geometryList) {
+            geometry.findClosestGeoIntersections(packet, closest);
+        }
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with a collection of
+     * two geometries (e.g. a node of the BVH). The geometry whose bounding box is
+     * nearer to the packet is tested first, so the farther one is skipped when the
+     * intersections of all the rays are in front of its box
+     *
+     * @param packet  the rays to intersect
+     * @param closest the closest intersection of every ray found so far
+     */
+    private void findClosestOfTwo(RayPacket packet, GeoPoint[] closest) {
+        Intersectable near = geometryList.get(0);
+        Intersectable far = geometryList.get(1);
+        double nearDistance = near.getBoundingBox().intersectionDistance(packet);
+        double farDistance = far.getBoundingBox().intersectionDistance(packet);
+        if (farDistance < nearDistance) {
+            Intersectable geometry = near;
+            near = far;
+            far = geometry;
+            double distance = nearDistance;
+            nearDistance = farDistance;
+            farDistance = distance;
+        }
+        // both boxes are missed by the whole packet
+        if (nearDistance == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        near.findClosestGeoIntersectionsHelper(packet, closest);
+        if (farDistance < packet.getFarthestDistance()) {
+            far.findClosestGeoIntersectionsHelper(packet, closest);
+        }
+    }
+
 }
@@ -4,6 +4,8 @@ import primitives.Vector;
 import primitives.Point;
 import primitives.Color;
 import primitives.Material;
+import primitives.Double3;
+import primitives.Ray;
 
 /**
  * Geometry is the abstract class that all geometries inherit from.
@@ -31,6 +33,25 @@ public abstract class Geometry extends Intersectable {
 	 */
 	public abstract Vector getNormal(Point point);
 
+	/**
+	 * Any-hit query of a single geometry - if the geometry is opaque enough to
+	 * block the ray, any intersection decides the answer, so the intersections
+	 * are not collected. The geometry is the occluder if it blocks the ray by
+	 * itself
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK,
+			Intersectable[] occluder) {
+		if (ktr.product(material.kT).lowerThan(minK)) {
+			if (findClosestGeoIntersectionHelper(ray, maxDistance) == null)
+				return ktr;
+			if (occluder != null && material.kT.lowerThan(minK))
+				occluder[0] = this;
+			return Double3.ZERO;
+		}
+		return super.findTransparencyHelper(ray, maxDistance, ktr, minK, occluder);
+	}
+
 	/**
 	 * Getter for emission color
 	 * 
@@ -3,8 +3,10 @@ package geometries;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import primitives.Double3;
 import primitives.Point;
 import primitives.Ray;
+import primitives.RayPacket;
 import primitives.Vector;
 
 /**
@@ -16,7 +18,17 @@ import primitives.Vector;
 public abstract class Intersectable {
 
     /**
-     * Static class for intersections with geometries
+     * Axis-aligned bounding box of the intersectable, infinite unless the
+     * intersectable sets its bounds
+     */
+    protected BoundingBox box = BoundingBox.INFINITE;
+
+    /**
+     * Static class for intersections with geometries - the hit record of a ray.
+     * Besides the geometry and the point, the intersection keeps what the
+     * intersection routine already found on the way (the distance along the ray
+     * and the surface parameters), and the normal once it is calculated, so the
+     * shading doesn't recalculate them.
      */
     public static class GeoPoint {
         /**
@@ -29,6 +41,31 @@ public abstract class Intersectable {
          */
         public Point point;
 
+        /**
+         * Distance of the point from the head of the intersecting ray (the ray's
+         * parameter at the point), NaN if the intersection didn't record it
+         */
+        public double t = Double.NaN;
+
+        /**
+         * First surface parameter of the point - on a triangle the barycentric
+         * coordinate (weight) of its second vertex, NaN if the geometry doesn't
+         * record it
+         */
+        public double u = Double.NaN;
+
+        /**
+         * Second surface parameter of the point - on a triangle the barycentric
+         * coordinate (weight) of its third vertex, NaN if the geometry doesn't record
+         * it
+         */
+        public double v = Double.NaN;
+
+        /**
+         * Normal of the geometry at the point, calculated on demand
+         */
+        private Vector normal;
+
         /**
          * GeoPoint constructor
          * 
@@ -40,6 +77,35 @@ public abstract class Intersectable {
             point = p;
         }
 
+        /**
+         * GeoPoint constructor with the distance of the point along the intersecting
+         * ray
+         * 
+         * @param g geometry
+         * @param p point
+         * @param t distance of the point from the ray's head
+         */
+        public GeoPoint(Geometry g, Point p, double t) {
+            this(g, p);
+            this.t = t;
+        }
+
+        /**
+         * GeoPoint constructor with the distance of the point along the intersecting
+         * ray and its surface parameters
+         * 
+         * @param g geometry
+         * @param p point
+         * @param t distance of the point from the ray's head
+         * @param u first surface parameter
+         * @param v second surface parameter
+         */
+        public GeoPoint(Geometry g, Point p, double t, double u, double v) {
+            this(g, p, t);
+            this.u = u;
+            this.v = v;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (o == this) {
@@ -63,13 +129,50 @@ public abstract class Intersectable {
         }
 
         /**
-         * Helper method to get the normal of the geometry at the point of intersection
+         * Helper method to get the normal of the geometry at the point of
+         * intersection. The normal is calculated once and kept for the next calls
          * 
          * @return normal
          */
         public Vector getNormal() {
+            if (normal == null) {
+                normal = calcNormal();
+            }
+            return normal;
+        }
+
+        /**
+         * Calculate the normal of the geometry at the point of intersection, the
+         * intersections of geometries that know more about the point (e.g. the face
+         * of a mesh) override it
+         * 
+         * @return normal
+         */
+        protected Vector calcNormal() {
             return geometry.getNormal(point);
         }
+
+        /**
+         * Get the distance of the point from the head of the ray that found the
+         * intersection - the recorded distance, or calculated from the point if the
+         * intersection didn't record it
+         * 
+         * @param ray the intersecting ray
+         * @return the distance
+         */
+        public double getDistance(Ray ray) {
+            return Double.isNaN(t) ? point.distance(ray.p0) : t;
+        }
+    }
+
+    /**
+     * Getter for the bounding box of the intersectable
+     * 
+     * @return the bounding box, {@link BoundingBox#INFINITE} if the intersectable
+     *         is unbounded
+     */
+    public BoundingBox getBoundingBox() {
+        return box;
     }
 
     /**
@@ -117,9 +220,183 @@ public abstract class Intersectable {
      * @return List of geopoints that intersect with the ray
      */
     public List<GeoPoint> findGeoIntersections(Ray ray, double maxDistance) {
+        // early out - the ray can't intersect the geometry if it misses its box
+        if (!box.intersects(ray, maxDistance)) {
+            return null;
+        }
         return findGeoIntersectionsHelper(ray, maxDistance);
     }
 
+    /**
+     * Finds the closest geopoint that intersects with the ray
+     * 
+     * @param ray The ray to find the intersection point with
+     * 
+     * @return the closest geopoint, or null if there are no intersections
+     */
+    public GeoPoint findClosestGeoIntersection(Ray ray) {
+        return findClosestGeoIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the closest geopoint that intersects with the ray, without building
+     * the list of all the intersections
+     * 
+     * @param ray         The ray to find the intersection point with
+     * @param maxDistance The maximum distance to find the intersection point with
+     * 
+     * @return the closest geopoint, or null if there are no intersections before
+     *         the max distance
+     */
+    public GeoPoint findClosestGeoIntersection(Ray ray, double maxDistance) {
+        // early out - the ray can't intersect the geometry if it misses its box
+        if (!box.intersects(ray, maxDistance)) {
+            return null;
+        }
+        return findClosestGeoIntersectionHelper(ray, maxDistance);
+    }
+
+    /**
+     * Finds the closest geopoint that intersects with the ray. By default picks
+     * the closest of all the intersections, geometries override it when they can
+     * find the closest intersection directly
+     * 
+     * @param ray         The ray to find the intersection point with
+     * @param maxDistance The maximum distance to find the intersection point with
+     * 
+     * @return the closest geopoint, or null if there are no intersections
+     */
+    protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+        return ray.findClosestGeoPoint(findGeoIntersectionsHelper(ray, maxDistance));
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with the geometry. The
+     * geometry is tested by all the rays of the packet together, so the whole
+     * packet skips it when all the rays miss its bounding box. For every ray that
+     * intersects the geometry before its max distance, the closest intersection
+     * replaces the ray's entry in the closest array and the max distance of the
+     * ray shrinks to it.
+     *
+     * @param packet  the rays to find the intersections with
+     * @param closest the closest intersection of every ray found so far (null for
+     *                none), updated by the geometry's intersections
+     */
+    public void findClosestGeoIntersections(RayPacket packet, GeoPoint[] closest) {
+        // early out - the packet can't intersect the geometry if it misses its box
+        if (box.intersectionDistance(packet) == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        findClosestGeoIntersectionsHelper(packet, closest);
+    }
+
+    /**
+     * Finds the closest intersections of a packet of rays with the geometry. By
+     * default the rays are intersected one by one, geometries override it when
+     * they can share the work between the rays of the packet
+     *
+     * @param packet  the rays to find the intersections with
+     * @param closest the closest intersection of every ray found so far (null for
+     *                none), updated by the geometry's intersections
+     */
+    protected void findClosestGeoIntersectionsHelper(RayPacket packet, GeoPoint[] closest) {
+        for (int i = 0; i < packet.size; ++i) {
+            Ray ray = packet.rays[i];
+            GeoPoint intersection = findClosestGeoIntersection(ray, packet.maxDistance[i]);
+            if (intersection != null) {
+                closest[i] = intersection;
+                packet.maxDistance[i] = intersection.getDistance(ray);
+            }
+        }
+    }
+
+    /**
+     * Any-hit query - finds how much light passes along the ray through the
+     * geometry up to the max distance (the product of the kT of all the
+     * intersected geometries). Stops at the first intersection that makes the ray
+     * opaque, without looking for the rest of the intersections.
+     * 
+     * @param ray         The ray to test (e.g. a shadow ray towards a light)
+     * @param maxDistance The maximum distance to look for intersections
+     * @param minK        transparency below which (in every component) the ray is
+     *                    considered opaque
+     * 
+     * @return the transparency along the ray, {@link Double3#ZERO} if it is opaque
+     */
+    public Double3 findTransparency(Ray ray, double maxDistance, double minK) {
+        return findTransparency(ray, maxDistance, Double3.ONE, minK, null);
+    }
+
+    /**
+     * Any-hit query that also tells which geometry blocked the ray - when a
+     * single geometry is opaque enough to block the ray by itself, it is put into
+     * the first element of the occluder array (otherwise the array is not
+     * changed). Such a geometry can be tested first by the next query of a nearby
+     * ray (e.g. the shadow ray of a neighboring point towards the same light):
+     * if it blocks that ray too, the ray is opaque whatever else it intersects.
+     * 
+     * @param ray         The ray to test (e.g. a shadow ray towards a light)
+     * @param maxDistance The maximum distance to look for intersections
+     * @param minK        transparency below which (in every component) the ray is
+     *                    considered opaque
+     * @param occluder    array to put the geometry that blocked the ray into
+     * 
+     * @return the transparency along the ray, {@link Double3#ZERO} if it is opaque
+     */
+    public Double3 findTransparency(Ray ray, double maxDistance, double minK, Intersectable[] occluder) {
+        return findTransparency(ray, maxDistance, Double3.ONE, minK, occluder);
+    }
+
+    /**
+     * Any-hit query - diminishes the transparency accumulated so far along the ray
+     * by the geometry
+     * 
+     * @param ray         The ray to test
+     * @param maxDistance The maximum distance to look for intersections
+     * @param ktr         The transparency accumulated so far along the ray
+     * @param minK        transparency below which the ray is considered opaque
+     * @param occluder    array to put the geometry that blocked the ray by itself
+     *                    into, null if it is not needed
+     * 
+     * @return the transparency along the ray, {@link Double3#ZERO} if it is opaque
+     */
+    protected Double3 findTransparency(Ray ray, double maxDistance, Double3 ktr, double minK,
+            Intersectable[] occluder) {
+        // early out - the ray passes by the geometry if it misses its box
+        if (!box.intersects(ray, maxDistance)) {
+            return ktr;
+        }
+        return findTransparencyHelper(ray, maxDistance, ktr, minK, occluder);
+    }
+
+    /**
+     * Diminishes the transparency accumulated along the ray by all the
+     * intersections with the geometry
+     * 
+     * @param ray         The ray to test
+     * @param maxDistance The maximum distance to look for intersections
+     * @param ktr         The transparency accumulated so far along the ray
+     * @param minK        transparency below which the ray is considered opaque
+     * @param occluder    array to put the geometry that blocked the ray by itself
+     *                    into, null if it is not needed
+     * 
+     * @return the transparency along the ray, {@link Double3#ZERO} if it is opaque
+     */
+    protected Double3 findTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK,
+            Intersectable[] occluder) {
+        List<GeoPoint> intersections = findGeoIntersectionsHelper(ray, maxDistance);
+        if (intersections == null) {
+            return ktr;
+        }
+        for (GeoPoint gp : intersections) {
+            ktr = ktr.product(gp.geometry.getMaterial().kT);
+            if (ktr.lowerThan(minK)) {
+                return Double3.ZERO;
+            }
+        }
+        return ktr;
+    }
+
     /**
      * Finds the list of geopoints that intersect with the ray
      * 
@@ -78,13 +78,20 @@ public class Plane extends Geometry {
 		// and the distance is not infinite (not parallel)
 		// and max distance is greater than the distance from the ray origin to the plane
 		if (alignZero(t) > 0 && !Double.isInfinite(t) && alignZero(maxDistance - t) > 0) {
-			GeoPoint p = new GeoPoint(this, ray.getPoint(t));
+			GeoPoint p = new GeoPoint(this, ray.getPoint(t), t);
 			return List.of(p);
 		}
 
 		return null;
 	}
 
+	@Override
+	protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+		// a plane has at most one intersection
+		List<GeoPoint> intersections = findGeoIntersectionsHelper(ray, maxDistance);
+		return intersections == null ? null : intersections.get(0);
+	}
+
 	/**
 	 * Getter for the plane's normal
 	 * 
@@ -93,4 +100,13 @@ public class Plane extends Geometry {
 	public Vector getNormal() {
 		return this.normal;
 	}
+
+	/**
+	 * Getter for the plane's reference point
+	 * 
+	 * @return the point on the plane
+	 */
+	public Point getQ0() {
+		return q0;
+	}
 }
@@ -51,6 +51,7 @@ public class Polygon extends Geometry {
 		// polygon with this plane.
 		// The plane holds the invariant normal (orthogonal unit) vector to the polygon
 		plane = new Plane(vertices[0], vertices[1], vertices[2]);
+		box = BoundingBox.of(vertices);
 		if (vertices.length == 3)
 			return; // no need for more tests for a Triangle
 
@@ -93,4 +94,13 @@ public class Polygon extends Geometry {
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
 		return null;
 	}
+
+	/**
+	 * Getter for the polygon's vertices
+	 * 
+	 * @return the vertices (unmodifiable), ordered by edge path
+	 */
+	public List<Point> getVertices() {
+		return vertices;
+	}
 }
@@ -33,6 +33,8 @@ public class Sphere extends Geometry {
 	public Sphere(Point p1, double r1) {
 		center = p1;
 		radius = r1;
+		box = new BoundingBox(new Point(p1.xyz.d1 - r1, p1.xyz.d2 - r1, p1.xyz.d3 - r1),
+				new Point(p1.xyz.d1 + r1, p1.xyz.d2 + r1, p1.xyz.d3 + r1));
 	}
 
 	@Override
@@ -44,19 +46,22 @@ public class Sphere extends Geometry {
 		// and the origin of the ray are the same
 		// return the point that's the distance 'radius' from the origin
 		if (center.equals(ray.p0)) {
-			return List.of(new GeoPoint(this, ray.getPoint(radius)));
+			return List.of(new GeoPoint(this, ray.getPoint(radius), radius));
 		}
 
 		// vector from the ray origin to the center of the sphere
-		Vector u = center.subtract(ray.p0);
+		// (in local coordinates - no objects are allocated for a miss)
+		double ux = center.xyz.d1 - ray.p0.xyz.d1;
+		double uy = center.xyz.d2 - ray.p0.xyz.d2;
+		double uz = center.xyz.d3 - ray.p0.xyz.d3;
 		// projection of u onto the ray's direction
 		// gives you the distance to the point
 		// between the two points of intersection
-		tm = ray.dir.dotProduct(u);
+		tm = ux * ray.dir.xyz.d1 + uy * ray.dir.xyz.d2 + uz * ray.dir.xyz.d3;
 
 		// find the distance from the center of the sphere to the midpoint
 		// of the solutions
-		uLenSqrd = u.lengthSquared();
+		uLenSqrd = ux * ux + uy * uy + uz * uz;
 		d = Math.sqrt(uLenSqrd - (tm * tm));
 
 		if (d > radius) {
@@ -77,18 +82,68 @@ public class Sphere extends Geometry {
 		// if t1 is in front of the ray and max distance is greater than t1
 		if (alignZero(t1) > 0 && alignZero(maxDistance - t1) > 0) {
 			p1 = ray.getPoint(t1);
-			intersections = new LinkedList<>(List.of(new GeoPoint(this, p1)));
+			intersections = new LinkedList<>(List.of(new GeoPoint(this, p1, t1)));
 		}
 
 		// if t2 is in front of the ray and max distance is greater than t2
 		if (alignZero(t2) > 0 && alignZero(maxDistance - t2) > 0) {
 			p2 = ray.getPoint(t2);
 			if (intersections == null) {
-				intersections = List.of(new GeoPoint(this, p2));
+				intersections = List.of(new GeoPoint(this, p2, t2));
 			} else {
-				intersections.add(new GeoPoint(this, p2));
+				intersections.add(new GeoPoint(this, p2, t2));
 			}
 		}
 		return intersections;
 	}
-}
\ No newline at end of file
+
+	@Override
+	protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+		// same as findGeoIntersectionsHelper, but only the nearer valid solution is
+		// returned
+		if (center.equals(ray.p0)) {
+			return new GeoPoint(this, ray.getPoint(radius), radius);
+		}
+		double ux = center.xyz.d1 - ray.p0.xyz.d1;
+		double uy = center.xyz.d2 - ray.p0.xyz.d2;
+		double uz = center.xyz.d3 - ray.p0.xyz.d3;
+		double tm = ux * ray.dir.xyz.d1 + uy * ray.dir.xyz.d2 + uz * ray.dir.xyz.d3;
+		double dSqrd = ux * ux + uy * uy + uz * uz - tm * tm;
+		double radiusSqrd = radius * radius;
+		if (dSqrd > radiusSqrd) {
+			return null;
+		}
+		double tn = Math.sqrt(radiusSqrd - dSqrd);
+		if (isZero(tn)) {
+			return null;
+		}
+		// t2 is always the nearer solution
+		double t2 = tm - tn;
+		if (alignZero(t2) > 0 && alignZero(maxDistance - t2) > 0) {
+			return new GeoPoint(this, ray.getPoint(t2), t2);
+		}
+		double t1 = tm + tn;
+		if (alignZero(t1) > 0 && alignZero(maxDistance - t1) > 0) {
+			return new GeoPoint(this, ray.getPoint(t1), t1);
+		}
+		return null;
+	}
+
+	/**
+	 * Getter for the sphere's center
+	 * 
+	 * @return the center
+	 */
+	public Point getCenter() {
+		return center;
+	}
+
+	/**
+	 * Getter for the sphere's radius
+	 * 
+	 * @return the radius
+	 */
+	public double getRadius() {
+		return radius;
+	}
+}
@@ -4,7 +4,9 @@ import java.util.List;
 
 import primitives.Point;
 import primitives.Ray;
-import primitives.Vector;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
 
 /**
  * Class representing a Triangle
@@ -14,6 +16,14 @@ import primitives.Vector;
  */
 public class Triangle extends Polygon {
 
+	/**
+	 * First vertex and the two edges from it, stored as raw coordinates for the
+	 * allocation-free Moller-Trumbore intersection
+	 */
+	private final double v0x, v0y, v0z;
+	private final double e1x, e1y, e1z;
+	private final double e2x, e2y, e2z;
+
 	/**
 	 * Triangle constructor
 	 * 
@@ -23,40 +33,62 @@ public class Triangle extends Polygon {
 	 */
 	public Triangle(Point p1, Point p2, Point p3) {
 		super(p1, p2, p3);
+		v0x = p1.xyz.d1;
+		v0y = p1.xyz.d2;
+		v0z = p1.xyz.d3;
+		e1x = p2.xyz.d1 - v0x;
+		e1y = p2.xyz.d2 - v0y;
+		e1z = p2.xyz.d3 - v0z;
+		e2x = p3.xyz.d1 - v0x;
+		e2y = p3.xyz.d2 - v0y;
+		e2z = p3.xyz.d3 - v0z;
 	}
 
 	@Override
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
-		List<GeoPoint> planeIntersections = this.plane.findGeoIntersectionsHelper(ray, maxDistance);
+		GeoPoint intersection = findClosestGeoIntersectionHelper(ray, maxDistance);
+		return intersection == null ? null : List.of(intersection);
+	}
+
+	@Override
+	protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+		// Moller-Trumbore: solve p0 + t*dir = v0 + u*e1 + v*e2 on raw doubles,
+		// so that a miss allocates nothing
+		double dx = ray.dir.xyz.d1, dy = ray.dir.xyz.d2, dz = ray.dir.xyz.d3;
+
+		// pVec = dir x e2
+		double px = dy * e2z - dz * e2y;
+		double py = dz * e2x - dx * e2z;
+		double pz = dx * e2y - dy * e2x;
+		double det = e1x * px + e1y * py + e1z * pz;
+		// the ray is parallel to the triangle's plane
+		if (isZero(det))
+			return null;
+		double invDet = 1 / det;
 
-		// if ray does not intersect with the plane the triangle lies on
-		// it does not intersect with the triangle either
-		if (planeIntersections == null)
+		// tVec = p0 - v0
+		double ox = ray.p0.xyz.d1, oy = ray.p0.xyz.d2, oz = ray.p0.xyz.d3;
+		double tx = ox - v0x, ty = oy - v0y, tz = oz - v0z;
+		double u = alignZero((tx * px + ty * py + tz * pz) * invDet);
+		// points on the edges and the vertices are not considered intersections
+		if (u <= 0 || u >= 1)
 			return null;
 
-		double d1, d2, d3;
-		Vector v1, v2, v3, n1, n2, n3;
-		v1 = vertices.get(0).subtract(ray.p0);
-		v2 = vertices.get(1).subtract(ray.p0);
-		v3 = vertices.get(2).subtract(ray.p0);
-		n1 = v1.crossProduct(v2).normalize();
-		n2 = v2.crossProduct(v3).normalize();
-		n3 = v3.crossProduct(v1).normalize();
-		// storing the intersection point in a variable
-		Point intersectionPoint = planeIntersections.get(0).point;
-
-		// vector from the ray's origin to the intersection point on the plane
-		Vector toTriangle = intersectionPoint.subtract(ray.p0);
-		d1 = toTriangle.dotProduct(n1);
-		d2 = toTriangle.dotProduct(n2);
-		d3 = toTriangle.dotProduct(n3);
-
-		// need to check that d1,d2 and d3 are all positive or all negative
-		if ((d1 > 0 && d2 > 0 && d3 > 0) || (d1 < 0 && d2 < 0 && d3 < 0)) {
-			return List.of(new GeoPoint(this, intersectionPoint));
-		}
-
-		return null;
+		// qVec = tVec x e1
+		double qx = ty * e1z - tz * e1y;
+		double qy = tz * e1x - tx * e1z;
+		double qz = tx * e1y - ty * e1x;
+		double v = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+		if (v <= 0 || alignZero(u + v - 1) >= 0)
+			return null;
+
+		// distance from the ray's head - must be in front of the ray and before the
+		// max distance
+		double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+		if (t <= 0 || alignZero(maxDistance - t) <= 0)
+			return null;
 
+		// the hit record keeps the distance and the barycentric coordinates
+		return new GeoPoint(this, new Point(ox + t * dx, oy + t * dy, oz + t * dz), t, u, v);
 	}
 }
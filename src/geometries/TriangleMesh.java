@@ -0,0 +1,1037 @@
+package geometries;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.Ray;
+import primitives.RayPacket;
+import primitives.Vector;
+
+import static primitives.Util.alignZero;
+import static primitives.Util.isZero;
+
+/**
+ * Class representing a mesh of triangles that share one material and emission.
+ * Unlike a collection of {@link Triangle}s, the vertices are kept in a flat
+ * coordinate buffer and the faces in an index buffer, and the mesh has its own
+ * bounding volume hierarchy stored in flat arrays, so a large model takes a
+ * few dozens of bytes per triangle and its traversal walks contiguous memory.
+ * 
+ * @author elana
+ * @author elish
+ */
+public class TriangleMesh extends Geometry {
+
+	/**
+	 * Number of bins per axis used by the binned SAH when building the BVH
+	 */
+	private static final int BVH_BINS = 12;
+
+	/**
+	 * Max amount of faces in a leaf of the BVH
+	 */
+	private static final int BVH_MAX_LEAF_SIZE = 4;
+
+	/**
+	 * Vertex coordinates - x, y, z of every vertex
+	 */
+	private final double[] vertices;
+
+	/**
+	 * Vertex indices of the faces - three for every face, ordered by the leaves
+	 * of the BVH
+	 */
+	private final int[] indices;
+
+	/**
+	 * Bounds of the BVH nodes - min x, y, z and max x, y, z of every node
+	 */
+	private double[] nodeBounds;
+
+	/**
+	 * Contents of the BVH nodes - two for every node. A leaf holds its first face
+	 * and its amount of faces. An inner node holds the index of its second child
+	 * and zero (its first child follows it)
+	 */
+	private int[] nodeContents;
+
+	/**
+	 * Amount of nodes in the BVH
+	 */
+	private int nodeCount;
+
+	/**
+	 * Depth of the BVH (size of the traversal stack)
+	 */
+	private int depth;
+
+	/**
+	 * Constructor of a mesh over vertex and index buffers. The vertex buffer is
+	 * not copied.
+	 * 
+	 * @param vertices coordinates of the vertices - x, y, z of every vertex
+	 * @param indices  indices of the vertices of the faces - three for every face
+	 * @throws IllegalArgumentException if the buffers are not made of triads, if
+	 *                                  there are no faces or if an index is out
+	 *                                  of the vertex buffer
+	 */
+	public TriangleMesh(double[] vertices, int[] indices) {
+		if (vertices.length % 3 != 0 || indices.length % 3 != 0)
+			throw new IllegalArgumentException("Mesh buffers must be made of triads");
+		if (indices.length == 0)
+			throw new IllegalArgumentException("A mesh can't have no faces");
+		int vertexCount = vertices.length / 3;
+		for (int index : indices)
+			if (index < 0 || index >= vertexCount)
+				throw new IllegalArgumentException("Mesh face index out of the vertex buffer: " + index);
+		this.vertices = vertices;
+		this.indices = new int[indices.length];
+		buildBVH(indices);
+		box = new BoundingBox(new Point(nodeBounds[0], nodeBounds[1], nodeBounds[2]),
+				new Point(nodeBounds[3], nodeBounds[4], nodeBounds[5]));
+	}
+
+	/**
+	 * Constructor of a mesh over ready buffers and BVH (see
+	 * {@link #read(ByteBuffer)})
+	 * 
+	 * @param vertices     coordinates of the vertices
+	 * @param indices      vertex indices of the faces, ordered by the leaves
+	 * @param nodeBounds   bounds of the BVH nodes
+	 * @param nodeContents contents of the BVH nodes
+	 * @param depth        depth of the BVH
+	 */
+	private TriangleMesh(double[] vertices, int[] indices, double[] nodeBounds, int[] nodeContents, int depth) {
+		this.vertices = vertices;
+		this.indices = indices;
+		this.nodeBounds = nodeBounds;
+		this.nodeContents = nodeContents;
+		this.nodeCount = nodeContents.length / 2;
+		this.depth = depth;
+		box = new BoundingBox(new Point(nodeBounds[0], nodeBounds[1], nodeBounds[2]),
+				new Point(nodeBounds[3], nodeBounds[4], nodeBounds[5]));
+	}
+
+	/**
+	 * Constructor of a mesh from triangles - vertices with the same coordinates
+	 * are shared by the faces. The emission and the material of the triangles are
+	 * not kept.
+	 * 
+	 * @param triangles the triangles
+	 * @return the mesh
+	 */
+	public static TriangleMesh of(Triangle... triangles) {
+		// keyed by the bits of the coordinates - the hash code of a Double3 puts the
+		// vertices of a small model in a few buckets
+		Map<VertexKey, Integer> vertexIndices = new HashMap<>();
+		double[] vertices = new double[triangles.length * 9];
+		int[] indices = new int[triangles.length * 3];
+		int vertexCount = 0;
+		int i = 0;
+		for (Triangle triangle : triangles) {
+			for (Point p : triangle.vertices) {
+				VertexKey key = new VertexKey(p.xyz);
+				Integer index = vertexIndices.get(key);
+				if (index == null) {
+					index = vertexCount++;
+					vertexIndices.put(key, index);
+					vertices[index * 3] = p.xyz.d1;
+					vertices[index * 3 + 1] = p.xyz.d2;
+					vertices[index * 3 + 2] = p.xyz.d3;
+				}
+				indices[i++] = index;
+			}
+		}
+		double[] shared = new double[vertexCount * 3];
+		System.arraycopy(vertices, 0, shared, 0, shared.length);
+		return new TriangleMesh(shared, indices);
+	}
+
+	/**
+	 * Key of a vertex in the map of the shared vertices of
+	 * {@link TriangleMesh#of(Triangle...)}
+	 */
+	private static final class VertexKey {
+		private final long x;
+		private final long y;
+		private final long z;
+
+		/**
+		 * Constructor of the key of a vertex
+		 * 
+		 * @param xyz coordinates of the vertex
+		 */
+		VertexKey(Double3 xyz) {
+			// adding 0 turns -0 into 0, so they have the same bits
+			x = Double.doubleToLongBits(xyz.d1 + 0.0);
+			y = Double.doubleToLongBits(xyz.d2 + 0.0);
+			z = Double.doubleToLongBits(xyz.d3 + 0.0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof VertexKey other && x == other.x && y == other.y && z == other.z;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(x) * 961 + Long.hashCode(y) * 31 + Long.hashCode(z);
+		}
+	}
+
+	/**
+	 * Write the buffers and the BVH of the mesh (without its emission and
+	 * material), so it can be read back without rebuilding the BVH
+	 * 
+	 * @param out the output
+	 * @throws IOException if the output fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(vertices.length);
+		for (double c : vertices)
+			out.writeDouble(c);
+		out.writeInt(indices.length);
+		for (int index : indices)
+			out.writeInt(index);
+		out.writeInt(nodeBounds.length);
+		for (double bound : nodeBounds)
+			out.writeDouble(bound);
+		out.writeInt(nodeContents.length);
+		for (int content : nodeContents)
+			out.writeInt(content);
+		out.writeInt(depth);
+	}
+
+	/**
+	 * Read a mesh written by {@link #write(DataOutput)} (with the byte order of
+	 * the buffer) - the buffers are copied in bulk and the BVH is not rebuilt
+	 * 
+	 * @param in the input, positioned at the mesh - it is advanced past the mesh
+	 * @return the mesh
+	 * @throws java.nio.BufferUnderflowException if the input ends before the mesh
+	 * @throws IllegalArgumentException          if the buffers or the BVH of the
+	 *                                           mesh are malformed
+	 */
+	public static TriangleMesh read(ByteBuffer in) {
+		double[] vertices = readDoubles(in);
+		int[] indices = readInts(in);
+		double[] nodeBounds = readDoubles(in);
+		int[] nodeContents = readInts(in);
+		int depth = in.getInt();
+		if (vertices.length % 3 != 0 || indices.length % 3 != 0 || indices.length == 0)
+			throw new IllegalArgumentException("Malformed mesh buffers");
+		int vertexCount = vertices.length / 3;
+		for (int index : indices)
+			if (index < 0 || index >= vertexCount)
+				throw new IllegalArgumentException("Mesh face index out of the vertex buffer: " + index);
+		checkBVH(nodeBounds, nodeContents, indices.length / 3, depth);
+		return new TriangleMesh(vertices, indices, nodeBounds, nodeContents, depth);
+	}
+
+	/**
+	 * Check that a BVH that was read can be traversed - every inner node's second
+	 * child follows its first child, every leaf holds faces of the mesh, and the
+	 * traversal stack of the depth is deep enough
+	 * 
+	 * @param nodeBounds   bounds of the BVH nodes
+	 * @param nodeContents contents of the BVH nodes
+	 * @param faceCount    amount of faces of the mesh
+	 * @param depth        depth of the BVH
+	 * @throws IllegalArgumentException if the BVH is malformed
+	 */
+	private static void checkBVH(double[] nodeBounds, int[] nodeContents, int faceCount, int depth) {
+		int nodeCount = nodeContents.length / 2;
+		if (nodeCount == 0 || nodeContents.length % 2 != 0 || nodeBounds.length != nodeCount * 6)
+			throw new IllegalArgumentException("Malformed mesh BVH buffers");
+		// the level of every node - the children come after their parent, so the
+		// levels are found in one pass
+		int[] levels = new int[nodeCount];
+		levels[0] = 1;
+		for (int node = 0; node < nodeCount; ++node) {
+			int content = nodeContents[node * 2];
+			int count = nodeContents[node * 2 + 1];
+			if (count == 0) {
+				if (content <= node + 1 || content >= nodeCount)
+					throw new IllegalArgumentException("Mesh BVH child out of the nodes: " + content);
+				levels[node + 1] = Math.max(levels[node + 1], levels[node] + 1);
+				levels[content] = Math.max(levels[content], levels[node] + 1);
+			} else if (count < 0 || content < 0 || content > faceCount - count)
+				throw new IllegalArgumentException("Mesh BVH leaf out of the faces: " + content + ", " + count);
+			if (levels[node] > depth)
+				throw new IllegalArgumentException("Mesh BVH deeper than its depth " + depth);
+		}
+	}
+
+	/**
+	 * Read a length-prefixed array of doubles
+	 * 
+	 * @param in the input
+	 * @return the array
+	 * @throws IllegalArgumentException          if the length is negative
+	 * @throws java.nio.BufferUnderflowException if the input is shorter than the
+	 *                                           array
+	 */
+	private static double[] readDoubles(ByteBuffer in) {
+		double[] array = new double[readLength(in, Double.BYTES)];
+		in.asDoubleBuffer().get(array);
+		in.position(in.position() + array.length * Double.BYTES);
+		return array;
+	}
+
+	/**
+	 * Read a length-prefixed array of integers
+	 * 
+	 * @param in the input
+	 * @return the array
+	 * @throws IllegalArgumentException          if the length is negative
+	 * @throws java.nio.BufferUnderflowException if the input is shorter than the
+	 *                                           array
+	 */
+	private static int[] readInts(ByteBuffer in) {
+		int[] array = new int[readLength(in, Integer.BYTES)];
+		in.asIntBuffer().get(array);
+		in.position(in.position() + array.length * Integer.BYTES);
+		return array;
+	}
+
+	/**
+	 * Read the length of an array, before the array is allocated
+	 * 
+	 * @param in   the input
+	 * @param size size of an element of the array in bytes
+	 * @return the length
+	 * @throws IllegalArgumentException          if the length is negative
+	 * @throws java.nio.BufferUnderflowException if the input is shorter than the
+	 *                                           array
+	 */
+	private static int readLength(ByteBuffer in, int size) {
+		int length = in.getInt();
+		if (length < 0)
+			throw new IllegalArgumentException("Negative mesh buffer length: " + length);
+		if (length > in.remaining() / size)
+			throw new BufferUnderflowException();
+		return length;
+	}
+
+	/**
+	 * Get the amount of faces of the mesh
+	 * 
+	 * @return amount of faces
+	 */
+	public int getFaceCount() {
+		return indices.length / 3;
+	}
+
+	/**
+	 * Get the normal of a face of the mesh - (v1 - v0) x (v2 - v0), as the normal
+	 * of a {@link Triangle}
+	 * 
+	 * @param face the face (as kept in the intersections of the mesh)
+	 * @return the normal of the face
+	 */
+	public Vector getFaceNormal(int face) {
+		int a = indices[face * 3] * 3, b = indices[face * 3 + 1] * 3, c = indices[face * 3 + 2] * 3;
+		double e1x = vertices[b] - vertices[a], e1y = vertices[b + 1] - vertices[a + 1],
+				e1z = vertices[b + 2] - vertices[a + 2];
+		double e2x = vertices[c] - vertices[a], e2y = vertices[c + 1] - vertices[a + 1],
+				e2z = vertices[c + 2] - vertices[a + 2];
+		return new Vector(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x).normalize();
+	}
+
+	/**
+	 * Get the normal of the mesh at a point on it. The face is looked up over
+	 * all the faces - the intersections of the mesh know their face and return
+	 * its normal directly from {@link GeoPoint#getNormal()}
+	 * 
+	 * @throws IllegalArgumentException if the point is not on the mesh
+	 */
+	@Override
+	public Vector getNormal(Point point) {
+		double px = point.xyz.d1, py = point.xyz.d2, pz = point.xyz.d3;
+		int faceCount = getFaceCount();
+		for (int face = 0; face < faceCount; ++face) {
+			int a = indices[face * 3] * 3, b = indices[face * 3 + 1] * 3, c = indices[face * 3 + 2] * 3;
+			double e1x = vertices[b] - vertices[a], e1y = vertices[b + 1] - vertices[a + 1],
+					e1z = vertices[b + 2] - vertices[a + 2];
+			double e2x = vertices[c] - vertices[a], e2y = vertices[c + 1] - vertices[a + 1],
+					e2z = vertices[c + 2] - vertices[a + 2];
+			double tx = px - vertices[a], ty = py - vertices[a + 1], tz = pz - vertices[a + 2];
+			// barycentric coordinates of the point's projection on the face
+			double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+			double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+			double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+			double dt1 = tx * e1x + ty * e1y + tz * e1z;
+			double dt2 = tx * e2x + ty * e2y + tz * e2z;
+			double denominator = d11 * d22 - d12 * d12;
+			if (isZero(denominator))
+				continue;
+			double u = alignZero((d22 * dt1 - d12 * dt2) / denominator);
+			double v = alignZero((d11 * dt2 - d12 * dt1) / denominator);
+			if (u < 0 || v < 0 || alignZero(u + v - 1) > 0)
+				continue;
+			// distance of the point from its projection
+			double dx = tx - u * e1x - v * e2x, dy = ty - u * e1y - v * e2y, dz = tz - u * e1z - v * e2z;
+			if (isZero(dx * dx + dy * dy + dz * dz))
+				return getFaceNormal(face);
+		}
+		throw new IllegalArgumentException("The point is not on the mesh");
+	}
+
+	@Override
+	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
+		List<GeoPoint> intersections = null;
+		int[] stack = new int[depth + 1];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (nodeDistance(node, ray, maxDistance) == Double.POSITIVE_INFINITY)
+				continue;
+			int count = nodeContents[node * 2 + 1];
+			if (count == 0) {
+				stack[top++] = nodeContents[node * 2];
+				stack[top++] = node + 1;
+				continue;
+			}
+			int first = nodeContents[node * 2];
+			for (int face = first; face < first + count; ++face) {
+				if (intersectFace(face, ray, maxDistance) != Double.POSITIVE_INFINITY) {
+					if (intersections == null)
+						intersections = new LinkedList<>();
+					intersections.add(hitPoint(face, ray));
+				}
+			}
+		}
+		return intersections;
+	}
+
+	@Override
+	protected GeoPoint findClosestGeoIntersectionHelper(Ray ray, double maxDistance) {
+		int face = findFace(ray, maxDistance, false);
+		return face == -1 ? null : hitPoint(face, ray);
+	}
+
+	/**
+	 * Any-hit query of the mesh - when the mesh is opaque enough to block the
+	 * ray, the traversal stops at the first face it hits. The mesh is the
+	 * occluder if it blocks the ray by itself
+	 */
+	@Override
+	protected Double3 findTransparencyHelper(Ray ray, double maxDistance, Double3 ktr, double minK,
+			Intersectable[] occluder) {
+		if (ktr.product(getMaterial().kT).lowerThan(minK)) {
+			if (findFace(ray, maxDistance, true) == -1)
+				return ktr;
+			if (occluder != null && getMaterial().kT.lowerThan(minK))
+				occluder[0] = this;
+			return Double3.ZERO;
+		}
+		return super.findTransparencyHelper(ray, maxDistance, ktr, minK, occluder);
+	}
+
+	/**
+	 * Traverse the BVH for the face the ray hits. The nearer child of every node
+	 * is visited first, and the max distance shrinks with every hit, so nodes
+	 * behind the closest hit are skipped
+	 * 
+	 * @param ray         the ray
+	 * @param maxDistance the maximum distance of the hit
+	 * @param anyHit      whether to stop at the first hit instead of the closest
+	 * @return the face that was hit, -1 if there is none
+	 */
+	private int findFace(Ray ray, double maxDistance, boolean anyHit) {
+		int[] stack = new int[depth + 1];
+		double[] distances = new double[depth + 1];
+		int top = 0;
+		int hit = -1;
+		int node = 0;
+		while (true) {
+			int count = nodeContents[node * 2 + 1];
+			if (count == 0) {
+				// inner node - visit the nearer child and keep the farther one
+				int near = node + 1;
+				int far = nodeContents[node * 2];
+				double nearDistance = nodeDistance(near, ray, maxDistance);
+				double farDistance = nodeDistance(far, ray, maxDistance);
+				if (farDistance < nearDistance) {
+					int child = near;
+					near = far;
+					far = child;
+					double distance = nearDistance;
+					nearDistance = farDistance;
+					farDistance = distance;
+				}
+				if (nearDistance != Double.POSITIVE_INFINITY) {
+					if (farDistance != Double.POSITIVE_INFINITY) {
+						stack[top] = far;
+						distances[top++] = farDistance;
+					}
+					node = near;
+					continue;
+				}
+			} else {
+				int first = nodeContents[node * 2];
+				for (int face = first; face < first + count; ++face) {
+					double t = intersectFace(face, ray, maxDistance);
+					if (t != Double.POSITIVE_INFINITY) {
+						if (anyHit)
+							return face;
+						hit = face;
+						maxDistance = t;
+					}
+				}
+			}
+			// pop the next node that is not behind the closest hit
+			do {
+				if (top == 0)
+					return hit;
+				node = stack[--top];
+			} while (distances[top] >= maxDistance);
+		}
+	}
+
+	/**
+	 * Finds the closest intersections of a packet of rays with the mesh. The
+	 * packet traverses the BVH together - a node is visited when any of the rays
+	 * hits its bounds, the nearer child (to the packet) first, and the faces of a
+	 * leaf are tested by the rays that hit the leaf's bounds
+	 */
+	@Override
+	protected void findClosestGeoIntersectionsHelper(RayPacket packet, GeoPoint[] closest) {
+		int size = packet.size;
+		double[][] origin = packet.origin;
+		double[][] direction = packet.direction;
+		double[] maxDistance = packet.maxDistance;
+		int[] hits = new int[size];
+		Arrays.fill(hits, -1);
+		int[] active = new int[size];
+		int[] stack = new int[depth + 1];
+		double[] distances = new double[depth + 1];
+		int top = 0;
+		int node = 0;
+		double farthest = packet.getFarthestDistance();
+		while (true) {
+			int count = nodeContents[node * 2 + 1];
+			if (count == 0) {
+				// inner node - visit the nearer child and keep the farther one
+				int near = node + 1;
+				int far = nodeContents[node * 2];
+				double nearDistance = nodeDistance(near, packet);
+				double farDistance = nodeDistance(far, packet);
+				if (farDistance < nearDistance) {
+					int child = near;
+					near = far;
+					far = child;
+					double distance = nearDistance;
+					nearDistance = farDistance;
+					farDistance = distance;
+				}
+				if (nearDistance != Double.POSITIVE_INFINITY) {
+					if (farDistance != Double.POSITIVE_INFINITY) {
+						stack[top] = far;
+						distances[top++] = farDistance;
+					}
+					node = near;
+					continue;
+				}
+			} else {
+				// the rays that hit the leaf
+				int activeCount = 0;
+				for (int i = 0; i < size; ++i)
+					if (nodeDistance(node, packet, i) != Double.POSITIVE_INFINITY)
+						active[activeCount++] = i;
+				int first = nodeContents[node * 2];
+				for (int face = first; face < first + count; ++face) {
+					for (int k = 0; k < activeCount; ++k) {
+						int i = active[k];
+						double t = intersectFace(face, origin[0][i], origin[1][i], origin[2][i], direction[0][i],
+								direction[1][i], direction[2][i], maxDistance[i]);
+						if (t != Double.POSITIVE_INFINITY) {
+							hits[i] = face;
+							maxDistance[i] = t;
+						}
+					}
+				}
+				if (activeCount > 0)
+					farthest = packet.getFarthestDistance();
+			}
+			// pop the next node that is not behind the closest hits of all the rays
+			do {
+				if (top == 0) {
+					for (int i = 0; i < size; ++i)
+						if (hits[i] != -1) {
+							closest[i] = hitPoint(hits[i], packet.rays[i]);
+							maxDistance[i] = closest[i].t;
+						}
+					return;
+				}
+				node = stack[--top];
+			} while (distances[top] >= farthest);
+		}
+	}
+
+	/**
+	 * Moller-Trumbore intersection of the ray with a face. Unlike
+	 * {@link Triangle}, the edges and the vertices are intersections, so rays
+	 * through an edge shared by two faces don't leak through the mesh
+	 * 
+	 * @param face        the face
+	 * @param ray         the ray
+	 * @param maxDistance the maximum distance of the intersection
+	 * @return the distance to the intersection, positive infinity if there is none
+	 */
+	private double intersectFace(int face, Ray ray, double maxDistance) {
+		return intersectFace(face, ray.p0.xyz.d1, ray.p0.xyz.d2, ray.p0.xyz.d3, ray.dir.xyz.d1, ray.dir.xyz.d2,
+				ray.dir.xyz.d3, maxDistance);
+	}
+
+	/**
+	 * Moller-Trumbore intersection of a ray, given by its components, with a face
+	 * 
+	 * @param face        the face
+	 * @param ox          x coordinate of the ray's head
+	 * @param oy          y coordinate of the ray's head
+	 * @param oz          z coordinate of the ray's head
+	 * @param dx          x coordinate of the ray's direction
+	 * @param dy          y coordinate of the ray's direction
+	 * @param dz          z coordinate of the ray's direction
+	 * @param maxDistance the maximum distance of the intersection
+	 * @return the distance to the intersection, positive infinity if there is none
+	 */
+	private double intersectFace(int face, double ox, double oy, double oz, double dx, double dy, double dz,
+			double maxDistance) {
+		int a = indices[face * 3] * 3, b = indices[face * 3 + 1] * 3, c = indices[face * 3 + 2] * 3;
+		double v0x = vertices[a], v0y = vertices[a + 1], v0z = vertices[a + 2];
+		double e1x = vertices[b] - v0x, e1y = vertices[b + 1] - v0y, e1z = vertices[b + 2] - v0z;
+		double e2x = vertices[c] - v0x, e2y = vertices[c + 1] - v0y, e2z = vertices[c + 2] - v0z;
+
+		double px = dy * e2z - dz * e2y;
+		double py = dz * e2x - dx * e2z;
+		double pz = dx * e2y - dy * e2x;
+		double det = e1x * px + e1y * py + e1z * pz;
+		if (isZero(det))
+			return Double.POSITIVE_INFINITY;
+		double invDet = 1 / det;
+
+		double tx = ox - v0x, ty = oy - v0y, tz = oz - v0z;
+		double u = alignZero((tx * px + ty * py + tz * pz) * invDet);
+		if (u < 0 || u > 1)
+			return Double.POSITIVE_INFINITY;
+
+		double qx = ty * e1z - tz * e1y;
+		double qy = tz * e1x - tx * e1z;
+		double qz = tx * e1y - ty * e1x;
+		double v = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+		if (v < 0 || alignZero(u + v - 1) > 0)
+			return Double.POSITIVE_INFINITY;
+
+		double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+		if (t <= 0 || alignZero(maxDistance - t) <= 0)
+			return Double.POSITIVE_INFINITY;
+		return t;
+	}
+
+	/**
+	 * Create the intersection of a ray with a face that it hits - with the
+	 * distance along the ray and the barycentric coordinates of the point (by the
+	 * same arithmetic as {@link #intersectFace(int, Ray, double)})
+	 * 
+	 * @param face the face
+	 * @param ray  the ray
+	 * @return the intersection
+	 */
+	private MeshPoint hitPoint(int face, Ray ray) {
+		double ox = ray.p0.xyz.d1, oy = ray.p0.xyz.d2, oz = ray.p0.xyz.d3;
+		double dx = ray.dir.xyz.d1, dy = ray.dir.xyz.d2, dz = ray.dir.xyz.d3;
+		int a = indices[face * 3] * 3, b = indices[face * 3 + 1] * 3, c = indices[face * 3 + 2] * 3;
+		double v0x = vertices[a], v0y = vertices[a + 1], v0z = vertices[a + 2];
+		double e1x = vertices[b] - v0x, e1y = vertices[b + 1] - v0y, e1z = vertices[b + 2] - v0z;
+		double e2x = vertices[c] - v0x, e2y = vertices[c + 1] - v0y, e2z = vertices[c + 2] - v0z;
+
+		double px = dy * e2z - dz * e2y;
+		double py = dz * e2x - dx * e2z;
+		double pz = dx * e2y - dy * e2x;
+		double invDet = 1 / (e1x * px + e1y * py + e1z * pz);
+		double tx = ox - v0x, ty = oy - v0y, tz = oz - v0z;
+		double u = alignZero((tx * px + ty * py + tz * pz) * invDet);
+		double qx = ty * e1z - tz * e1y;
+		double qy = tz * e1x - tx * e1z;
+		double qz = tx * e1y - ty * e1x;
+		double v = alignZero((dx * qx + dy * qy + dz * qz) * invDet);
+		double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * invDet);
+		return new MeshPoint(this, new Point(ox + t * dx, oy + t * dy, oz + t * dz), face, t, u, v);
+	}
+
+	/**
+	 * Slab test of the ray with the bounds of a node (as
+	 * {@link BoundingBox#intersectionDistance(Ray, double)})
+	 * 
+	 * @param node        the node
+	 * @param ray         the ray
+	 * @param maxDistance the maximum distance along the ray
+	 * @return the distance to the node (0 if the ray starts inside it), or
+	 *         positive infinity if the ray misses it before the max distance
+	 */
+	private double nodeDistance(int node, Ray ray, double maxDistance) {
+		int offset = node * 6;
+		double tNear = 0;
+		double tFar = maxDistance;
+		for (int axis = 0; axis < 3; ++axis) {
+			double origin = axis == 0 ? ray.p0.xyz.d1 : axis == 1 ? ray.p0.xyz.d2 : ray.p0.xyz.d3;
+			double direction = axis == 0 ? ray.dir.xyz.d1 : axis == 1 ? ray.dir.xyz.d2 : ray.dir.xyz.d3;
+			double min = nodeBounds[offset + axis];
+			double max = nodeBounds[offset + 3 + axis];
+			if (direction == 0) {
+				if (origin < min || origin > max)
+					return Double.POSITIVE_INFINITY;
+				continue;
+			}
+			double t1 = (min - origin) / direction;
+			double t2 = (max - origin) / direction;
+			if (t1 > t2) {
+				double tmp = t1;
+				t1 = t2;
+				t2 = tmp;
+			}
+			if (t1 > tNear)
+				tNear = t1;
+			if (t2 < tFar)
+				tFar = t2;
+			if (tNear > tFar)
+				return Double.POSITIVE_INFINITY;
+		}
+		return tNear;
+	}
+
+	/**
+	 * Slab test of a packet of rays with the bounds of a node (as
+	 * {@link BoundingBox#intersectionDistance(RayPacket)})
+	 * 
+	 * @param node   the node
+	 * @param packet the rays
+	 * @return the smallest distance to the node of the rays that hit it, or
+	 *         positive infinity if the whole packet misses it
+	 */
+	private double nodeDistance(int node, RayPacket packet) {
+		double nearest = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < packet.size; ++i) {
+			double distance = nodeDistance(node, packet, i);
+			if (distance < nearest)
+				nearest = distance;
+		}
+		return nearest;
+	}
+
+	/**
+	 * Slab test of a ray of a packet with the bounds of a node, up to the ray's
+	 * max distance
+	 * 
+	 * @param node   the node
+	 * @param packet the packet
+	 * @param i      index of the ray in the packet
+	 * @return the distance to the node (0 if the ray starts inside it), or
+	 *         positive infinity if the ray misses it
+	 */
+	private double nodeDistance(int node, RayPacket packet, int i) {
+		int offset = node * 6;
+		double tNear = 0;
+		double tFar = packet.maxDistance[i];
+		for (int axis = 0; axis < 3; ++axis) {
+			double origin = packet.origin[axis][i];
+			double inverse = packet.inverseDirection[axis][i];
+			double t1 = (nodeBounds[offset + axis] - origin) * inverse;
+			double t2 = (nodeBounds[offset + 3 + axis] - origin) * inverse;
+			// a NaN (0 * infinity) fails the comparisons and keeps the interval
+			if (t1 > t2) {
+				double tmp = t1;
+				t1 = t2;
+				t2 = tmp;
+			}
+			if (t1 > tNear)
+				tNear = t1;
+			if (t2 < tFar)
+				tFar = t2;
+		}
+		return tNear <= tFar ? tNear : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Build the BVH of the mesh with the binned surface area heuristic (SAH) and
+	 * copy the faces into the index buffer in the order of the leaves
+	 * 
+	 * @param faceIndices the vertex indices of the faces, as given by the user
+	 */
+	private void buildBVH(int[] faceIndices) {
+		int faceCount = faceIndices.length / 3;
+		int[] faces = new int[faceCount];
+		// bounds and centers of the faces, computed once for the whole build and
+		// kept in the order of the faces array, so every node scans them in order
+		double[] faceBounds = new double[faceCount * 6];
+		double[] centers = new double[faceCount * 3];
+		for (int face = 0; face < faceCount; ++face) {
+			faces[face] = face;
+			emptyBounds(faceBounds, face * 6);
+			for (int vertex = 0; vertex < 3; ++vertex)
+				includePoint(faceBounds, face * 6, vertices, faceIndices[face * 3 + vertex] * 3);
+			for (int axis = 0; axis < 3; ++axis)
+				centers[face * 3 + axis] = (faceBounds[face * 6 + axis] + faceBounds[face * 6 + 3 + axis]) / 2;
+		}
+		// a binary tree with at least one face in every leaf has less than twice
+		// the faces nodes
+		nodeBounds = new double[Math.max(1, 2 * faceCount - 1) * 6];
+		nodeContents = new int[Math.max(1, 2 * faceCount - 1) * 2];
+		nodeCount = 0;
+		depth = buildBVHNode(faceBounds, faces, centers, 0, faceCount);
+		for (int face = 0; face < faceCount; ++face)
+			System.arraycopy(faceIndices, faces[face] * 3, indices, face * 3, 3);
+		// trim the node buffers
+		double[] bounds = new double[nodeCount * 6];
+		System.arraycopy(nodeBounds, 0, bounds, 0, bounds.length);
+		nodeBounds = bounds;
+		int[] contents = new int[nodeCount * 2];
+		System.arraycopy(nodeContents, 0, contents, 0, contents.length);
+		nodeContents = contents;
+	}
+
+	/**
+	 * Recursively build a node of the BVH over a range of the faces, by
+	 * partitioning the range into the two groups with the lowest SAH cost
+	 * 
+	 * @param faceBounds bounds of the faces - min x, y, z and max x, y, z of every
+	 *                   face, in the order of the faces array
+	 * @param faces      the faces, partitioned in place
+	 * @param centers    centers of the bounding boxes of the faces, in the order of
+	 *                   the faces array
+	 * @param start      first face of the range
+	 * @param end        end of the range (exclusive)
+	 * @return the depth of the node's subtree
+	 */
+	private int buildBVHNode(double[] faceBounds, int[] faces, double[] centers, int start, int end) {
+		int node = nodeCount++;
+		// bounds of the node and of the centers of its faces
+		double[] centerBounds = new double[6];
+		emptyBounds(nodeBounds, node * 6);
+		emptyBounds(centerBounds, 0);
+		for (int i = start; i < end; ++i) {
+			includeBounds(nodeBounds, node * 6, faceBounds, i * 6);
+			includePoint(centerBounds, 0, centers, i * 3);
+		}
+		int size = end - start;
+		if (size <= BVH_MAX_LEAF_SIZE) {
+			nodeContents[node * 2] = start;
+			nodeContents[node * 2 + 1] = size;
+			return 1;
+		}
+
+		// find the split with the lowest cost:
+		// area(left) * count(left) + area(right) * count(right)
+		int bestAxis = -1;
+		int bestSplit = 0;
+		double bestCost = Double.POSITIVE_INFINITY;
+		int[] counts = new int[BVH_BINS];
+		double[] bins = new double[BVH_BINS * 6];
+		double[] rightAreas = new double[BVH_BINS];
+		int[] rightCounts = new int[BVH_BINS];
+		double[] side = new double[6];
+		// only the axis along which the centers spread the most is binned - it
+		// almost always holds the best split, at a third of the cost
+		int axis = 0;
+		for (int a = 1; a < 3; ++a)
+			if (centerBounds[3 + a] - centerBounds[a] > centerBounds[3 + axis] - centerBounds[axis])
+				axis = a;
+		double extent = centerBounds[3 + axis] - centerBounds[axis];
+		if (extent > 0) {
+			for (int bin = 0; bin < BVH_BINS; ++bin)
+				emptyBounds(bins, bin * 6);
+			for (int i = start; i < end; ++i) {
+				int bin = binIndex(centers[i * 3 + axis], centerBounds[axis], extent);
+				++counts[bin];
+				includeBounds(bins, bin * 6, faceBounds, i * 6);
+			}
+			// sweep from the right to get the area and count of every right side
+			emptyBounds(side, 0);
+			int count = 0;
+			for (int bin = BVH_BINS - 1; bin > 0; --bin) {
+				includeBounds(side, 0, bins, bin * 6);
+				count += counts[bin];
+				rightAreas[bin] = surfaceArea(side);
+				rightCounts[bin] = count;
+			}
+			// sweep from the left, splitting before every bin
+			emptyBounds(side, 0);
+			count = 0;
+			for (int split = 1; split < BVH_BINS; ++split) {
+				includeBounds(side, 0, bins, (split - 1) * 6);
+				count += counts[split - 1];
+				if (count == 0 || rightCounts[split] == 0)
+					continue;
+				double cost = surfaceArea(side) * count + rightAreas[split] * rightCounts[split];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = split;
+				}
+			}
+		}
+
+		int middle;
+		if (bestAxis == -1) {
+			// all the centers are in the same point - split the range in half
+			middle = start + size / 2;
+		} else {
+			middle = start;
+			for (int i = start; i < end; ++i) {
+				if (binIndex(centers[i * 3 + bestAxis], centerBounds[bestAxis], extent) < bestSplit)
+					swapFaces(faces, faceBounds, centers, i, middle++);
+			}
+		}
+		int leftDepth = buildBVHNode(faceBounds, faces, centers, start, middle);
+		nodeContents[node * 2] = nodeCount;
+		nodeContents[node * 2 + 1] = 0;
+		int rightDepth = buildBVHNode(faceBounds, faces, centers, middle, end);
+		return 1 + Math.max(leftDepth, rightDepth);
+	}
+
+	/**
+	 * Swap two faces of the faces array with their bounds and centers
+	 * 
+	 * @param faces      the faces
+	 * @param faceBounds bounds of the faces
+	 * @param centers    centers of the faces
+	 * @param i          position of the first face
+	 * @param j          position of the second face
+	 */
+	private static void swapFaces(int[] faces, double[] faceBounds, double[] centers, int i, int j) {
+		if (i == j)
+			return;
+		int face = faces[i];
+		faces[i] = faces[j];
+		faces[j] = face;
+		for (int k = 0; k < 6; ++k) {
+			double bound = faceBounds[i * 6 + k];
+			faceBounds[i * 6 + k] = faceBounds[j * 6 + k];
+			faceBounds[j * 6 + k] = bound;
+		}
+		for (int k = 0; k < 3; ++k) {
+			double center = centers[i * 3 + k];
+			centers[i * 3 + k] = centers[j * 3 + k];
+			centers[j * 3 + k] = center;
+		}
+	}
+
+	/**
+	 * Reset bounds to an empty box
+	 * 
+	 * @param bounds the bounds buffer
+	 * @param offset offset of the bounds in the buffer
+	 */
+	private static void emptyBounds(double[] bounds, int offset) {
+		for (int axis = 0; axis < 3; ++axis) {
+			bounds[offset + axis] = Double.POSITIVE_INFINITY;
+			bounds[offset + 3 + axis] = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Grow bounds to include a point
+	 * 
+	 * @param bounds      the bounds buffer
+	 * @param offset      offset of the bounds in the buffer
+	 * @param points      the buffer of the point
+	 * @param pointOffset offset of the point in its buffer
+	 */
+	private static void includePoint(double[] bounds, int offset, double[] points, int pointOffset) {
+		for (int axis = 0; axis < 3; ++axis) {
+			double c = points[pointOffset + axis];
+			if (c < bounds[offset + axis])
+				bounds[offset + axis] = c;
+			if (c > bounds[offset + 3 + axis])
+				bounds[offset + 3 + axis] = c;
+		}
+	}
+
+	/**
+	 * Grow bounds to include other bounds
+	 * 
+	 * @param bounds      the bounds buffer
+	 * @param offset      offset of the bounds in the buffer
+	 * @param other       the buffer of the other bounds
+	 * @param otherOffset offset of the other bounds in their buffer
+	 */
+	private static void includeBounds(double[] bounds, int offset, double[] other, int otherOffset) {
+		for (int axis = 0; axis < 3; ++axis) {
+			if (other[otherOffset + axis] < bounds[offset + axis])
+				bounds[offset + axis] = other[otherOffset + axis];
+			if (other[otherOffset + 3 + axis] > bounds[offset + 3 + axis])
+				bounds[offset + 3 + axis] = other[otherOffset + 3 + axis];
+		}
+	}
+
+	/**
+	 * Surface area of bounds (0 for empty bounds)
+	 * 
+	 * @param bounds the bounds (at the start of the buffer)
+	 * @return the surface area
+	 */
+	private static double surfaceArea(double[] bounds) {
+		if (bounds[0] > bounds[3])
+			return 0;
+		double dx = bounds[3] - bounds[0];
+		double dy = bounds[4] - bounds[1];
+		double dz = bounds[5] - bounds[2];
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Find the SAH bin of a center along an axis
+	 * 
+	 * @param center the center coordinate
+	 * @param min    minimal center coordinate along the axis
+	 * @param extent extent of the centers along the axis
+	 * @return the index of the bin
+	 */
+	private static int binIndex(double center, double min, double extent) {
+		return Math.min(BVH_BINS - 1, (int) ((center - min) / extent * BVH_BINS));
+	}
+
+	/**
+	 * Intersection with a face of the mesh - knows its face, so its normal is
+	 * found without looking the face up. The surface parameters are the
+	 * barycentric coordinates of the point on the face
+	 */
+	private static class MeshPoint extends GeoPoint {
+		/**
+		 * The intersected face
+		 */
+		private final int face;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param mesh  the mesh
+		 * @param point point of intersection
+		 * @param face  the intersected face
+		 * @param t     distance of the point from the ray's head
+		 * @param u     barycentric coordinate of the face's second vertex
+		 * @param v     barycentric coordinate of the face's third vertex
+		 */
+		MeshPoint(TriangleMesh mesh, Point point, int face, double t, double u, double v) {
+			super(mesh, point, t, u, v);
+			this.face = face;
+		}
+
+		@Override
+		protected Vector calcNormal() {
+			return ((TriangleMesh) geometry).getFaceNormal(face);
+		}
+	}
+}
@@ -47,4 +47,22 @@ public class Tube extends Geometry {
 	protected List<GeoPoint> findGeoIntersectionsHelper(Ray ray, double maxDistance) {
 		return null;
 	}
+
+	/**
+	 * Getter for the tube's axis
+	 * 
+	 * @return the axis ray
+	 */
+	public Ray getAxisRay() {
+		return axisRay;
+	}
+
+	/**
+	 * Getter for the tube's radius
+	 * 
+	 * @return the radius
+	 */
+	public double getRadius() {
+		return radius;
+	}
 }
@@ -57,4 +57,13 @@ public class DirectionalLight extends Light implements LightSource {
     public double getDistance(Point p) {
         return Double.POSITIVE_INFINITY;
     }
+
+    /**
+     * Getter for the direction of the light
+     * 
+     * @return the direction
+     */
+    public Vector getDirection() {
+        return direction;
+    }
 }
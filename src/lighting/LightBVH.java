@@ -0,0 +1,423 @@
+package lighting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import primitives.Double3;
+import primitives.Point;
+import primitives.RandomSequence;
+
+/**
+ * Bounding volume hierarchy of the light sources of a scene by their influence
+ * - for finding the lights that can affect a point without testing all of
+ * them.<br/>
+ * A light's influence is where its intensity is at least a threshold (in some
+ * color component): a sphere around a point light, by its attenuation (see
+ * {@link LightSource#getInfluenceRadius(double)}), cut by the cone of a spot
+ * light (see {@link SpotLight#getInfluenceCosine(double)}). The lights that
+ * are below the threshold everywhere are dropped, the lights whose influence
+ * is unbounded (e.g. directional lights, or point lights without attenuation)
+ * are selected for every point, and the bounded ones are kept in a BVH of the
+ * boxes of their spheres.<br/>
+ * When the max amount of lights per point is set and more lights can affect a
+ * point, the lights are selected stochastically by their intensity at the
+ * point, with the random numbers of the current sample of the thread's
+ * {@link RandomSequence}, and every selected light is scaled so the expected
+ * light is the same (unbiased).
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class LightBVH {
+	/**
+	 * Max amount of lights in a leaf of the BVH
+	 */
+	private static final int MAX_LEAF_SIZE = 4;
+
+	/**
+	 * The selection of every thread, reused by every query
+	 */
+	private static final ThreadLocal<Selection> SELECTION = ThreadLocal.withInitial(Selection::new);
+
+	/**
+	 * The lights that may affect some point - the bounded ones by the order of
+	 * the leaves, and then the unbounded ones
+	 */
+	private final LightSource[] lights;
+
+	/**
+	 * Amount of the bounded lights (the first ones of the lights array)
+	 */
+	private final int boundedCount;
+
+	/**
+	 * Max amount of lights to select for a point, 0 for all the affecting lights
+	 */
+	private final int maxLights;
+
+	/**
+	 * Position (x, y, z) and squared influence radius of every light, 4 per light
+	 */
+	private final double[] spheres;
+
+	/**
+	 * Direction (x, y, z) and influence cosine of every light, 4 per light (a
+	 * cosine of -1 for the lights without a cone)
+	 */
+	private final double[] cones;
+
+	/**
+	 * Bounds of the nodes - min x, y, z and max x, y, z of every node
+	 */
+	private double[] nodeBounds;
+
+	/**
+	 * Contents of the nodes - for a leaf its first light and its amount of
+	 * lights, for an inner node its right child and 0 (the left child follows it)
+	 */
+	private int[] nodeContents;
+
+	/**
+	 * Amount of the nodes built so far
+	 */
+	private int nodeCount;
+
+	/**
+	 * Depth of the BVH (the size of the traversal stack)
+	 */
+	private int depth;
+
+	/**
+	 * Build the hierarchy of the lights that can affect points above a threshold
+	 * 
+	 * @param sources   the light sources
+	 * @param threshold the intensity below which a light doesn't affect a point
+	 * @param maxLights max amount of lights to select for a point (stochastically
+	 *                  if more lights can affect it), 0 for all of them
+	 * @throws IllegalArgumentException if the threshold is not positive or the
+	 *                                  max amount of lights is negative
+	 */
+	public LightBVH(List<LightSource> sources, double threshold, int maxLights) {
+		if (threshold <= 0)
+			throw new IllegalArgumentException("Light influence threshold must be positive");
+		if (maxLights < 0)
+			throw new IllegalArgumentException("Max amount of lights must not be negative");
+		this.maxLights = maxLights;
+		List<LightSource> bounded = new ArrayList<>();
+		List<LightSource> unbounded = new ArrayList<>();
+		List<Double> radii = new ArrayList<>();
+		for (LightSource light : sources) {
+			double radius = light.getInfluenceRadius(threshold);
+			if (radius < 0 || light instanceof SpotLight spot && spot.getInfluenceCosine(threshold) > 1)
+				continue;
+			if (radius == Double.POSITIVE_INFINITY || !(light instanceof PointLight)) {
+				unbounded.add(light);
+			} else {
+				bounded.add(light);
+				radii.add(radius);
+			}
+		}
+		boundedCount = bounded.size();
+		lights = new LightSource[boundedCount + unbounded.size()];
+		spheres = new double[lights.length * 4];
+		cones = new double[lights.length * 4];
+
+		// the bounded lights are ordered by the leaves - sort indices of them
+		Integer[] order = new Integer[boundedCount];
+		double[] centers = new double[boundedCount * 3];
+		for (int i = 0; i < boundedCount; ++i) {
+			order[i] = i;
+			Double3 position = ((PointLight) bounded.get(i)).getPosition().xyz;
+			centers[i * 3] = position.d1;
+			centers[i * 3 + 1] = position.d2;
+			centers[i * 3 + 2] = position.d3;
+		}
+		nodeBounds = new double[Math.max(1, 2 * boundedCount - 1) * 6];
+		nodeContents = new int[Math.max(1, 2 * boundedCount - 1) * 2];
+		double[] lightRadii = radii.stream().mapToDouble(Double::doubleValue).toArray();
+		depth = boundedCount == 0 ? 0 : buildNode(order, centers, lightRadii, 0, boundedCount);
+		nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 6);
+		nodeContents = Arrays.copyOf(nodeContents, nodeCount * 2);
+
+		for (int i = 0; i < boundedCount; ++i)
+			setLight(i, bounded.get(order[i]), lightRadii[order[i]], threshold);
+		for (int i = 0; i < unbounded.size(); ++i)
+			setLight(boundedCount + i, unbounded.get(i), Double.POSITIVE_INFINITY, threshold);
+	}
+
+	/**
+	 * Put a light into its place in the arrays of the lights
+	 * 
+	 * @param index     the place of the light
+	 * @param light     the light
+	 * @param radius    the influence radius of the light
+	 * @param threshold the intensity threshold
+	 */
+	private void setLight(int index, LightSource light, double radius, double threshold) {
+		lights[index] = light;
+		if (light instanceof PointLight point) {
+			Double3 position = point.getPosition().xyz;
+			spheres[index * 4] = position.d1;
+			spheres[index * 4 + 1] = position.d2;
+			spheres[index * 4 + 2] = position.d3;
+		}
+		spheres[index * 4 + 3] = radius * radius;
+		cones[index * 4 + 3] = -1;
+		if (light instanceof SpotLight spot) {
+			Double3 direction = spot.getDirection().xyz;
+			cones[index * 4] = direction.d1;
+			cones[index * 4 + 1] = direction.d2;
+			cones[index * 4 + 2] = direction.d3;
+			cones[index * 4 + 3] = spot.getInfluenceCosine(threshold);
+		}
+	}
+
+	/**
+	 * Recursively build a node of the BVH over a range of the bounded lights, by
+	 * splitting the range at the median of the positions along the axis they
+	 * spread the most
+	 * 
+	 * @param order   indices of the lights, sorted in place by the leaves
+	 * @param centers positions of the lights by their indices
+	 * @param radii   influence radii of the lights by their indices
+	 * @param start   first light of the range
+	 * @param end     end of the range (exclusive)
+	 * @return the depth of the node's subtree
+	 */
+	private int buildNode(Integer[] order, double[] centers, double[] radii, int start, int end) {
+		int node = nodeCount++;
+		int offset = node * 6;
+		for (int axis = 0; axis < 3; ++axis) {
+			nodeBounds[offset + axis] = Double.POSITIVE_INFINITY;
+			nodeBounds[offset + 3 + axis] = Double.NEGATIVE_INFINITY;
+		}
+		double[] centerBounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int i = start; i < end; ++i) {
+			int light = order[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				double center = centers[light * 3 + axis];
+				nodeBounds[offset + axis] = Math.min(nodeBounds[offset + axis], center - radii[light]);
+				nodeBounds[offset + 3 + axis] = Math.max(nodeBounds[offset + 3 + axis], center + radii[light]);
+				centerBounds[axis] = Math.min(centerBounds[axis], center);
+				centerBounds[3 + axis] = Math.max(centerBounds[3 + axis], center);
+			}
+		}
+		if (end - start <= MAX_LEAF_SIZE) {
+			nodeContents[node * 2] = start;
+			nodeContents[node * 2 + 1] = end - start;
+			return 1;
+		}
+		int axis = 0;
+		for (int a = 1; a < 3; ++a)
+			if (centerBounds[3 + a] - centerBounds[a] > centerBounds[3 + axis] - centerBounds[axis])
+				axis = a;
+		int sortAxis = axis;
+		Arrays.sort(order, start, end, Comparator.comparingDouble(light -> centers[light * 3 + sortAxis]));
+		int middle = (start + end) >>> 1;
+		int leftDepth = buildNode(order, centers, radii, start, middle);
+		nodeContents[node * 2] = nodeCount;
+		nodeContents[node * 2 + 1] = 0;
+		int rightDepth = buildNode(order, centers, radii, middle, end);
+		return 1 + Math.max(leftDepth, rightDepth);
+	}
+
+	/**
+	 * Find the lights that can affect a point. The selection belongs to the
+	 * current thread and is overwritten by its next query, so it must be used
+	 * before the next query of the thread
+	 * 
+	 * @param p the point
+	 * @return the selected lights and their scales
+	 */
+	public Selection select(Point p) {
+		Selection selection = SELECTION.get();
+		selection.reset(lights.length, depth);
+		double x = p.xyz.d1, y = p.xyz.d2, z = p.xyz.d3;
+		if (boundedCount > 0) {
+			int[] stack = selection.stack;
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				int offset = node * 6;
+				if (x < nodeBounds[offset] || y < nodeBounds[offset + 1] || z < nodeBounds[offset + 2]
+						|| x > nodeBounds[offset + 3] || y > nodeBounds[offset + 4] || z > nodeBounds[offset + 5])
+					continue;
+				int count = nodeContents[node * 2 + 1];
+				if (count == 0) {
+					stack[top++] = nodeContents[node * 2];
+					stack[top++] = node + 1;
+					continue;
+				}
+				int first = nodeContents[node * 2];
+				for (int light = first; light < first + count; ++light)
+					if (affects(light, x, y, z))
+						selection.add(lights[light], 1);
+			}
+		}
+		for (int light = boundedCount; light < lights.length; ++light)
+			if (affects(light, x, y, z))
+				selection.add(lights[light], 1);
+		if (maxLights > 0 && selection.size > maxLights)
+			selection.sample(p, maxLights);
+		return selection;
+	}
+
+	/**
+	 * Checks whether a point is in the influence of a light - in its sphere and in
+	 * its cone
+	 * 
+	 * @param light the index of the light
+	 * @param x     x coordinate of the point
+	 * @param y     y coordinate of the point
+	 * @param z     z coordinate of the point
+	 * @return true if the light can affect the point
+	 */
+	private boolean affects(int light, double x, double y, double z) {
+		double cosine = cones[light * 4 + 3];
+		if (light >= boundedCount && cosine == -1)
+			return true;
+		double dx = x - spheres[light * 4], dy = y - spheres[light * 4 + 1], dz = z - spheres[light * 4 + 2];
+		double distanceSquared = dx * dx + dy * dy + dz * dz;
+		if (distanceSquared > spheres[light * 4 + 3])
+			return false;
+		if (cosine == -1)
+			return true;
+		// the angle from the direction of the spot: d . dir >= cosine * |d|
+		double projection = dx * cones[light * 4] + dy * cones[light * 4 + 1] + dz * cones[light * 4 + 2];
+		return projection >= 0 && projection * projection >= cosine * cosine * distanceSquared;
+	}
+
+	/**
+	 * The lights selected for a point, with the scale of the intensity of every
+	 * selected light (1 unless the lights were selected stochastically)
+	 */
+	public static final class Selection {
+		private LightSource[] lights = new LightSource[0];
+		private double[] scales = new double[0];
+		private double[] weights = new double[0];
+		private int[] stack = new int[0];
+		private int size;
+
+		/**
+		 * Private constructor - the selections are per thread
+		 */
+		private Selection() {
+		}
+
+		/**
+		 * Getter for the amount of the selected lights
+		 * 
+		 * @return the amount of the lights
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Get a selected light
+		 * 
+		 * @param i index of the light in the selection
+		 * @return the light
+		 */
+		public LightSource getLight(int i) {
+			return lights[i];
+		}
+
+		/**
+		 * Get the scale of the intensity of a selected light
+		 * 
+		 * @param i index of the light in the selection
+		 * @return the scale
+		 */
+		public double getScale(int i) {
+			return scales[i];
+		}
+
+		/**
+		 * Empty the selection and make room for the lights and the traversal
+		 * 
+		 * @param capacity max amount of lights
+		 * @param depth    depth of the BVH
+		 */
+		private void reset(int capacity, int depth) {
+			if (lights.length < capacity) {
+				lights = new LightSource[capacity];
+				scales = new double[capacity];
+				weights = new double[capacity];
+			}
+			if (stack.length < depth + 1)
+				stack = new int[depth + 1];
+			size = 0;
+		}
+
+		/**
+		 * Add a light to the selection
+		 * 
+		 * @param light the light
+		 * @param scale the scale of its intensity
+		 */
+		private void add(LightSource light, double scale) {
+			lights[size] = light;
+			scales[size++] = scale;
+		}
+
+		/**
+		 * Replace the selection by a sample of its lights - the lights are picked
+		 * with repetition by their intensity at the point, and the scale of every
+		 * picked light is the amount of its picks over its expected amount
+		 * 
+		 * @param p     the point
+		 * @param picks amount of picks
+		 */
+		private void sample(Point p, int picks) {
+			double total = 0;
+			for (int i = 0; i < size; ++i) {
+				Double3 rgb = lights[i].getIntensity(p).getRgb();
+				total += rgb.d1 + rgb.d2 + rgb.d3;
+				weights[i] = total;
+				scales[i] = 0;
+			}
+			if (total == 0) {
+				size = 0;
+				return;
+			}
+			RandomSequence random = RandomSequence.current();
+			for (int pick = 0; pick < picks; ++pick) {
+				double target = random.next() * total;
+				int low = 0, high = size - 1;
+				while (low < high) {
+					int middle = (low + high) >>> 1;
+					if (weights[middle] <= target)
+						low = middle + 1;
+					else
+						high = middle;
+				}
+				double weight = weights[low] - (low == 0 ? 0 : weights[low - 1]);
+				scales[low] += total / (weight * picks);
+			}
+			// keep only the picked lights
+			int picked = 0;
+			for (int i = 0; i < size; ++i) {
+				if (scales[i] > 0) {
+					lights[picked] = lights[i];
+					scales[picked++] = scales[i];
+				}
+			}
+			size = picked;
+		}
+	}
+
+	/**
+	 * Getter for the amount of the lights that may affect some point
+	 * 
+	 * @return the amount of the lights
+	 */
+	public int getLightCount() {
+		return lights.length;
+	}
+
+}
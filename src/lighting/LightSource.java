@@ -36,4 +36,19 @@ public interface LightSource {
      * @return The distance to the point.
      */
     public double getDistance(Point p);
+
+    /**
+     * Get the distance from the light beyond which its intensity is below a
+     * threshold in every color component (by the attenuation of the light), for
+     * culling the lights that can't affect a point
+     * 
+     * @param threshold the intensity threshold
+     * 
+     * @return the distance, positive infinity if the light may be above the
+     *         threshold at any distance (the default), or a negative number if it
+     *         is below the threshold everywhere
+     */
+    default double getInfluenceRadius(double threshold) {
+        return Double.POSITIVE_INFINITY;
+    }
 }
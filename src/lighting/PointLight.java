@@ -100,4 +100,57 @@ public class PointLight extends Light implements LightSource {
 	public double getDistance(Point p) {
 		return position.distance(p);
 	}
+
+	/**
+	 * The intensity is I / (kC + kL * d + kQ * d^2), so it is below the threshold
+	 * beyond the positive root of kQ * d^2 + kL * d + kC = I / threshold
+	 */
+	@Override
+	public double getInfluenceRadius(double threshold) {
+		Double3 rgb = super.getIntensity().getRgb();
+		double limit = Math.max(rgb.d1, Math.max(rgb.d2, rgb.d3)) / threshold;
+		if (kC > limit)
+			return -1;
+		if (kQ > 0)
+			return (Math.sqrt(kL * kL + 4 * kQ * (limit - kC)) - kL) / (2 * kQ);
+		if (kL > 0)
+			return (limit - kC) / kL;
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Getter for the position of the light
+	 * 
+	 * @return the position
+	 */
+	public Point getPosition() {
+		return position;
+	}
+
+	/**
+	 * Getter for kC
+	 * 
+	 * @return the constant attenuation factor
+	 */
+	public double getKC() {
+		return kC;
+	}
+
+	/**
+	 * Getter for kL
+	 * 
+	 * @return the linear attenuation factor
+	 */
+	public double getKL() {
+		return kL;
+	}
+
+	/**
+	 * Getter for kQ
+	 * 
+	 * @return the quadratic attenuation factor
+	 */
+	public double getKQ() {
+		return kQ;
+	}
 }
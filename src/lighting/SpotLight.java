@@ -58,4 +58,42 @@ public class SpotLight extends PointLight {
 		narrowBeam = nb;
 		return this;
 	}
+
+	/**
+	 * Get the cosine of the angle from the direction of the light beyond which
+	 * the intensity of the light is below a threshold in every color component at
+	 * any distance - the cone of the light's influence. The attenuation is at
+	 * least kC, so the beam factor must be at least threshold * kC / I
+	 * 
+	 * @param threshold the intensity threshold
+	 * @return the cosine of the cone's half angle (-1 for no cone), more than 1
+	 *         if the light is below the threshold everywhere
+	 */
+	public double getInfluenceCosine(double threshold) {
+		// a beam factor of power 0 lights every direction
+		if (narrowBeam <= 0)
+			return -1;
+		Double3 rgb = getIntensity().getRgb();
+		double factor = threshold * Math.max(kC, 0) / Math.max(rgb.d1, Math.max(rgb.d2, rgb.d3));
+		// the beam factor is a power of a cosine - nothing is lit behind the light
+		return Math.max(Math.pow(factor, 1 / narrowBeam), 0);
+	}
+
+	/**
+	 * Getter for the direction of the light
+	 * 
+	 * @return the direction
+	 */
+	public Vector getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Getter for the narrow beam factor
+	 * 
+	 * @return the narrow beam factor
+	 */
+	public double getNarrowBeam() {
+		return narrowBeam;
+	}
 }
@@ -82,6 +82,30 @@ public class Color {
 		return new java.awt.Color(ir > 255 ? 255 : ir, ig > 255 ? 255 : ig, ib > 255 ? 255 : ib);
 	}
 
+	/**
+	 * Color getter - returns the color packed into an int like
+	 * {@link java.awt.Color#getRGB()} (0xAARRGGBB, fully opaque), without creating
+	 * a java.awt.Color object. Any component bigger than 255 is set to 255
+	 * 
+	 * @return the packed RGB value of the color
+	 */
+	public int getRGB() {
+		int ir = (int) rgb.d1;
+		int ig = (int) rgb.d2;
+		int ib = (int) rgb.d3;
+		return 0xFF000000 | (ir > 255 ? 255 : ir) << 16 | (ig > 255 ? 255 : ig) << 8 | (ib > 255 ? 255 : ib);
+	}
+
+	/**
+	 * Getter of the RGB components of the color (without the conversion and the
+	 * upper limit of java.awt.Color)
+	 * 
+	 * @return triad of Red/Green/Blue components
+	 */
+	public Double3 getRgb() {
+		return rgb;
+	}
+
 	/**
 	 * Operation of adding this and one or more other colors (by component)
 	 *
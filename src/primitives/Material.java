@@ -22,6 +22,29 @@ public class Material {
 	public Double3 kT = Double3.ZERO;
 	public Double3 kR = Double3.ZERO;
 
+	/**
+	 * Kinds of materials by the effects they can contribute to the color of a
+	 * point, so the shading runs only the work that the material can contribute
+	 */
+	public enum Kind {
+		/**
+		 * No lighting and no global effects - only the emission of the geometry
+		 */
+		EMISSIVE,
+		/**
+		 * Only the local effects of the lights (diffuse and specular)
+		 */
+		DIFFUSE,
+		/**
+		 * Reflection (and the local effects, if any) without refraction
+		 */
+		MIRROR,
+		/**
+		 * Refraction (and the reflection and the local effects, if any)
+		 */
+		GLASS
+	}
+
 	/**
 	 * setter for kD that recieves Double3
 	 * 
@@ -120,4 +143,36 @@ public class Material {
 		kR = new Double3(d);
 		return this;
 	}
+
+	/**
+	 * Classify the material by the effects it can contribute. The kind is found
+	 * from the coefficients on every call, so it follows any change of them
+	 * 
+	 * @return the kind of the material
+	 */
+	public Kind getKind() {
+		if (!Double3.ZERO.equals(kT))
+			return Kind.GLASS;
+		if (!Double3.ZERO.equals(kR))
+			return Kind.MIRROR;
+		return hasLocalEffects() ? Kind.DIFFUSE : Kind.EMISSIVE;
+	}
+
+	/**
+	 * Checks whether the lights affect the color of the material
+	 * 
+	 * @return true if the material has a diffuse or a specular coefficient
+	 */
+	public boolean hasLocalEffects() {
+		return !Double3.ZERO.equals(kD) || !Double3.ZERO.equals(kS);
+	}
+
+	/**
+	 * Checks whether the material reflects
+	 * 
+	 * @return true if the material has a reflection coefficient
+	 */
+	public boolean isReflective() {
+		return !Double3.ZERO.equals(kR);
+	}
 }
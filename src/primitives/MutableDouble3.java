@@ -0,0 +1,220 @@
+package primitives;
+
+/**
+ * Mutable triad of numbers for the hot paths of the renderer (shading and
+ * intersections). Unlike {@link Double3}, {@link Point}, {@link Vector} and
+ * {@link Color}, all the operations change the object itself and return it, so
+ * a computation can run on one scratch object instead of allocating a new
+ * object for every operation.<br/>
+ * The objects are not thread-safe - they are meant to be local to a single
+ * calculation.
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class MutableDouble3 {
+	public double d1;
+	public double d2;
+	public double d3;
+
+	/**
+	 * Constructor of a zero triad
+	 */
+	public MutableDouble3() {
+	}
+
+	/**
+	 * Constructor to initialize the triad with its three number values
+	 * 
+	 * @param d1 first number value
+	 * @param d2 second number value
+	 * @param d3 third number value
+	 */
+	public MutableDouble3(double d1, double d2, double d3) {
+		this.d1 = d1;
+		this.d2 = d2;
+		this.d3 = d3;
+	}
+
+	/**
+	 * Set the three number values
+	 * 
+	 * @param d1 first number value
+	 * @param d2 second number value
+	 * @param d3 third number value
+	 * @return this triad
+	 */
+	public MutableDouble3 set(double d1, double d2, double d3) {
+		this.d1 = d1;
+		this.d2 = d2;
+		this.d3 = d3;
+		return this;
+	}
+
+	/**
+	 * Set the values of an immutable triad
+	 * 
+	 * @param rhs the triad to copy
+	 * @return this triad
+	 */
+	public MutableDouble3 set(Double3 rhs) {
+		return set(rhs.d1, rhs.d2, rhs.d3);
+	}
+
+	/**
+	 * Set the triad to the difference of two triads (e.g. the vector between two
+	 * points)
+	 * 
+	 * @param lhs left handle side operand
+	 * @param rhs right handle side operand
+	 * @return this triad
+	 */
+	public MutableDouble3 setSubtract(Double3 lhs, Double3 rhs) {
+		return set(lhs.d1 - rhs.d1, lhs.d2 - rhs.d2, lhs.d3 - rhs.d3);
+	}
+
+	/**
+	 * Add a triad to this triad
+	 * 
+	 * @param rhs right handle side operand for addition
+	 * @return this triad
+	 */
+	public MutableDouble3 add(Double3 rhs) {
+		d1 += rhs.d1;
+		d2 += rhs.d2;
+		d3 += rhs.d3;
+		return this;
+	}
+
+	/**
+	 * Add the RGB components of a color to this triad
+	 * 
+	 * @param color the color to add
+	 * @return this triad
+	 */
+	public MutableDouble3 add(Color color) {
+		return add(color.getRgb());
+	}
+
+	/**
+	 * Add the product of two triads scaled by a number to this triad:
+	 * this += lhs * rhs * scale (per component)
+	 * 
+	 * @param lhs   first triad of the product
+	 * @param rhs   second triad of the product
+	 * @param scale scale factor of the product
+	 * @return this triad
+	 */
+	public MutableDouble3 addProduct(MutableDouble3 lhs, Double3 rhs, double scale) {
+		d1 += lhs.d1 * rhs.d1 * scale;
+		d2 += lhs.d2 * rhs.d2 * scale;
+		d3 += lhs.d3 * rhs.d3 * scale;
+		return this;
+	}
+
+	/**
+	 * Add the product of two triads to this triad: this += lhs * rhs (per
+	 * component)
+	 * 
+	 * @param lhs first triad of the product
+	 * @param rhs second triad of the product
+	 * @return this triad
+	 */
+	public MutableDouble3 addProduct(Double3 lhs, Double3 rhs) {
+		d1 += lhs.d1 * rhs.d1;
+		d2 += lhs.d2 * rhs.d2;
+		d3 += lhs.d3 * rhs.d3;
+		return this;
+	}
+
+	/**
+	 * Scale (multiply) the triad by a number
+	 * 
+	 * @param rhs right handle side operand for scaling
+	 * @return this triad
+	 */
+	public MutableDouble3 scale(double rhs) {
+		d1 *= rhs;
+		d2 *= rhs;
+		d3 *= rhs;
+		return this;
+	}
+
+	/**
+	 * Multiply the triad by another triad (per component)
+	 * 
+	 * @param rhs right handle side operand for product
+	 * @return this triad
+	 */
+	public MutableDouble3 product(Double3 rhs) {
+		d1 *= rhs.d1;
+		d2 *= rhs.d2;
+		d3 *= rhs.d3;
+		return this;
+	}
+
+	/**
+	 * Dot product of the triad with another triad
+	 * 
+	 * @param rhs right handle side operand
+	 * @return the dot product
+	 */
+	public double dotProduct(Double3 rhs) {
+		return d1 * rhs.d1 + d2 * rhs.d2 + d3 * rhs.d3;
+	}
+
+	/**
+	 * Square of the length of the triad as a vector
+	 * 
+	 * @return the length squared
+	 */
+	public double lengthSquared() {
+		return d1 * d1 + d2 * d2 + d3 * d3;
+	}
+
+	/**
+	 * Normalize the triad as a vector
+	 * 
+	 * @return this triad
+	 * @throws IllegalArgumentException if the triad is zero
+	 */
+	public MutableDouble3 normalize() {
+		double length = Math.sqrt(lengthSquared());
+		if (Util.isZero(length))
+			throw new IllegalArgumentException("ERROR zero vector can't be normalized");
+		return scale(1 / length);
+	}
+
+	/**
+	 * Checks whether all the numbers are lower than a test number
+	 * 
+	 * @param k the test number
+	 * @return true if all the numbers are less than k, false otherwise
+	 */
+	public boolean lowerThan(double k) {
+		return d1 < k && d2 < k && d3 < k;
+	}
+
+	/**
+	 * Create an immutable triad with the current values
+	 * 
+	 * @return new Double3 object
+	 */
+	public Double3 toDouble3() {
+		return new Double3(d1, d2, d3);
+	}
+
+	/**
+	 * Create a color with the current values as its RGB components
+	 * 
+	 * @return new Color object
+	 */
+	public Color toColor() {
+		return new Color(d1, d2, d3);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + d1 + "," + d2 + "," + d3 + ")";
+	}
+}
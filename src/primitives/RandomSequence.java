@@ -0,0 +1,165 @@
+package primitives;
+
+/**
+ * Deterministic random sequences for the stochastic sampling of the rendering
+ * (e.g. jittered supersampling, soft shadows, glossy reflections). Every value
+ * is a function of a key - the pixel, the sample of the pixel and the
+ * dimension (the how many-th random number of the sample it is) - so an image
+ * is the same for any amount of threads and any order of the pixels, and
+ * there is no shared generator to contend on.<br/>
+ * The first two dimensions of the samples of a pixel are a scrambled Sobol
+ * (0,2)-sequence - any 2^k consecutive samples from 0 cover the unit square
+ * with one sample in every cell of a 2^a x 2^b grid with a + b = k - and the
+ * scramble differs by pixel, so neighboring pixels don't share a pattern. The
+ * rest of the dimensions are hashes of the key.<br/>
+ * The static methods are stateless. The instance of every thread (see
+ * {@link #current()}) walks the dimensions of the current sample: the camera
+ * starts a sample before tracing its ray, and the ray tracer takes the
+ * sample's random numbers one after the other. Nothing is allocated on the
+ * way.
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class RandomSequence {
+	/**
+	 * The sequence of every thread
+	 */
+	private static final ThreadLocal<RandomSequence> CURRENT = ThreadLocal.withInitial(RandomSequence::new);
+
+	/**
+	 * Increment of the keys of the hash (2^64 / golden ratio)
+	 */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private long pixel;
+	private int sample;
+	private int dimension;
+
+	/**
+	 * Private constructor - the sequences are per thread
+	 */
+	private RandomSequence() {
+	}
+
+	/**
+	 * Get the sequence of the current thread
+	 * 
+	 * @return the sequence
+	 */
+	public static RandomSequence current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Start a sample of a pixel - the next random number is its first dimension
+	 * 
+	 * @param pixel  index of the pixel
+	 * @param sample index of the sample in the pixel
+	 * @return the sequence itself
+	 */
+	public RandomSequence start(long pixel, int sample) {
+		this.pixel = pixel;
+		this.sample = sample;
+		dimension = 0;
+		return this;
+	}
+
+	/**
+	 * Start the next sample of the current pixel
+	 * 
+	 * @return the sequence itself
+	 */
+	public RandomSequence nextSample() {
+		++sample;
+		dimension = 0;
+		return this;
+	}
+
+	/**
+	 * Getter for the pixel of the current sample
+	 * 
+	 * @return index of the pixel
+	 */
+	public long getPixel() {
+		return pixel;
+	}
+
+	/**
+	 * Getter for the current sample
+	 * 
+	 * @return index of the sample in the pixel
+	 */
+	public int getSample() {
+		return sample;
+	}
+
+	/**
+	 * Get the random number of the next dimension of the current sample
+	 * 
+	 * @return the random number in [0, 1)
+	 */
+	public double next() {
+		return get(pixel, sample, dimension++);
+	}
+
+	/**
+	 * Get the random number of the next dimension of the current sample in a
+	 * range
+	 * 
+	 * @param min value (included)
+	 * @param max value (excluded)
+	 * @return the random number in [min, max)
+	 */
+	public double next(double min, double max) {
+		return next() * (max - min) + min;
+	}
+
+	/**
+	 * Get the random number of a dimension of a sample of a pixel
+	 * 
+	 * @param pixel     index of the pixel
+	 * @param sample    index of the sample in the pixel
+	 * @param dimension index of the random number in the sample
+	 * @return the random number in [0, 1)
+	 */
+	public static double get(long pixel, int sample, int dimension) {
+		if (dimension < 2) {
+			// Sobol's first two dimensions scrambled by a random digital shift of the
+			// pixel - the shift keeps the stratification of the samples
+			int bits = dimension == 0 ? Integer.reverse(sample) : sobol2(sample);
+			int scramble = (int) (mix(pixel * GOLDEN_GAMMA + dimension) >>> 32);
+			return Integer.toUnsignedLong(bits ^ scramble) * 0x1p-32;
+		}
+		long key = mix(pixel * GOLDEN_GAMMA + sample) + (long) dimension * GOLDEN_GAMMA;
+		return (mix(key) >>> 11) * 0x1p-53;
+	}
+
+	/**
+	 * The second dimension of the Sobol sequence as the bits of the binary
+	 * fraction
+	 * 
+	 * @param index index in the sequence
+	 * @return the fraction's bits
+	 */
+	private static int sobol2(int index) {
+		int result = 0;
+		for (int direction = 1 << 31; index != 0; index >>>= 1, direction ^= direction >>> 1)
+			if ((index & 1) != 0)
+				result ^= direction;
+		return result;
+	}
+
+	/**
+	 * Mix the bits of a key into a hash whose bits are all affected by every bit
+	 * of the key (the finalizer of SplitMix64)
+	 * 
+	 * @param key the key
+	 * @return the hash
+	 */
+	private static long mix(long key) {
+		key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+		key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+		return key ^ (key >>> 31);
+	}
+}
@@ -80,7 +80,8 @@ public class Ray {
 	 * @return a point at the given distance from the ray's head
 	 */
 	public Point getPoint(double t) {
-		return p0.add(dir.scale(t));
+		// computed on the coordinates directly to avoid the intermediate vectors
+		return new Point(p0.xyz.d1 + dir.xyz.d1 * t, p0.xyz.d2 + dir.xyz.d2 * t, p0.xyz.d3 + dir.xyz.d3 * t);
 	}
 
 	/**
@@ -109,15 +110,16 @@ public class Ray {
 
 		// closest point to the ray's origin found so far
 		GeoPoint closestPoint = null;
-		// distance squared to the closest point found so far
-		double closestDistanceSquared = Double.MAX_VALUE;
+		// distance to the closest point found so far
+		double closestDistance = Double.MAX_VALUE;
 
-		// for each GeoPoint, p, in the list
+		// for each GeoPoint, p, in the list - by the distance the intersection
+		// recorded, if it did
 		for (GeoPoint p : lst) {
-			double distanceSquared = p.point.distanceSquared(p0);
-			if (distanceSquared < closestDistanceSquared) {
+			double distance = p.getDistance(this);
+			if (distance < closestDistance) {
 				closestPoint = p;
-				closestDistanceSquared = distanceSquared;
+				closestDistance = distance;
 			}
 		}
 
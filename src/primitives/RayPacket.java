@@ -0,0 +1,89 @@
+package primitives;
+
+/**
+ * Packet of coherent rays (e.g. the primary rays of a block of pixels, or the
+ * supersampling rays of a pixel) that are traced together. The rays'
+ * components are kept as a structure of arrays - an array of every coordinate
+ * of the heads and of the directions - so the geometries can test all the rays
+ * of the packet in tight loops over the arrays, and share the work that
+ * doesn't depend on the ray (e.g. the bounding boxes of an acceleration
+ * structure that are missed by the whole packet).<br/>
+ * The packet keeps the max distance of every ray, which shrinks as closer
+ * intersections are found. It is not thread-safe - it is meant to be local to
+ * a single traversal.
+ *
+ * @author elana
+ * @author elish
+ */
+public final class RayPacket {
+	/**
+	 * The rays of the packet
+	 */
+	public final Ray[] rays;
+
+	/**
+	 * Amount of rays in the packet
+	 */
+	public final int size;
+
+	/**
+	 * Coordinates of the heads of the rays by axis - origin[axis][ray]
+	 */
+	public final double[][] origin;
+
+	/**
+	 * Coordinates of the directions of the rays by axis - direction[axis][ray]
+	 */
+	public final double[][] direction;
+
+	/**
+	 * Inverse of the coordinates of the directions of the rays by axis (infinite
+	 * for a zero coordinate), for the slab tests of bounding boxes
+	 */
+	public final double[][] inverseDirection;
+
+	/**
+	 * Max distance along every ray to look for intersections at
+	 */
+	public final double[] maxDistance;
+
+	/**
+	 * Constructor of a packet of rays without a max distance
+	 *
+	 * @param rays the rays
+	 */
+	public RayPacket(Ray... rays) {
+		this.rays = rays;
+		size = rays.length;
+		origin = new double[3][size];
+		direction = new double[3][size];
+		inverseDirection = new double[3][size];
+		maxDistance = new double[size];
+		for (int i = 0; i < size; ++i) {
+			Ray ray = rays[i];
+			origin[0][i] = ray.p0.xyz.d1;
+			origin[1][i] = ray.p0.xyz.d2;
+			origin[2][i] = ray.p0.xyz.d3;
+			direction[0][i] = ray.dir.xyz.d1;
+			direction[1][i] = ray.dir.xyz.d2;
+			direction[2][i] = ray.dir.xyz.d3;
+			maxDistance[i] = Double.POSITIVE_INFINITY;
+		}
+		for (int axis = 0; axis < 3; ++axis)
+			for (int i = 0; i < size; ++i)
+				inverseDirection[axis][i] = 1 / direction[axis][i];
+	}
+
+	/**
+	 * Get the largest max distance of the rays of the packet
+	 *
+	 * @return the largest max distance
+	 */
+	public double getFarthestDistance() {
+		double farthest = 0;
+		for (int i = 0; i < size; ++i)
+			if (maxDistance[i] > farthest)
+				farthest = maxDistance[i];
+		return farthest;
+	}
+}
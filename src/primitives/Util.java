@@ -1,5 +1,7 @@
 package primitives;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Util class is used for some internal utilities, e.g. controlling accuracy
  * 
@@ -59,14 +61,17 @@ public abstract class Util {
 	}
 
 	/**
-	 * Provide a real random number in range between min and max
+	 * Provide a real random number in range between min and max, from the
+	 * generator of the current thread (so threads don't contend on a shared
+	 * generator). The numbers are not reproducible - for sampling the image use
+	 * {@link RandomSequence}
 	 * 
 	 * @param min value (included)
 	 * @param max value (excluded)
 	 * @return the random value
 	 */
 	public static double random(double min, double max) {
-		return Math.random() * (max - min) + min;
+		return ThreadLocalRandom.current().nextDouble() * (max - min) + min;
 	}
 
 }
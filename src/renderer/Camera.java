@@ -2,8 +2,15 @@ package renderer;
 
 import java.util.stream.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 import primitives.*;
@@ -43,6 +50,56 @@ public class Camera {
                                                                                 // RANDOM, GRID)
     private int adaptiveSupersamplingMaxRecursionDepth = 3; // constant max depth for adaptive supersampling
 
+    // attributes of the progressive rendering
+    private int progressiveMaxSamples = 0; // max samples per pixel, 0 for a regular (not progressive) rendering
+    private double renderTimeBudget = 0; // wall-clock budget of the rendering in seconds, 0 for no budget
+    private double noiseBudget = 0; // noise (standard error of the pixels) to stop at, 0 for no budget
+    private IntConsumer passListener = null; // called after every progressive pass
+
+    /**
+     * First inverse powers of the plastic number - the steps of the R2
+     * low-discrepancy sequence of the sample positions of the progressive passes
+     */
+    private static final double R2_STEP_X = 0.7548776662466927;
+    private static final double R2_STEP_Y = 0.5698402909980532;
+
+    /**
+     * Colors of the pixel corners that are on the edges of the tiles, shared by
+     * the adaptive supersampling of the neighboring tiles during a rendering (null
+     * when not rendering). The threads may race on a corner, but they write the
+     * same color, and a color (immutable) is safely published through the array.
+     */
+    private Color[] tileEdgeCorners;
+
+    /**
+     * Identity of the current rendering (null when not rendering) - the sample
+     * caches of the threads are valid only for the rendering that filled them, so
+     * a later rendering, or another camera, doesn't get their samples
+     */
+    private Object rendering;
+
+    /**
+     * Cache of the samples of the adaptive supersampling of the tile rendered by
+     * every thread
+     */
+    private static final ThreadLocal<SampleCache> SAMPLE_CACHE = ThreadLocal.withInitial(SampleCache::new);
+
+    /**
+     * Max amount of rounds of supersampling of a time-budgeted rendering
+     */
+    private static final int MAX_BUDGET_ROUNDS = 8;
+
+    /**
+     * Size (in pixels) of the square tiles the image is split into for
+     * multi-threaded rendering
+     */
+    private static final int TILE_SIZE = 16;
+
+    /**
+     * Side (in pixels) of the square packets of primary rays traced together
+     */
+    private static final int PACKET_SIZE = 8;
+
     /**
      * Camera constructor
      * 
@@ -96,6 +153,76 @@ public class Camera {
         return this;
     }
 
+    /**
+     * Set progressive rendering - the image is rendered in passes of one sample
+     * per pixel over the whole image, and every pass refines the image by
+     * accumulating its samples into the frame buffer of the image writer. So a
+     * preview of the whole image is ready after the first pass. The rendering
+     * stops after the max amount of samples per pixel, or earlier on the time
+     * budget (see {@link #setRenderTimeBudget(double)}) or on the noise budget
+     * (see {@link #setNoiseBudget(double)}). The supersampling type is not used
+     * by the progressive rendering.
+     * 
+     * @param maxSamples max amount of samples per pixel, 0 to turn progressive
+     *                   rendering off
+     * @return the current camera
+     */
+    public Camera setProgressive(int maxSamples) {
+        this.progressiveMaxSamples = maxSamples;
+        return this;
+    }
+
+    /**
+     * Set the wall-clock time budget of the rendering. A progressive rendering
+     * always completes its first pass, and then stops refining the image when the
+     * budget is over (even in the middle of a pass).<br/>
+     * A rendering with REGULAR or ADAPTIVE supersampling first renders the whole
+     * image with a single ray per pixel, measuring the cost and the variance of
+     * every tile. Then the rest of the budget is spent on supersampling the tiles:
+     * a tile gets samples in proportion to the square root of its variance over
+     * its cost (which minimizes the total variance for the given time), capped by
+     * the grid size of REGULAR or by the max recursion depth of ADAPTIVE. The
+     * tiles are supersampled from the most rewarding one. When the tiles are done
+     * before the deadline, the cost estimate is corrected by the measured time and
+     * the tiles that can afford it are supersampled again with a higher level. The
+     * rendering stops at the deadline, leaving the rest of the pixels with their
+     * last complete sampling.
+     * Such a rendering writes pixels twice, so it needs an image writer that keeps
+     * the image in memory.
+     * 
+     * @param seconds the budget in seconds, 0 for no budget
+     * @return the current camera
+     */
+    public Camera setRenderTimeBudget(double seconds) {
+        this.renderTimeBudget = seconds;
+        return this;
+    }
+
+    /**
+     * Set the noise budget of a progressive rendering - the rendering stops when
+     * the noise of the image (see {@link FrameBuffer#getNoise()}) is not above
+     * it
+     * 
+     * @param noise the noise budget (in color units), 0 for no budget
+     * @return the current camera
+     */
+    public Camera setNoiseBudget(double noise) {
+        this.noiseBudget = noise;
+        return this;
+    }
+
+    /**
+     * Set a listener of the progressive passes, e.g. to write a preview of the
+     * image after every pass
+     * 
+     * @param listener called after every pass with the amount of finished passes
+     * @return the current camera
+     */
+    public Camera setPassListener(IntConsumer listener) {
+        this.passListener = listener;
+        return this;
+    }
+
     /**
      * Set view plane size
      * 
@@ -214,7 +341,7 @@ public class Camera {
      * setter for whether you want to do multi threading
      * on image(x set and not zero) or not(x set to zero)
      * 
-     * @param threads number of threads
+     * @param threads number of threads (negative for all the available cores)
      * @return camera
      */
     public Camera setMultithreading(double threads) {
@@ -245,6 +372,21 @@ public class Camera {
      * @return The ray through the pixel
      */
     public Ray constructRayThroughPixel(int nX, int nY, int j, int i) {
+        return constructRayThroughPixel(nX, nY, (double) j, (double) i);
+    }
+
+    /**
+     * Constructs a ray through a point of the view plane in pixel coordinates (the
+     * center of the pixel (j, i) is at (j, i))
+     * 
+     * @param nX The number of pixels in the x direction
+     * @param nY The number of pixels in the y direction
+     * @param j  The x coordinate of the point
+     * @param i  The y coordinate of the point
+     * 
+     * @return The ray through the point
+     */
+    private Ray constructRayThroughPixel(int nX, int nY, double j, double i) {
         Point pc = p0.add(vTo.scale(viewPlaneDistance)); // center point of the view plane
         double pixelWidth = viewPlaneWidth / nX; // width of a pixel
         double pixelHeight = viewPlaneHeight / nY; // height of a pixel
@@ -282,21 +424,66 @@ public class Camera {
      */
     public void castRay(int numColumns, int numRows, int col, int row) {
         Color color;
-        // height and width of the pixel
-        double pixelWidth = viewPlaneWidth / numColumns;
-        double pixelHeight = viewPlaneHeight / numRows;
-        Ray ray = constructRayThroughPixel(numColumns, numRows, col, row);
         if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
-            color = calcAdaptiveSupersamplingColor(ray, pixelWidth, pixelHeight,
+            color = calcAdaptiveSupersamplingColor(numColumns, numRows, col, row,
                     adaptiveSupersamplingMaxRecursionDepth);
-        } else if (supersamplingType == SUPERSAMPLING_TYPE.REGULAR) {
-            color = calcSupersamplingColor(ray, pixelWidth, pixelHeight);
         } else {
-            color = rayTracer.traceRay(ray);
+            Ray ray = constructRayThroughPixel(numColumns, numRows, col, row);
+            startSample(numColumns, col, row, 0);
+            if (supersamplingType == SUPERSAMPLING_TYPE.REGULAR) {
+                // height and width of the pixel
+                double pixelWidth = viewPlaneWidth / numColumns;
+                double pixelHeight = viewPlaneHeight / numRows;
+                color = calcSupersamplingColor(ray, pixelWidth, pixelHeight, supersamplingGridSize);
+            } else {
+                color = rayTracer.traceRay(ray);
+            }
         }
         imageWriter.writePixel(col, row, color);
     }
 
+    /**
+     * Constructs the rays through the pixels of a tile from the camera in packets
+     * of neighboring pixels, traces every packet together and write the colors of
+     * the pixels to the image
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param tilesX     The number of tiles in the x direction
+     * @param tile       The index of the tile (row-major)
+     * @param pixelDone  called for every pixel that was written
+     */
+    private void castPackets(int numColumns, int numRows, int tilesX, int tile, PixelRenderer pixelDone) {
+        int firstRow = (tile / tilesX) * TILE_SIZE;
+        int firstCol = (tile % tilesX) * TILE_SIZE;
+        int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+        int lastCol = Math.min(firstCol + TILE_SIZE, numColumns);
+        for (int packetRow = firstRow; packetRow < lastRow; packetRow += PACKET_SIZE) {
+            for (int packetCol = firstCol; packetCol < lastCol; packetCol += PACKET_SIZE) {
+                int rows = Math.min(PACKET_SIZE, lastRow - packetRow);
+                int columns = Math.min(PACKET_SIZE, lastCol - packetCol);
+                Ray[] rays = new Ray[rows * columns];
+                // every ray is the first sample of its own pixel
+                long[] pixels = new long[rays.length];
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < columns; col++) {
+                        rays[row * columns + col] = constructRayThroughPixel(numColumns, numRows, packetCol + col,
+                                packetRow + row);
+                        pixels[row * columns + col] = pixelKey(numColumns, packetCol + col, packetRow + row);
+                    }
+                }
+                Color[] colors = new Color[rays.length];
+                rayTracer.traceRays(rays, pixels, new int[rays.length], colors);
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < columns; col++) {
+                        imageWriter.writePixel(packetCol + col, packetRow + row, colors[row * columns + col]);
+                        pixelDone.render(packetCol + col, packetRow + row);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * checks if any of the fields are null
      * 
@@ -310,31 +497,451 @@ public class Camera {
         }
         int numRows = imageWriter.getNy();
         int numColumns = imageWriter.getNx();
+        if (progressiveMaxSamples > 0) {
+            renderProgressive(numColumns, numRows);
+            return this;
+        }
+        if (renderTimeBudget > 0 && supersamplingType != SUPERSAMPLING_TYPE.NONE) {
+            renderWithBudget(numColumns, numRows);
+            return this;
+        }
+        int tilesX = (numColumns + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (numRows + TILE_SIZE - 1) / TILE_SIZE;
+        PixelRenderer pixelDone = (col, row) -> {
+            Pixel.pixelDone();
+            if (!multiThreading) {
+                Pixel.printPixel();
+            }
+        };
+        IntConsumer renderTile = tile -> {
+            if (supersamplingType == SUPERSAMPLING_TYPE.NONE) {
+                castPackets(numColumns, numRows, tilesX, tile, pixelDone);
+                return;
+            }
+            if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
+                resetSampleCache(numColumns, numRows, tilesX, tile, adaptiveSupersamplingMaxRecursionDepth);
+            }
+            renderTile(numColumns, numRows, tilesX, tile, (col, row) -> {
+                castRay(numColumns, numRows, col, row);
+                pixelDone.render(col, row);
+            });
+        };
+        Pixel.initialize(numRows, numColumns, printInterval);
+        initTileEdgeCorners(numColumns, numRows);
         if (multiThreading) {
-            Pixel.initialize(numRows, numColumns, printInterval);
-            while (threadsCount-- > 0) {
-                new Thread(() -> {
-                    for (Pixel pixel = new Pixel(); pixel.nextPixel(); Pixel.pixelDone()) {
-                        castRay(numColumns, numRows, pixel.col, pixel.row);
-                    }
-                }).start();
+            // split the image into tiles, the tiles are rendered by a work-stealing pool
+            ForkJoinPool pool = createPool();
+            try {
+                ForkJoinTask<?> task;
+                if (imageWriter.isStreaming()) {
+                    // a streaming writer keeps only the rows that were not written to its
+                    // file yet - render the rows of tiles one after the other to bound them
+                    task = pool.submit(() -> {
+                        for (int tileRow = 0; tileRow < tilesY; tileRow++) {
+                            new RenderTilesTask(renderTile, tileRow * tilesX, (tileRow + 1) * tilesX).invoke();
+                        }
+                    });
+                } else {
+                    task = pool.submit(new RenderTilesTask(renderTile, 0, tilesX * tilesY));
+                }
+                Pixel.waitToFinish(task);
+                task.join();
+            } finally {
+                pool.shutdown();
+                tileEdgeCorners = null;
+                rendering = null;
             }
-            Pixel.waitToFinish();
         }
-        // no multi-threading
+        // no multi-threading - the tiles one after the other
         else {
-            Pixel.initialize(numRows, numColumns, printInterval);
-            for (int row = 0; row < numRows; row++) {
-                for (int col = 0; col < numColumns; col++) {
-                    castRay(numColumns, numRows, col, row);
-                    Pixel.pixelDone();
-                    Pixel.printPixel();
-                }
+            try {
+                forEachTile(null, tilesX * tilesY, renderTile);
+            } finally {
+                tileEdgeCorners = null;
+                rendering = null;
             }
         }
         return this;
     }
 
+    /**
+     * Render the image progressively - in passes of one sample per pixel, until
+     * the max amount of samples or the time or noise budget
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @throws IllegalStateException if the image writer has no frame buffer to
+     *                               accumulate the samples into
+     */
+    private void renderProgressive(int numColumns, int numRows) {
+        FrameBuffer frameBuffer = imageWriter.getFrameBuffer();
+        if (frameBuffer == null) {
+            throw new IllegalStateException("Progressive rendering needs an image writer with a frame buffer");
+        }
+        frameBuffer.clear();
+        long deadline = renderTimeBudget > 0 ? System.nanoTime() + (long) (renderTimeBudget * 1e9) : Long.MAX_VALUE;
+        int tilesX = (numColumns + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesCount = tilesX * ((numRows + TILE_SIZE - 1) / TILE_SIZE);
+        ForkJoinPool pool = multiThreading ? createPool() : null;
+        try {
+            for (int pass = 0; pass < progressiveMaxSamples; pass++) {
+                // the sample of the pass in every pixel - the first pass samples the center
+                // of the pixels, the next ones follow the R2 sequence that covers the pixel
+                // evenly
+                double dx = (0.5 + pass * R2_STEP_X) % 1 - 0.5;
+                double dy = (0.5 + pass * R2_STEP_Y) % 1 - 0.5;
+                boolean firstPass = pass == 0;
+                int sample = pass;
+                IntConsumer renderTile = tile -> {
+                    // only the first pass must be complete, the next ones stop on the deadline
+                    if (firstPass || System.nanoTime() < deadline) {
+                        renderTile(numColumns, numRows, tilesX, tile, (col, row) -> {
+                            startSample(numColumns, col, row, sample);
+                            frameBuffer.add(col, row, rayTracer
+                                    .traceRay(constructRayThroughPixel(numColumns, numRows, col + dx, row + dy)));
+                        });
+                    }
+                };
+                forEachTile(pool, tilesCount, renderTile);
+                if (passListener != null) {
+                    passListener.accept(pass + 1);
+                }
+                if (System.nanoTime() >= deadline || (noiseBudget > 0 && frameBuffer.getNoise() <= noiseBudget)) {
+                    break;
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Render the image within the time budget - a single ray per pixel first, and
+     * then supersampling of the tiles by their variance and cost until the
+     * deadline (see {@link #setRenderTimeBudget(double)})
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @throws IllegalStateException if the image writer streams the image (so its
+     *                               pixels can't be written twice)
+     */
+    private void renderWithBudget(int numColumns, int numRows) {
+        if (imageWriter.isStreaming()) {
+            throw new IllegalStateException(
+                    "Time-budgeted rendering needs an image writer that keeps the image in memory");
+        }
+        long deadline = System.nanoTime() + (long) (renderTimeBudget * 1e9);
+        int tilesX = (numColumns + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesCount = tilesX * ((numRows + TILE_SIZE - 1) / TILE_SIZE);
+        // time (in nanoseconds) and variance of the intensity of every tile with a
+        // single ray per pixel
+        long[] tileCost = new long[tilesCount];
+        double[] tileVariance = new double[tilesCount];
+        // colors of the single ray pass - the supersampling keeps them as one more
+        // sample (the ADAPTIVE samples are on the pixel corners, not their centers)
+        Color[] singleColors = new Color[numColumns * numRows];
+        ForkJoinPool pool = multiThreading ? createPool() : null;
+        try {
+            forEachTile(pool, tilesCount, tile -> {
+                long start = System.nanoTime();
+                double[] sums = new double[3]; // pixels, sum and sum of squares of the intensity
+                renderTile(numColumns, numRows, tilesX, tile, (col, row) -> {
+                    startSample(numColumns, col, row, 0);
+                    Color color = rayTracer.traceRay(constructRayThroughPixel(numColumns, numRows, col, row));
+                    imageWriter.writePixel(col, row, color);
+                    singleColors[row * numColumns + col] = color;
+                    double intensity = (color.getRgb().d1 + color.getRgb().d2 + color.getRgb().d3) / 3;
+                    sums[0]++;
+                    sums[1] += intensity;
+                    sums[2] += intensity * intensity;
+                });
+                tileCost[tile] = Math.max(1, System.nanoTime() - start);
+                double mean = sums[1] / sums[0];
+                tileVariance[tile] = Math.max(0, sums[2] / sums[0] - mean * mean);
+            });
+
+            // the samples per pixel of every tile, in units of the tile's single ray
+            // pass, are scale * sqrt(variance / cost) - the scale is the largest one that
+            // the supersampling levels of the samples fit the rest of the budget:
+            // sum(cost * samples of the level) <= remaining time of all the threads
+            double[] weight = new double[tilesCount];
+            double norm = 0;
+            for (int tile = 0; tile < tilesCount; tile++) {
+                weight[tile] = Math.sqrt(tileVariance[tile] / tileCost[tile]);
+                norm += Math.sqrt(tileVariance[tile] * tileCost[tile]);
+            }
+            if (norm == 0) {
+                return;
+            }
+            int threads = pool == null ? 1 : pool.getParallelism();
+            initTileEdgeCorners(numColumns, numRows);
+            double pixelWidth = viewPlaneWidth / numColumns;
+            double pixelHeight = viewPlaneHeight / numRows;
+            // supersampling level of every tile so far
+            int[] tileLevel = new int[tilesCount];
+            // measured time of the supersampling relative to the estimated time - the
+            // single ray pass overestimates it (e.g. it runs while the JIT compiles), so
+            // when a round ends early the next rounds raise the levels of the tiles
+            double costFactor = 1;
+            for (int round = 0; round < MAX_BUDGET_ROUNDS; round++) {
+                double available = (double) (deadline - System.nanoTime()) * threads / costFactor;
+                if (available <= 0) {
+                    break;
+                }
+                double scale = fitSamplesScale(available, available / norm, weight, tileCost, tileLevel);
+                int[] roundLevel = new int[tilesCount];
+                List<Integer> order = new ArrayList<>();
+                for (int tile = 0; tile < tilesCount; tile++) {
+                    roundLevel[tile] = supersamplingLevel(scale * weight[tile]);
+                    if (roundLevel[tile] > tileLevel[tile]) {
+                        order.add(tile);
+                    }
+                }
+                if (order.isEmpty()) {
+                    break;
+                }
+                order.sort((a, b) -> Double.compare(weight[b], weight[a]));
+
+                // every thread takes the next most rewarding tile until the deadline
+                AtomicInteger next = new AtomicInteger();
+                DoubleAdder estimated = new DoubleAdder();
+                DoubleAdder measured = new DoubleAdder();
+                IntConsumer refineTiles = thread -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < order.size() && System.nanoTime() < deadline) {
+                        int tile = order.get(index);
+                        int level = roundLevel[tile];
+                        long start = System.nanoTime();
+                        if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
+                            resetSampleCache(numColumns, numRows, tilesX, tile, level);
+                        }
+                        renderTile(numColumns, numRows, tilesX, tile, (col, row) -> {
+                            if (System.nanoTime() >= deadline) {
+                                return;
+                            }
+                            if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
+                                // the center of the single ray pass is weighted as one of
+                                // the samples of the level
+                                double samples = levelSamples(level);
+                                imageWriter.writePixel(col, row, singleColors[row * numColumns + col].add(
+                                        calcAdaptiveSupersamplingColor(numColumns, numRows, col, row, level)
+                                                .scale(samples))
+                                        .reduce(samples + 1));
+                            } else {
+                                Ray ray = constructRayThroughPixel(numColumns, numRows, col, row);
+                                startSample(numColumns, col, row, 0);
+                                imageWriter.writePixel(col, row,
+                                        calcSupersamplingColor(ray, pixelWidth, pixelHeight, level));
+                            }
+                        });
+                        long end = System.nanoTime();
+                        if (end < deadline) {
+                            tileLevel[tile] = level;
+                            estimated.add(tileCost[tile] * levelSamples(level));
+                            measured.add(end - start);
+                        }
+                    }
+                };
+                forEachTile(pool, threads, refineTiles);
+                if (estimated.sum() > 0) {
+                    costFactor = measured.sum() / estimated.sum();
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            tileEdgeCorners = null;
+            rendering = null;
+        }
+    }
+
+    /**
+     * Find the largest scale of the samples of the tiles that the time of raising
+     * their supersampling levels fits the available time
+     * 
+     * @param available the available time in nanoseconds
+     * @param initial   initial guess of the scale
+     * @param weight    the samples of every tile per unit of the scale
+     * @param tileCost  the time of every tile with a single ray per pixel
+     * @param tileLevel the current supersampling level of every tile
+     * @return the scale
+     */
+    private double fitSamplesScale(double available, double initial, double[] weight, long[] tileCost,
+            int[] tileLevel) {
+        double low = initial;
+        double high = initial;
+        for (int i = 0; i < 64 && plannedCost(high, weight, tileCost, tileLevel) <= available; i++) {
+            low = high;
+            high *= 2;
+        }
+        for (int i = 0; i < 32 && plannedCost(high, weight, tileCost, tileLevel) > available; i++) {
+            double middle = (low + high) / 2;
+            if (plannedCost(middle, weight, tileCost, tileLevel) <= available) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return plannedCost(high, weight, tileCost, tileLevel) <= available ? high : low;
+    }
+
+    /**
+     * Estimate the time of raising the supersampling levels of the tiles to the
+     * levels of a scale of their samples
+     * 
+     * @param scale     the scale of the samples
+     * @param weight    the samples of every tile per unit of the scale
+     * @param tileCost  the time of every tile with a single ray per pixel
+     * @param tileLevel the current supersampling level of every tile
+     * @return the time in nanoseconds
+     */
+    private double plannedCost(double scale, double[] weight, long[] tileCost, int[] tileLevel) {
+        double cost = 0;
+        for (int tile = 0; tile < weight.length; tile++) {
+            int level = supersamplingLevel(scale * weight[tile]);
+            if (level > tileLevel[tile]) {
+                cost += tileCost[tile] * levelSamples(level);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Amount of rays per pixel of a level of the supersampling (at most, for
+     * ADAPTIVE supersampling, whose samples are shared by the neighboring cells)
+     * 
+     * @param level the level
+     * @return amount of rays
+     */
+    private double levelSamples(int level) {
+        if (level == 0) {
+            return 0;
+        }
+        return supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE ? Math.pow(4, level - 1) : (double) level * level;
+    }
+
+    /**
+     * Translate an amount of samples per pixel into the level of the supersampling
+     * - the grid size of REGULAR supersampling or the recursion depth of ADAPTIVE
+     * supersampling, capped by their settings
+     * 
+     * @param samples amount of samples per pixel
+     * @return the level, 0 if the samples are too few for supersampling
+     */
+    private int supersamplingLevel(double samples) {
+        if (supersamplingType == SUPERSAMPLING_TYPE.ADAPTIVE) {
+            // every level of the recursion has 4 times the rays of its parent
+            if (samples < 1) {
+                return 0;
+            }
+            return Math.min(adaptiveSupersamplingMaxRecursionDepth, 1 + (int) (Math.log(samples) / Math.log(4)));
+        }
+        int gridSize = Math.min(supersamplingGridSize, (int) Math.sqrt(samples));
+        return gridSize >= 2 ? gridSize : 0;
+    }
+
+    /**
+     * Render tiles on the pool of the rendering threads, or by the current thread
+     * if there is no pool
+     * 
+     * @param pool       the pool, null for rendering by the current thread
+     * @param tilesCount the amount of tiles
+     * @param renderTile renders a tile by its index
+     */
+    private static void forEachTile(ForkJoinPool pool, int tilesCount, IntConsumer renderTile) {
+        if (pool != null) {
+            pool.invoke(new RenderTilesTask(renderTile, 0, tilesCount));
+        } else {
+            for (int tile = 0; tile < tilesCount; tile++) {
+                renderTile.accept(tile);
+            }
+        }
+    }
+
+    /**
+     * Create the pool of the rendering threads
+     * 
+     * @return the pool
+     */
+    private ForkJoinPool createPool() {
+        int threads = threadsCount > 0 ? (int) threadsCount : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
+    }
+
+    /**
+     * Render a pixel
+     */
+    @FunctionalInterface
+    private interface PixelRenderer {
+        /**
+         * Render a pixel
+         * 
+         * @param col The pixel's x coordinate
+         * @param row The pixel's y coordinate
+         */
+        void render(int col, int row);
+    }
+
+    /**
+     * Render a single tile of the image
+     * 
+     * @param numColumns    The number of pixels in the x direction
+     * @param numRows       The number of pixels in the y direction
+     * @param tilesX        The number of tiles in the x direction
+     * @param tile          The index of the tile (row-major)
+     * @param pixelRenderer renders a pixel of the tile
+     */
+    private static void renderTile(int numColumns, int numRows, int tilesX, int tile, PixelRenderer pixelRenderer) {
+        int firstRow = (tile / tilesX) * TILE_SIZE;
+        int firstCol = (tile % tilesX) * TILE_SIZE;
+        int lastRow = Math.min(firstRow + TILE_SIZE, numRows);
+        int lastCol = Math.min(firstCol + TILE_SIZE, numColumns);
+        for (int row = firstRow; row < lastRow; row++) {
+            for (int col = firstCol; col < lastCol; col++) {
+                pixelRenderer.render(col, row);
+            }
+        }
+    }
+
+    /**
+     * Fork/join task rendering a range of tiles. The range is split in halves
+     * until a single tile is left, so idle threads steal the remaining halves of
+     * busy threads.
+     */
+    private static class RenderTilesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient IntConsumer renderTile;
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructor
+         * 
+         * @param renderTile renders a tile by its index
+         * @param from       first tile index (included)
+         * @param to         last tile index (excluded)
+         */
+        RenderTilesTask(IntConsumer renderTile, int from, int to) {
+            this.renderTile = renderTile;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RenderTilesTask(renderTile, from, middle), new RenderTilesTask(renderTile, middle, to));
+            } else if (to > from) {
+                renderTile.accept(from);
+            }
+        }
+    }
+
     /**
      * Construct a grid of rays from a center point, a width and height, and a grid
      * size
@@ -343,11 +950,11 @@ public class Camera {
      * @param raySpacingHorizontal The horizontal spacing between ray points
      * @param raySpacingVertical   The vertical spacing between ray points
      * @param gridSize             the size of the grid
+     * @return the rays of the grid, row by row
      */
-    private List<Ray> constructGridOfRays(Point topLeftRayPoint, double raySpacingHorizontal, double raySpacingVertical,
+    private Ray[] constructGridOfRays(Point topLeftRayPoint, double raySpacingHorizontal, double raySpacingVertical,
             int gridSize) {
-        Ray ray;
-        List<Ray> rays = new ArrayList<>();
+        Ray[] rays = new Ray[gridSize * gridSize];
         // create the grid of rays
         for (int row = 0; row < gridSize; row++) {
             for (int col = 0; col < gridSize; col++) {
@@ -361,9 +968,7 @@ public class Camera {
                     rayPoint = rayPoint.add(vRight.scale(col * raySpacingHorizontal));
                 }
                 // create the ray
-                ray = new Ray(p0, rayPoint.subtract(p0));
-                // add the ray to the list
-                rays.add(ray);
+                rays[row * gridSize + col] = new Ray(p0, rayPoint.subtract(p0));
             }
         }
         return rays;
@@ -375,75 +980,322 @@ public class Camera {
      * @param mainRay     the main ray to trace around
      * @param pixelWidth  the width of the pixel
      * @param pixelHeight the height of the pixel
+     * @param gridSize    the size of the grid of the rays (eg. 9 for 9x9 grid)
      * @return color of the pixel
      */
-    private Color calcSupersamplingColor(Ray mainRay, double pixelWidth, double pixelHeight) {
+    private Color calcSupersamplingColor(Ray mainRay, double pixelWidth, double pixelHeight, int gridSize) {
         // locate the point of the top left ray to start constructing the grid from
         Point centerOfPixel = mainRay.getPoint(viewPlaneDistance);
         // amount to move to get from one supersampling ray location to the next
-        double raySpacingVertical = pixelHeight / (supersamplingGridSize + 1);
-        double raySpacingHorizontal = pixelWidth / (supersamplingGridSize + 1);
+        double raySpacingVertical = pixelHeight / (gridSize + 1);
+        double raySpacingHorizontal = pixelWidth / (gridSize + 1);
         Point topLeftRayPoint = centerOfPixel //
                 .add(vRight.scale(-pixelWidth / 2 - raySpacingHorizontal)) //
                 .add(vUp.scale(pixelHeight / 2 - raySpacingVertical));
-        List<Ray> rays = constructGridOfRays(topLeftRayPoint, raySpacingHorizontal, raySpacingVertical,
-                supersamplingGridSize);
-        Color result = Color.BLACK;
-        for (Ray ray : rays) {
-            result = result.add(rayTracer.traceRay(ray));
+        Ray[] rays = constructGridOfRays(topLeftRayPoint, raySpacingHorizontal, raySpacingVertical,
+                gridSize);
+        // the rays of the grid are coherent - trace them as a packet, as the
+        // consecutive samples of the pixel from the current sample
+        RandomSequence sequence = RandomSequence.current();
+        long[] pixels = new long[rays.length];
+        int[] samples = new int[rays.length];
+        for (int i = 0; i < rays.length; ++i) {
+            pixels[i] = sequence.getPixel();
+            samples[i] = sequence.getSample() + i;
         }
+        Color[] colors = new Color[rays.length];
+        rayTracer.traceRays(rays, pixels, samples, colors);
+        Color result = Color.BLACK.add(colors);
         // divide the color by the number of rays to get the average color
-        double numRays = (double) supersamplingGridSize * supersamplingGridSize;
-        return result.reduce(numRays);
+        return result.reduce(rays.length);
     }
 
     /**
-     * Calculates the color of a pixel using adaptive supersampling
+     * Calculates the color of a pixel using adaptive supersampling. The pixel's
+     * corners are sampled - if their colors are similar the pixel's color is their
+     * average, otherwise the pixel is split into four quarters that are sampled the
+     * same way, recursively. The samples are on a lattice of the tile (see
+     * {@link SampleCache}), so every sample is traced once and is shared by all the
+     * cells that have it as a corner - the cells of the same pixel, of the
+     * neighboring pixels and of the neighboring tiles (for pixel corners).
      * 
-     * @param centerRay   the ray to trace around
-     * @param pixelWidth  the width of the pixel
-     * @param pixelHeight the height of the pixel
-     * @param level       the level of the adaptive supersampling (if level is 0,
-     *                    return)
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param col        The pixel's x coordinate
+     * @param row        The pixel's y coordinate
+     * @param level      the level of the adaptive supersampling (the pixel is
+     *                   split at most level - 1 times)
      * @return color of the pixel
      */
-    private Color calcAdaptiveSupersamplingColor(Ray centerRay, double pixelWidth, double pixelHeight, int level) {
-        // spacing between rays vertically
-        double halfPixelHeight = pixelHeight / 2;
-        // spacing between rays horizontally
-        double halfPixelWidth = pixelWidth / 2;
-        // move 1/4 left and 1/4 up from the center ray
-        Point topLeftRayPoint = centerRay.getPoint(viewPlaneDistance) //
-                .add(vRight.scale(-(halfPixelWidth / 2))) //
-                .add(vUp.scale(halfPixelHeight / 2));
-        // gridSize is always 2 since the grid is always a 2x2 grid of rays in
-        // adaptive supersampling
-        List<Ray> rays = constructGridOfRays(topLeftRayPoint, halfPixelWidth, halfPixelHeight, 2);
-
-        // get the colors of the rays
-        List<Color> colors = rays.stream().map(ray -> rayTracer.traceRay(ray)).collect(Collectors.toList());
-
-        // if recursion level is 1, return the average color of the rays
-        if (level == 1) {
-            return colors.get(0).add(colors.get(1), colors.get(2), colors.get(3)).reduce(4);
-        }
-
-        // check if the colors are all the similar enough to be considered the same
-        if (colors.get(0).similar(colors.get(1)) //
-                && colors.get(0).similar(colors.get(2)) //
-                && colors.get(0).similar(colors.get(3))) {
-            // if they are, return any one of them
-            return colors.get(0);
-        }
-
-        // otherwise average the colors of the four parts of the pixel
-        return calcAdaptiveSupersamplingColor(rays.get(0), halfPixelWidth, halfPixelHeight, level - 1) //
-                .add(calcAdaptiveSupersamplingColor(rays.get(1), halfPixelWidth, halfPixelHeight, level - 1), //
-                        calcAdaptiveSupersamplingColor(rays.get(2), halfPixelWidth, halfPixelHeight, level - 1), //
-                        calcAdaptiveSupersamplingColor(rays.get(3), halfPixelWidth, halfPixelHeight, level - 1)) //
+    private Color calcAdaptiveSupersamplingColor(int numColumns, int numRows, int col, int row, int level) {
+        SampleCache cache = SAMPLE_CACHE.get();
+        Object current = rendering;
+        if (current == null || !cache.covers(current, col, row, 1 << (level - 1))) {
+            // not rendering, or the pixel is not in the rendered tile - cache the pixel
+            // alone
+            cache.reset(current, col, row, col + 1, row + 1, 1 << (level - 1));
+        }
+        int resolution = cache.resolution;
+        return calcAdaptiveSupersamplingColor(numColumns, numRows, cache, (col - cache.firstCol) * resolution,
+                (row - cache.firstRow) * resolution, resolution, level);
+    }
+
+    /**
+     * Calculates the color of a square cell of a pixel using adaptive
+     * supersampling
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param cache      the cache of the samples
+     * @param x          the x coordinate of the cell's top left corner in the
+     *                   lattice of the cache
+     * @param y          the y coordinate of the cell's top left corner in the
+     *                   lattice of the cache
+     * @param size       the size of the cell in the lattice of the cache
+     * @param level      the level of the adaptive supersampling (if level is 1,
+     *                   the cell is not split)
+     * @return color of the cell
+     */
+    private Color calcAdaptiveSupersamplingColor(int numColumns, int numRows, SampleCache cache, int x, int y,
+            int size, int level) {
+        Color topLeft = sample(numColumns, numRows, cache, x, y);
+        Color topRight = sample(numColumns, numRows, cache, x + size, y);
+        Color bottomLeft = sample(numColumns, numRows, cache, x, y + size);
+        Color bottomRight = sample(numColumns, numRows, cache, x + size, y + size);
+
+        // if the recursion level is 1, or the colors are all similar enough to be
+        // considered the same, return the average color of the corners
+        if (level == 1 || (topLeft.similar(topRight) && topLeft.similar(bottomLeft) && topLeft.similar(bottomRight))) {
+            return topLeft.add(topRight, bottomLeft, bottomRight).reduce(4);
+        }
+
+        // otherwise average the colors of the four parts of the cell
+        int half = size / 2;
+        return calcAdaptiveSupersamplingColor(numColumns, numRows, cache, x, y, half, level - 1) //
+                .add(calcAdaptiveSupersamplingColor(numColumns, numRows, cache, x + half, y, half, level - 1), //
+                        calcAdaptiveSupersamplingColor(numColumns, numRows, cache, x, y + half, half, level - 1), //
+                        calcAdaptiveSupersamplingColor(numColumns, numRows, cache, x + half, y + half, half,
+                                level - 1)) //
                 .reduce(4);
     }
 
+    /**
+     * Get the color of a sample of the adaptive supersampling - from the cache, or
+     * by tracing a ray through it
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param cache      the cache of the samples
+     * @param x          the x coordinate of the sample in the lattice of the cache
+     * @param y          the y coordinate of the sample in the lattice of the cache
+     * @return color of the sample
+     */
+    private Color sample(int numColumns, int numRows, SampleCache cache, int x, int y) {
+        int index = y * cache.width + x;
+        Color color = cache.get(index);
+        if (color != null) {
+            return color;
+        }
+        int resolution = cache.resolution;
+        // a pixel corner on the edge of a tile may have been traced by the neighboring
+        // tile
+        int edgeIndex = -1;
+        Color[] edgeCorners = tileEdgeCorners;
+        if (edgeCorners != null && x % resolution == 0 && y % resolution == 0) {
+            edgeIndex = tileEdgeCornerIndex(numColumns, numRows, cache.firstCol + x / resolution,
+                    cache.firstRow + y / resolution);
+            if (edgeIndex >= 0) {
+                color = edgeCorners[edgeIndex];
+            }
+        }
+        if (color == null) {
+            // the sample is keyed by its pixel corner and its position after the corner
+            startSample(numColumns, cache.firstCol + x / resolution, cache.firstRow + y / resolution,
+                    (y % resolution) * resolution + x % resolution);
+            // the corners of the pixel (col, row) are half a pixel from its center
+            color = rayTracer.traceRay(constructRayThroughPixel(numColumns, numRows,
+                    cache.firstCol + (double) x / resolution - 0.5, cache.firstRow + (double) y / resolution - 0.5));
+            if (edgeIndex >= 0) {
+                edgeCorners[edgeIndex] = color;
+            }
+        }
+        cache.put(index, color);
+        return color;
+    }
+
+    /**
+     * Start a sample of a pixel in the random sequence of the current thread (see
+     * {@link RandomSequence}) before tracing its ray, so the random numbers of the
+     * sample depend only on its pixel and its index - the same for any amount of
+     * threads
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param col        The pixel's x coordinate (up to numColumns, for the
+     *                   corners after the last column)
+     * @param row        The pixel's y coordinate
+     * @param sample     the index of the sample in the pixel
+     */
+    private static void startSample(int numColumns, int col, int row, int sample) {
+        RandomSequence.current().start(pixelKey(numColumns, col, row), sample);
+    }
+
+    /**
+     * The index of a pixel in the random sequences (see
+     * {@link RandomSequence#start(long, int)})
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param col        The pixel's x coordinate (up to numColumns, for the
+     *                   corners after the last column)
+     * @param row        The pixel's y coordinate
+     * @return the index of the pixel
+     */
+    private static long pixelKey(int numColumns, int col, int row) {
+        return (long) row * (numColumns + 1) + col;
+    }
+
+    /**
+     * Create the shared colors of the pixel corners on the edges of the tiles (for
+     * ADAPTIVE supersampling)
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     */
+    private void initTileEdgeCorners(int numColumns, int numRows) {
+        if (supersamplingType != SUPERSAMPLING_TYPE.ADAPTIVE) {
+            return;
+        }
+        rendering = new Object();
+        // corners on the vertical edges and then on the horizontal edges
+        int verticalEdges = numColumns / TILE_SIZE + 1;
+        int horizontalEdges = numRows / TILE_SIZE + 1;
+        tileEdgeCorners = new Color[verticalEdges * (numRows + 1) + horizontalEdges * (numColumns + 1)];
+    }
+
+    /**
+     * Index of a pixel corner in the shared colors of the corners on the edges of
+     * the tiles
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param x          x coordinate of the corner (the top left corner of the
+     *                   pixel (x, y))
+     * @param y          y coordinate of the corner
+     * @return the index, -1 if the corner is not on the edge of a tile
+     */
+    private static int tileEdgeCornerIndex(int numColumns, int numRows, int x, int y) {
+        if (x % TILE_SIZE == 0) {
+            return (x / TILE_SIZE) * (numRows + 1) + y;
+        }
+        if (y % TILE_SIZE == 0) {
+            return (numColumns / TILE_SIZE + 1) * (numRows + 1) + (y / TILE_SIZE) * (numColumns + 1) + x;
+        }
+        return -1;
+    }
+
+    /**
+     * Prepare the sample cache of the current thread for the adaptive
+     * supersampling of a tile
+     * 
+     * @param numColumns The number of pixels in the x direction
+     * @param numRows    The number of pixels in the y direction
+     * @param tilesX     The number of tiles in the x direction
+     * @param tile       The index of the tile (row-major)
+     * @param level      the level of the adaptive supersampling
+     */
+    private void resetSampleCache(int numColumns, int numRows, int tilesX, int tile, int level) {
+        int firstRow = (tile / tilesX) * TILE_SIZE;
+        int firstCol = (tile % tilesX) * TILE_SIZE;
+        SAMPLE_CACHE.get().reset(rendering, firstCol, firstRow, Math.min(firstCol + TILE_SIZE, numColumns),
+                Math.min(firstRow + TILE_SIZE, numRows), 1 << (level - 1));
+    }
+
+    /**
+     * Cache of the samples of the adaptive supersampling of a rectangle of pixels
+     * (a tile). The samples are on a lattice with a resolution of a power of 2
+     * points per pixel side, so the corners of the cells of every level of the
+     * recursion are lattice points. The cache is reused for the next tiles - its
+     * entries are stamped with the tile they belong to, so it's not cleared.
+     */
+    private static class SampleCache {
+        private Object rendering;
+        private int firstCol;
+        private int firstRow;
+        private int lastCol;
+        private int lastRow;
+        private int resolution;
+        private int width;
+        private Color[] colors = new Color[0];
+        private int[] stamps = new int[0];
+        private int stamp = 0;
+
+        /**
+         * Prepare the cache for a rectangle of pixels
+         * 
+         * @param rendering  the rendering of the samples (null when not rendering)
+         * @param firstCol   first column (included)
+         * @param firstRow   first row (included)
+         * @param lastCol    last column (excluded)
+         * @param lastRow    last row (excluded)
+         * @param resolution lattice points per pixel side (a power of 2)
+         */
+        void reset(Object rendering, int firstCol, int firstRow, int lastCol, int lastRow, int resolution) {
+            this.rendering = rendering;
+            this.firstCol = firstCol;
+            this.firstRow = firstRow;
+            this.lastCol = lastCol;
+            this.lastRow = lastRow;
+            this.resolution = resolution;
+            width = (lastCol - firstCol) * resolution + 1;
+            int size = width * ((lastRow - firstRow) * resolution + 1);
+            if (colors.length < size) {
+                colors = new Color[size];
+                stamps = new int[size];
+                stamp = 0;
+            }
+            if (++stamp == 0) {
+                // the stamps wrapped around
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        /**
+         * Check whether a pixel is in the rectangle of the cache of a rendering with
+         * enough resolution
+         * 
+         * @param rendering  the current rendering
+         * @param col        the pixel's x coordinate
+         * @param row        the pixel's y coordinate
+         * @param resolution the needed lattice points per pixel side
+         * @return true if the pixel's samples can be cached
+         */
+        boolean covers(Object rendering, int col, int row, int resolution) {
+            return stamp != 0 && this.rendering == rendering && col >= firstCol && col < lastCol && row >= firstRow && row < lastRow
+                    && this.resolution >= resolution;
+        }
+
+        /**
+         * Get a cached sample
+         * 
+         * @param index index of the sample in the lattice
+         * @return the color of the sample, null if it was not cached
+         */
+        Color get(int index) {
+            return stamps[index] == stamp ? colors[index] : null;
+        }
+
+        /**
+         * Cache a sample
+         * 
+         * @param index index of the sample in the lattice
+         * @param color the color of the sample
+         */
+        void put(int index, Color color) {
+            colors[index] = color;
+            stamps[index] = stamp;
+        }
+    }
+
     /**
      * Print a grid of lines to the image
      * 
@@ -0,0 +1,197 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import primitives.Color;
+
+/**
+ * High dynamic range frame buffer - keeps the radiance of the pixels as
+ * computed by the ray tracer, without clamping or quantizing it. Every pixel
+ * accumulates the sum of its samples and their amount, so a pixel's color is
+ * the average of its samples. The radiance is kept in a flat float array (three
+ * floats per pixel, row by row) to bound its memory. The sum of the squares of
+ * the samples' intensity (the average of their red, green and blue) is kept
+ * too, for estimating the noise of the pixels.<br/>
+ * Different pixels may be written by different threads concurrently.
+ * 
+ * @author elana
+ */
+public class FrameBuffer {
+	private final int nX;
+	private final int nY;
+	/**
+	 * Sums of the red, green and blue radiance of the pixels' samples
+	 */
+	private final float[] radiance;
+	/**
+	 * Sums of the squares of the intensity of the pixels' samples
+	 */
+	private final float[] squares;
+	/**
+	 * Amounts of the pixels' samples
+	 */
+	private final int[] samples;
+
+	/**
+	 * Constructor of a black frame buffer (without samples)
+	 * 
+	 * @param nX amount of pixels by width
+	 * @param nY amount of pixels by height
+	 */
+	public FrameBuffer(int nX, int nY) {
+		this.nX = nX;
+		this.nY = nY;
+		radiance = new float[3 * nX * nY];
+		squares = new float[nX * nY];
+		samples = new int[nX * nY];
+	}
+
+	/**
+	 * Amount of pixels by width
+	 * 
+	 * @return the width
+	 */
+	public int getNx() {
+		return nX;
+	}
+
+	/**
+	 * Amount of pixels by height
+	 * 
+	 * @return the height
+	 */
+	public int getNy() {
+		return nY;
+	}
+
+	/**
+	 * Set the color of a pixel (replacing its samples by a single sample)
+	 * 
+	 * @param xIndex X axis index of the pixel
+	 * @param yIndex Y axis index of the pixel
+	 * @param color  the color
+	 */
+	public void set(int xIndex, int yIndex, Color color) {
+		int pixel = yIndex * nX + xIndex;
+		int offset = 3 * pixel;
+		radiance[offset] = (float) color.getRgb().d1;
+		radiance[offset + 1] = (float) color.getRgb().d2;
+		radiance[offset + 2] = (float) color.getRgb().d3;
+		float intensity = intensity(color);
+		squares[pixel] = intensity * intensity;
+		samples[pixel] = 1;
+	}
+
+	/**
+	 * Add a sample to a pixel
+	 * 
+	 * @param xIndex X axis index of the pixel
+	 * @param yIndex Y axis index of the pixel
+	 * @param color  color of the sample
+	 */
+	public void add(int xIndex, int yIndex, Color color) {
+		int pixel = yIndex * nX + xIndex;
+		int offset = 3 * pixel;
+		radiance[offset] += (float) color.getRgb().d1;
+		radiance[offset + 1] += (float) color.getRgb().d2;
+		radiance[offset + 2] += (float) color.getRgb().d3;
+		float intensity = intensity(color);
+		squares[pixel] += intensity * intensity;
+		++samples[pixel];
+	}
+
+	/**
+	 * Remove the samples of all the pixels (the frame buffer becomes black)
+	 */
+	public void clear() {
+		Arrays.fill(radiance, 0);
+		Arrays.fill(squares, 0);
+		Arrays.fill(samples, 0);
+	}
+
+	/**
+	 * Estimate the noise of the image - the root mean square of the standard error
+	 * of the pixels' intensity (the average of the red, green and blue radiance),
+	 * estimated from the variance of their samples. The standard error falls as
+	 * one over the square root of the amount of samples.
+	 * 
+	 * @return the noise in color units, infinity if any pixel has less than two
+	 *         samples
+	 */
+	public double getNoise() {
+		double sum = IntStream.range(0, nY).parallel().mapToDouble(row -> {
+			double rowSum = 0;
+			for (int pixel = row * nX; pixel < (row + 1) * nX; ++pixel) {
+				int count = samples[pixel];
+				if (count < 2)
+					return Double.POSITIVE_INFINITY;
+				int offset = 3 * pixel;
+				double mean = ((double) radiance[offset] + radiance[offset + 1] + radiance[offset + 2]) / (3 * count);
+				double variance = Math.max(0, (squares[pixel] - count * mean * mean) / (count - 1));
+				rowSum += variance / count;
+			}
+			return rowSum;
+		}).sum();
+		return Math.sqrt(sum / (nX * nY));
+	}
+
+	/**
+	 * Amount of the samples of a pixel
+	 * 
+	 * @param xIndex X axis index of the pixel
+	 * @param yIndex Y axis index of the pixel
+	 * @return amount of samples
+	 */
+	public int getSamples(int xIndex, int yIndex) {
+		return samples[yIndex * nX + xIndex];
+	}
+
+	/**
+	 * Color of a pixel - the average of its samples
+	 * 
+	 * @param xIndex X axis index of the pixel
+	 * @param yIndex Y axis index of the pixel
+	 * @return the color, black if the pixel has no samples
+	 */
+	public Color getColor(int xIndex, int yIndex) {
+		int pixel = yIndex * nX + xIndex;
+		int count = samples[pixel];
+		if (count == 0)
+			return Color.BLACK;
+		int offset = 3 * pixel;
+		return new Color(radiance[offset] / count, radiance[offset + 1] / count, radiance[offset + 2] / count);
+	}
+
+	/**
+	 * Intensity of a color - the average of its red, green and blue
+	 * 
+	 * @param color the color
+	 * @return the intensity
+	 */
+	private static float intensity(Color color) {
+		return (float) ((color.getRgb().d1 + color.getRgb().d2 + color.getRgb().d3) / 3);
+	}
+
+	/**
+	 * Tone map a pixel into a packed RGB value like
+	 * {@link java.awt.Color#getRGB()}
+	 * 
+	 * @param xIndex      X axis index of the pixel
+	 * @param yIndex      Y axis index of the pixel
+	 * @param toneMapping the tone mapping operator
+	 * @param exposure    factor of the radiance
+	 * @return the packed RGB value, black if the pixel has no samples
+	 */
+	public int toRGB(int xIndex, int yIndex, ToneMapping toneMapping, double exposure) {
+		int pixel = yIndex * nX + xIndex;
+		int count = samples[pixel];
+		if (count == 0)
+			return 0xFF000000;
+		int offset = 3 * pixel;
+		if (count == 1)
+			return toneMapping.toRGB(radiance[offset], radiance[offset + 1], radiance[offset + 2], exposure);
+		return toneMapping.toRGB(radiance[offset] / count, radiance[offset + 1] / count,
+				radiance[offset + 2] / count, exposure);
+	}
+}
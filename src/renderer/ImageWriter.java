@@ -2,8 +2,10 @@ package renderer;
 
 import primitives.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
+import java.util.stream.IntStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,7 +15,11 @@ import javax.imageio.*;
  * Image writer class combines accumulation of pixel color matrix and finally
  * producing a non-optimized jpeg image from this matrix. The class although is
  * responsible of holding image related parameters of View Plane - pixel matrix
- * size and resolution
+ * size and resolution<br/>
+ * The pixels are kept in a high dynamic range {@link FrameBuffer}, and are
+ * tone mapped into the image file only when it's written, so the image can be
+ * written again with another exposure or tone mapping without rendering it
+ * again
  * 
  * @author Dan
  */
@@ -21,11 +27,19 @@ public class ImageWriter {
 	private int nX;
 	private int nY;
 
-	private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+	/**
+	 * Folder of the image files
+	 */
+	protected static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+
+	private final FrameBuffer frameBuffer;
+	private ToneMapping toneMapping = ToneMapping.CLAMP;
+	private double exposure = 1;
+	/**
+	 * Name of the image file (without its extension)
+	 */
+	protected final String imageName;
 
-	private BufferedImage image;
-	private String imageName;
-	
 	private Logger logger = Logger.getLogger("ImageWriter");
 
 	// ***************** Constructors ********************** //
@@ -36,11 +50,23 @@ public class ImageWriter {
 	 * @param nY        amount of pixels by height
 	 */
 	public ImageWriter(String imageName, int nX, int nY) {
+		this(imageName, nX, nY, new FrameBuffer(nX, nY));
+	}
+
+	/**
+	 * Constructor for the subclasses that don't keep the whole image in memory
+	 * 
+	 * @param imageName   the name of the image file
+	 * @param nX          amount of pixels by Width
+	 * @param nY          amount of pixels by height
+	 * @param frameBuffer the pixel color matrix, null if the subclass keeps the
+	 *                    pixels by itself
+	 */
+	protected ImageWriter(String imageName, int nX, int nY, FrameBuffer frameBuffer) {
 		this.imageName = imageName;
 		this.nX = nX;
 		this.nY = nY;
-
-		image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+		this.frameBuffer = frameBuffer;
 	}
 
 	// ***************** Getters/Setters ********************** //
@@ -62,22 +88,102 @@ public class ImageWriter {
 		return nX;
 	}
 
+	/**
+	 * Getter of the high dynamic range pixel color matrix
+	 * 
+	 * @return the frame buffer, null if the writer doesn't keep the image in
+	 *         memory
+	 */
+	public FrameBuffer getFrameBuffer() {
+		return frameBuffer;
+	}
+
+	/**
+	 * Set the tone mapping operator of the pixels' radiance (clamping by default)
+	 * 
+	 * @param toneMapping the tone mapping operator
+	 * @return the image writer
+	 */
+	public ImageWriter setToneMapping(ToneMapping toneMapping) {
+		this.toneMapping = toneMapping;
+		return this;
+	}
+
+	/**
+	 * Getter of the tone mapping operator
+	 * 
+	 * @return the tone mapping operator
+	 */
+	public ToneMapping getToneMapping() {
+		return toneMapping;
+	}
+
+	/**
+	 * Set the exposure - the factor of the pixels' radiance before it's tone
+	 * mapped (1 by default)
+	 * 
+	 * @param exposure the exposure factor
+	 * @return the image writer
+	 */
+	public ImageWriter setExposure(double exposure) {
+		this.exposure = exposure;
+		return this;
+	}
+
+	/**
+	 * Getter of the exposure
+	 * 
+	 * @return the exposure factor
+	 */
+	public double getExposure() {
+		return exposure;
+	}
+
+	/**
+	 * Whether the writer streams the image into its file while it is rendered.
+	 * Such a writer keeps only the rows that were not written to the file yet, so
+	 * the pixels should be written roughly row by row to bound its memory
+	 * 
+	 * @return true if the image is streamed, false if it's kept in memory until
+	 *         {@link #writeToImage()}
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
 	// ***************** Operations ******************** //
 
 	/**
 	 * Function writeToImage produces unoptimized png file of the image according to
-	 * pixel color matrix in the directory of the project
+	 * pixel color matrix in the directory of the project. The pixels are tone
+	 * mapped (in parallel, row by row) with the current exposure and tone mapping
 	 */
 	public void writeToImage() {
+		BufferedImage image = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		IntStream.range(0, nY).parallel().forEach(row -> {
+			for (int col = 0, pixel = row * nX; col < nX; ++col, ++pixel)
+				pixels[pixel] = frameBuffer.toRGB(col, row, toneMapping, exposure);
+		});
 		try {
 			File file = new File(FOLDER_PATH + '/' + imageName + ".png");
 			ImageIO.write(image, "png", file);
 		} catch (IOException e) {
-			logger.log(Level.SEVERE, "I/O error", e);
-			throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+			throw ioError(e);
 		}
 	}
 
+	/**
+	 * Log an I/O error of writing the image
+	 * 
+	 * @param e the error
+	 * @return exception to throw for the error
+	 */
+	protected IllegalStateException ioError(IOException e) {
+		logger.log(Level.SEVERE, "I/O error", e);
+		return new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+	}
+
 	/**
 	 * The function writePixel writes a color of a specific pixel into pixel color
 	 * matrix
@@ -87,7 +193,7 @@ public class ImageWriter {
 	 * @param color  final color of the pixel
 	 */
 	public void writePixel(int xIndex, int yIndex, Color color) {
-		image.setRGB(xIndex, yIndex, color.getColor().getRGB());
+		frameBuffer.set(xIndex, yIndex, color);
 	}
 
 }
@@ -1,33 +1,27 @@
 package renderer;
 
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * Pixel is a helper class. It is used for multi-threading in the renderer and
- * for follow up its progress.<br/>
- * There is a main follow up object and several secondary objects - one in each
- * thread.
+ * Pixel is a helper class. It is used for follow up of the rendering progress
+ * (both with and without multi-threading).<br/>
+ * The progress counter is lock-free so the rendering threads don't contend on
+ * it when they report finished pixels.
  * 
  * @author Dan
  *
  */
 class Pixel {
-	private static int maxRows = 0;
-	private static int maxCols = 0;
 	private static long totalPixels = 0l;
 
-	private static volatile int cRow = 0;
-	private static volatile int cCol = -1;
-	private static volatile long pixels = 0l;
+	private static final LongAdder pixels = new LongAdder();
 	private static volatile long last = -1l;
 	private static volatile int lastPrinted = -1;
 
 	private static boolean print = false;
 	private static long printInterval = 100l;
 	private static final String PRINT_FORMAT = "%5.1f%%\r";
-	private static Object mutexNext = new Object();
-	private static Object mutexPixels = new Object();
-
-	int row;
-	int col;
 
 	/**
 	 * Initialize pixel data for multi-threading
@@ -37,63 +31,33 @@ class Pixel {
 	 * @param interval print time interval in seconds, 0 if printing is not required
 	 */
 	static void initialize(int maxRows, int maxCols, double interval) {
-		Pixel.maxRows = maxRows;
-		Pixel.maxCols = maxCols;
 		Pixel.totalPixels = (long) maxRows * maxCols;
-		cRow = 0;
-		cCol = -1;
-		pixels = 0;
+		pixels.reset();
+		last = -1l;
+		lastPrinted = -1;
 		printInterval = (int) (interval * 1000);
 		print = printInterval != 0;
 	}
 
-	/**
-	 * Function for thread-safe manipulating of main follow up Pixel object - this
-	 * function is critical section for all the threads, and static data is the
-	 * shared data of this critical section.<br/>
-	 * The function provides next available pixel number each call.
-	 * 
-	 * @return true if next pixel is allocated, false if there are no more pixels
-	 */
-	public boolean nextPixel() {
-		synchronized (mutexNext) {
-			if (cRow == maxRows)
-				return false;
-			++cCol;
-			if (cCol < maxCols) {
-				row = cRow;
-				col = cCol;
-				return true;
-			}
-			cCol = 0;
-			++cRow;
-			if (cRow < maxRows) {
-				row = cRow;
-				col = cCol;
-				return true;
-			}
-			return false;
-		}
-	}
-
 	/**
 	 * Finish pixel processing
 	 */
 	static void pixelDone() {
-		synchronized (mutexPixels) {
-			++pixels;
-		}
+		pixels.increment();
 	}
 
 	/**
-	 * Wait for all pixels to be done and print the progress percentage - must be
-	 * run from the main thread
+	 * Wait for the rendering task to finish and print the progress percentage -
+	 * must be run from the main thread. The wait ends also when the task fails,
+	 * so its exception can be rethrown by joining it
+	 * 
+	 * @param task the task that renders the pixels
 	 */
-	public static void waitToFinish() {
+	public static void waitToFinish(ForkJoinTask<?> task) {
 		if (print) {
 			System.out.printf(PRINT_FORMAT, 0d);
 
-			while (last < totalPixels) {
+			while (!task.isDone()) {
 				printPixel();
 				try {
 					Thread.sleep(printInterval);
@@ -102,7 +66,8 @@ class Pixel {
 				}
 			}
 
-			System.out.println("100.0%");
+			if (task.isCompletedNormally())
+				System.out.println("100.0%");
 		}
 	}
 
@@ -110,7 +75,7 @@ class Pixel {
 	 * Print pixel progress percentage
 	 */
 	public static void printPixel() {
-		long current = pixels;
+		long current = pixels.sum();
 		if (print && last != current) {
 			int percentage = (int) (1000l * current / totalPixels);
 			if (lastPrinted != percentage) {
@@ -23,11 +23,36 @@ public abstract class RayTracerBase {
 	}
 
 	/**
-	 * Find the color of the closest object hit by the ray.
+	 * Find the color of the closest object hit by the ray. Stochastic effects take
+	 * their random numbers from the current sample of the thread's
+	 * {@link RandomSequence}, which the caller starts.
 	 * 
 	 * @param ray The ray to test
 	 * 
 	 * @return The color of the closest object hit by the ray.
 	 */
 	public abstract Color traceRay(Ray ray);
+
+	/**
+	 * Find the colors of the closest objects hit by a packet of coherent rays
+	 * (e.g. neighboring primary rays). By default the rays are traced one by one,
+	 * ray tracers override it when they can trace the rays together. Every ray is
+	 * traced as its own sample of the thread's {@link RandomSequence} - the
+	 * sample is started by the ray's pixel and sample index before the ray is
+	 * shaded, so its random numbers don't depend on the packet.
+	 * 
+	 * @param rays    The rays to test
+	 * @param pixels  The index of the pixel of every ray (see
+	 *                {@link RandomSequence#start(long, int)})
+	 * @param samples The index of the sample of every ray in its pixel
+	 * @param colors  The array to put the color of every ray into (by the rays'
+	 *                order)
+	 */
+	public void traceRays(Ray[] rays, long[] pixels, int[] samples, Color[] colors) {
+		RandomSequence sequence = RandomSequence.current();
+		for (int i = 0; i < rays.length; ++i) {
+			sequence.start(pixels[i], samples[i]);
+			colors[i] = traceRay(rays[i]);
+		}
+	}
 }
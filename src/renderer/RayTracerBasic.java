@@ -1,12 +1,17 @@
 package renderer;
 
-import java.util.List;
-
 import primitives.*;
 import scene.*;
+import geometries.Geometries;
+import geometries.Intersectable;
 import geometries.Intersectable.GeoPoint;
+import lighting.LightBVH;
 import lighting.LightSource;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import static primitives.Util.*;
 
 /**
@@ -27,6 +32,36 @@ public class RayTracerBasic extends RayTracerBase {
 	 */
 	private static final double MIN_CALC_COLOR_K = 0.001;
 
+	/**
+	 * Weight of a path below which the Russian roulette may end it
+	 */
+	private static final double ROULETTE_K = 0.1;
+
+	/**
+	 * Choices for the secondary rays of a point with both reflection and
+	 * refraction: FULL traces both of them (the full tree of rays), RUSSIAN_ROULETTE
+	 * traces one of them picked by its weight and ends weak paths by Russian
+	 * roulette (a single path per ray - noisier, but the same image on average)
+	 */
+	public enum BRANCHING_TYPE {
+		FULL, RUSSIAN_ROULETTE
+	}
+
+	/**
+	 * The work stack of every thread
+	 */
+	private static final ThreadLocal<PathStack> PATH_STACK = ThreadLocal.withInitial(PathStack::new);
+
+	private BRANCHING_TYPE branching = BRANCHING_TYPE.FULL;
+
+	/**
+	 * The last occluder of the shadow rays towards every light, per thread - the
+	 * geometry that blocked the last shadow ray of the thread towards the light by
+	 * itself (see
+	 * {@link geometries.Intersectable#findTransparency(Ray, double, double, Intersectable[])})
+	 */
+	private final ThreadLocal<Occluders> lastOccluders = ThreadLocal.withInitial(Occluders::new);
+
 	/**
 	 * RayTracerBasic constructor
 	 * 
@@ -36,6 +71,17 @@ public class RayTracerBasic extends RayTracerBase {
 		super(s);
 	}
 
+	/**
+	 * Set the branching of the secondary rays to FULL or RUSSIAN_ROULETTE
+	 * 
+	 * @param type type of the branching (FULL, RUSSIAN_ROULETTE)
+	 * @return the ray tracer itself
+	 */
+	public RayTracerBasic setBranching(BRANCHING_TYPE type) {
+		branching = type;
+		return this;
+	}
+
 	/**
 	 * Find the color of the closest object hit by the ray.
 	 * 
@@ -53,9 +99,36 @@ public class RayTracerBasic extends RayTracerBase {
 	}
 
 	/**
-	 * Calculate the color of a geometry intersection point
-	 * by calling the calcColor method with a default level and k effect coefficient
-	 * and adding the ambient light.
+	 * Find the colors of the closest objects hit by a packet of coherent rays. The
+	 * closest intersections of the rays are found together (see
+	 * {@link geometries.Intersectable#findClosestGeoIntersections(RayPacket, GeoPoint[])}),
+	 * the colors of the intersection points are calculated one by one, every one
+	 * as the sample of its ray.
+	 * 
+	 * @param rays    The rays to test
+	 * @param pixels  The index of the pixel of every ray
+	 * @param samples The index of the sample of every ray in its pixel
+	 * @param colors  The array to put the color of every ray into
+	 */
+	@Override
+	public void traceRays(Ray[] rays, long[] pixels, int[] samples, Color[] colors) {
+		GeoPoint[] closest = new GeoPoint[rays.length];
+		scene.geometries.findClosestGeoIntersections(new RayPacket(rays), closest);
+		RandomSequence sequence = RandomSequence.current();
+		for (int i = 0; i < rays.length; ++i) {
+			sequence.start(pixels[i], samples[i]);
+			colors[i] = closest[i] == null ? scene.background : calcColor(closest[i], rays[i]);
+		}
+	}
+
+	/**
+	 * Calculate the color of a geometry intersection point and add the ambient
+	 * light. The point and the points seen from it by reflection and refraction
+	 * are shaded iteratively - the secondary rays wait on the thread's work stack
+	 * with their throughput (the product of the effects along their path) and
+	 * their level, and every shaded point adds its color scaled by its throughput.
+	 * Which secondary rays are traced is decided by the branching type (see
+	 * {@link #setBranching(BRANCHING_TYPE)}).
 	 * 
 	 * @param gp  - the intersection point
 	 * @param ray - the ray that intersected the geometry
@@ -63,140 +136,259 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @return the color of the intersection point
 	 */
 	public Color calcColor(GeoPoint gp, Ray ray) {
-		return calcColor(gp, ray, MAX_CALC_COLOR_LEVEL, Double3.ONE).add(scene.ambientLight.getIntensity());
+		PathStack stack = PATH_STACK.get();
+		MutableDouble3 color = new MutableDouble3();
+		// the stack is shared by the whole thread - a path that failed must not leave
+		// its rays to the next one
+		stack.size = 0;
+		try {
+			shade(stack, color, gp, ray, MAX_CALC_COLOR_LEVEL, 1, 1, 1);
+			while (stack.size > 0) {
+				int top = --stack.size;
+				Ray secondaryRay = stack.rays[top];
+				stack.rays[top] = null;
+				double k1 = stack.throughput[top * 3];
+				double k2 = stack.throughput[top * 3 + 1];
+				double k3 = stack.throughput[top * 3 + 2];
+				GeoPoint intersection = findClosestIntersection(secondaryRay);
+				if (intersection == null) {
+					// the background seen through the effects of the path
+					Double3 background = scene.background.getRgb();
+					color.d1 += background.d1 * k1;
+					color.d2 += background.d2 * k2;
+					color.d3 += background.d3 * k3;
+				} else if (stack.levels[top] > 1) {
+					shade(stack, color, intersection, secondaryRay, stack.levels[top], k1, k2, k3);
+				}
+			}
+		} finally {
+			Arrays.fill(stack.rays, 0, stack.size, null);
+			stack.size = 0;
+		}
+		return color.toColor().add(scene.ambientLight.getIntensity());
 	}
 
 	/**
-	 * Calculate the color of a geometry intersection point
+	 * Shade a geometry intersection point - add its emission and local effects
+	 * scaled by its throughput to the color, and push its secondary rays
 	 * 
+	 * @param stack - the work stack of the secondary rays
+	 * @param color - the color to add the point's color to
 	 * @param gp    - the intersection point
 	 * @param ray   - the ray that intersected the geometry
-	 * @param level - the current level of recursion
-	 * @param k     - the current k effect coefficient for reflection and refraction
-	 * 
-	 * @return the color of the intersection point
+	 * @param level - the level of the point (the secondary rays are one less)
+	 * @param k1    - first component of the throughput of the point
+	 * @param k2    - second component of the throughput of the point
+	 * @param k3    - third component of the throughput of the point
 	 */
-	private Color calcColor(GeoPoint gp, Ray ray, int level, Double3 k) {
-		// base case: recursion level is too high or the reflection/refraction
-		// coefficient is too small
-		if (level == 1 || k.lowerThan(MIN_CALC_COLOR_K)) {
-			// return (0,0,0) since we don't want to add any more color
-			return Color.BLACK;
-		}
-		// recursive case (calcColor is called in calcGlobalEffect)
+	private void shade(PathStack stack, MutableDouble3 color, GeoPoint gp, Ray ray, int level, double k1, double k2,
+			double k3) {
+		// only the work that the material can contribute is done
+		Material material = gp.geometry.getMaterial();
+		Material.Kind kind = material.getKind();
 		// start with emission color and add lights (diffuse, specular, shadows)
-		Color result = gp.geometry.getEmission().add(calcLocalEffects(gp, ray, k));
-		// normal vector of the geometry at the intersection point
-		Vector normal = gp.getNormal();
-		// calculate reflection
-		Ray reflectedRay = constructReflectedRay(normal, gp.point, ray);
-		result = result.add(calcGlobalEffect(gp.geometry.getMaterial().kR, reflectedRay, level, k));
-		// calculate refraction
-		Ray refractedRay = constructRefractedRay(normal, gp.point, ray);
-		result = result.add(calcGlobalEffect(gp.geometry.getMaterial().kT, refractedRay, level, k));
-		// return the color
-		return result;
+		MutableDouble3 local = stack.local.set(gp.geometry.getEmission().getRgb());
+		// no normal, no lights and no secondary rays for an emissive point
+		Vector normal = kind == Material.Kind.EMISSIVE ? null : gp.getNormal();
+		if (normal != null && material.hasLocalEffects()) {
+			calcLocalEffects(local, gp, normal, ray, new Double3(k1, k2, k3));
+		}
+		color.d1 += local.d1 * k1;
+		color.d2 += local.d2 * k2;
+		color.d3 += local.d3 * k3;
+
+		// the secondary rays - a ray along the surface has no reflection
+		Ray reflectedRay = kind == Material.Kind.MIRROR || kind == Material.Kind.GLASS && material.isReflective()
+				? constructReflectedRay(normal, gp.point, ray)
+				: null;
+		Ray refractedRay = kind == Material.Kind.GLASS ? constructRefractedRay(normal, gp.point, ray) : null;
+		if (reflectedRay == null && refractedRay == null) {
+			return;
+		}
+		if (branching == BRANCHING_TYPE.FULL) {
+			if (reflectedRay != null) {
+				push(stack, reflectedRay, material.kR, level, k1, k2, k3);
+			}
+			if (refractedRay != null) {
+				push(stack, refractedRay, material.kT, level, k1, k2, k3);
+			}
+			return;
+		}
+
+		// a single path - when there are both rays, one of them is picked by the
+		// weight of its effect and scaled by the probability to pick it
+		RandomSequence random = RandomSequence.current();
+		if (reflectedRay != null && refractedRay != null) {
+			double reflection = weight(material.kR, k1, k2, k3);
+			double refraction = weight(material.kT, k1, k2, k3);
+			if (reflection + refraction == 0) {
+				return;
+			}
+			double probability = reflection / (reflection + refraction);
+			if (random.next() < probability) {
+				refractedRay = null;
+			} else {
+				reflectedRay = null;
+				probability = 1 - probability;
+			}
+			k1 /= probability;
+			k2 /= probability;
+			k3 /= probability;
+		}
+		Double3 effect = reflectedRay != null ? material.kR : material.kT;
+		// Russian roulette - a weak path survives by the chance of its weight and is
+		// scaled by it, instead of being traced to the end or cut
+		double survival = weight(effect, k1, k2, k3) / ROULETTE_K;
+		if (survival < 1) {
+			if (random.next() >= survival) {
+				return;
+			}
+			k1 /= survival;
+			k2 /= survival;
+			k3 /= survival;
+		}
+		push(stack, reflectedRay != null ? reflectedRay : refractedRay, effect, level, k1, k2, k3);
 	}
 
 	/**
-	 * Calculate a single global effect of a specific factor (reflection or
-	 * refraction)
+	 * The weight of an effect along a path - the strongest component of the
+	 * effect scaled by the throughput
 	 * 
-	 * @param effect    - material kR for reflection or kT for refraction
-	 * @param angledRay - the ray of reflection or refraction
-	 * @param level     - the current level of recursion
-	 * @param k         - the current k coefficient for reflection and refraction
-	 *
-	 * @return a color to add to the color of the point
+	 * @param effect - material kR for reflection or kT for refraction
+	 * @param k1     - first component of the throughput
+	 * @param k2     - second component of the throughput
+	 * @param k3     - third component of the throughput
+	 * @return the weight
 	 */
-	private Color calcGlobalEffect(Double3 effect, Ray angledRay, int level, Double3 k) {
-		GeoPoint nextIntersection = findClosestIntersection(angledRay);
-		// if there is no intersection with the ray, return the background color
-		if (nextIntersection == null) {
-			return scene.background;
+	private static double weight(Double3 effect, double k1, double k2, double k3) {
+		return Math.max(effect.d1 * k1, Math.max(effect.d2 * k2, effect.d3 * k3));
+	}
+
+	/**
+	 * Push a secondary ray (reflection or refraction) to the work stack, unless
+	 * its effect is too weak to show
+	 * 
+	 * @param stack  - the work stack
+	 * @param ray    - the ray of reflection or refraction
+	 * @param effect - material kR for reflection or kT for refraction
+	 * @param level  - the level of the point the ray leaves
+	 * @param k1     - first component of the throughput of the point
+	 * @param k2     - second component of the throughput of the point
+	 * @param k3     - third component of the throughput of the point
+	 */
+	private static void push(PathStack stack, Ray ray, Double3 effect, int level, double k1, double k2, double k3) {
+		k1 *= effect.d1;
+		k2 *= effect.d2;
+		k3 *= effect.d3;
+		// diminish the effect by the throughput - an effect too weak to show is not
+		// traced at all
+		if (k1 < MIN_CALC_COLOR_K && k2 < MIN_CALC_COLOR_K && k3 < MIN_CALC_COLOR_K) {
+			return;
 		}
-		// diminish the effect by the k coefficient for the next recursive call
-		Double3 scaledEffect = effect.product(k);
-		// recursively call calcColor with the reflected or refracted ray, and scale it
-		// by the effect
-		return calcColor(nextIntersection, angledRay, level - 1, scaledEffect).scale(effect);
+		int top = stack.size++;
+		stack.rays[top] = ray;
+		stack.throughput[top * 3] = k1;
+		stack.throughput[top * 3 + 1] = k2;
+		stack.throughput[top * 3 + 2] = k3;
+		stack.levels[top] = level - 1;
 	}
 
 	/**
-	 * Calculate the local lighting effects of a geometry intersection point
+	 * Calculate the local lighting effects of a geometry intersection point and
+	 * add them to the color of the point
 	 * 
+	 * @param color        - the color of the point to add the effects to
 	 * @param intersection - of type GeoPoint
+	 * @param n            - the normal vector at the intersection point
 	 * @param ray          - of type Ray
-	 * @return a color - based on effect of local factors
+	 * @param k            - the current k coefficient for reflection and refraction
 	 */
-	private Color calcLocalEffects(GeoPoint intersection, Ray ray, Double3 k) {
+	private void calcLocalEffects(MutableDouble3 color, GeoPoint intersection, Vector n, Ray ray, Double3 k) {
 		// viewing direction
 		Vector v = ray.dir;
-		// normal vector of the geometry at the intersection point
-		Vector n = intersection.getNormal();
 		// dot product of v and n
 		double nv = alignZero(n.dotProduct(v));
 		if (isZero(nv)) {
-			return Color.BLACK;
+			return;
 		}
 		Material material = intersection.geometry.getMaterial();
-		int nShininess = material.nShininess;
-		Double3 kd = material.kD;
-		Double3 ks = material.kS;
-
-		Color color = Color.BLACK;
-		for (LightSource lightSource : scene.lights) {
-			Vector l = lightSource.getL(intersection.point);
-			double nl = alignZero(n.dotProduct(l));
-			if (nl * nv > 0) // sign(nl) == sign(nv)
-			{
-				Double3 ktr = transparency(intersection, lightSource, l, n);
-				if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) {
-					Color lightIntensity = lightSource.getIntensity(intersection.point).scale(ktr);
-					color = color.add(calcDiffusive(kd, l, n, lightIntensity),
-							calcSpecular(ks, l, n, v, nShininess, lightIntensity));
-				}
+
+		// scratch for the light intensity reaching the point (reused for every light)
+		MutableDouble3 lightIntensity = new MutableDouble3();
+		if (scene.lightBVH == null) {
+			for (LightSource lightSource : scene.lights)
+				calcLightEffect(color, intersection, n, v, nv, material, k, lightSource, 1, lightIntensity);
+		} else {
+			// only the lights that can affect the point, scaled if they were sampled
+			LightBVH.Selection selection = scene.lightBVH.select(intersection.point);
+			for (int i = 0; i < selection.size(); ++i)
+				calcLightEffect(color, intersection, n, v, nv, material, k, selection.getLight(i),
+						selection.getScale(i), lightIntensity);
+		}
+	}
+
+	/**
+	 * Calculate the lighting effect of a light source on a geometry intersection
+	 * point and add it to the color of the point
+	 * 
+	 * @param color          - the color of the point to add the effect to
+	 * @param intersection   - of type GeoPoint
+	 * @param n              - the normal vector at the intersection point
+	 * @param v              - the viewing direction
+	 * @param nv             - the dot product of the normal and the viewing vector
+	 * @param material       - the material of the intersected geometry
+	 * @param k              - the current k coefficient for reflection and
+	 *                       refraction
+	 * @param lightSource    - the light source
+	 * @param scale          - the scale of the light's intensity
+	 * @param lightIntensity - scratch for the light intensity reaching the point
+	 */
+	private void calcLightEffect(MutableDouble3 color, GeoPoint intersection, Vector n, Vector v, double nv,
+			Material material, Double3 k, LightSource lightSource, double scale, MutableDouble3 lightIntensity) {
+		Vector l = lightSource.getL(intersection.point);
+		double nl = alignZero(n.dotProduct(l));
+		if (nl * nv > 0) // sign(nl) == sign(nv)
+		{
+			Double3 ktr = transparency(intersection, lightSource, l, n);
+			if (!lightIntensity.set(ktr).product(k).scale(scale).lowerThan(MIN_CALC_COLOR_K)) {
+				lightIntensity.set(lightSource.getIntensity(intersection.point).getRgb()).product(ktr).scale(scale);
+				calcDiffusive(color, material.kD, nl, lightIntensity);
+				calcSpecular(color, material.kS, nl, l.dotProduct(v), nv, material.nShininess, lightIntensity);
 			}
 		}
-		return color;
 	}
 
 	/**
-	 * Calculate the diffuse lighting effect of a geometry intersection point
+	 * Calculate the diffuse lighting effect of a geometry intersection point and
+	 * add it to the color of the point
 	 * 
+	 * @param color          - the color of the point to add the effect to
 	 * @param kd             - the diffuse coefficient
-	 * @param l              - the light vector
-	 * @param n              - the normal vector
+	 * @param nl             - the dot product of the normal and the light vector
 	 * @param lightIntensity - the light intensity
-	 * 
-	 * @return the diffuse lighting effect
 	 */
-	private Color calcDiffusive(Double3 kd, Vector l, Vector n, Color lightIntensity) {
-		// amount of projection of l on n
-		double nl = Math.abs(alignZero(n.dotProduct(l)));
-		// diffuse lighting effect
-		return lightIntensity.scale(kd.scale(nl));
+	private void calcDiffusive(MutableDouble3 color, Double3 kd, double nl, MutableDouble3 lightIntensity) {
+		// diffuse lighting effect - scaled by the amount of projection of l on n
+		color.addProduct(lightIntensity, kd, Math.abs(nl));
 	}
 
 	/**
-	 * Calculate the specular lighting effect of a geometry intersection point
+	 * Calculate the specular lighting effect of a geometry intersection point and
+	 * add it to the color of the point
 	 * 
+	 * @param color          - the color of the point to add the effect to
 	 * @param ks             - the specular coefficient
-	 * @param l              - the light vector
-	 * @param n              - the normal vector
-	 * @param v              - the viewing vector
+	 * @param nl             - the dot product of the normal and the light vector
+	 * @param lv             - the dot product of the light and the viewing vectors
+	 * @param nv             - the dot product of the normal and the viewing vector
 	 * @param nShininess     - the shininess coefficient
 	 * @param lightIntensity - the light intensity
-	 * 
-	 * @return the specular lighting effect
 	 */
-	private Color calcSpecular(Double3 ks, Vector l, Vector n, Vector v, int nShininess, Color lightIntensity) {
-		// amount of projection of l on n
-		double nl = alignZero(n.dotProduct(l));
-		Vector r = l.subtract(n.scale(2 * nl));
-		double rv = alignZero(r.dotProduct(v));
-		Double3 scaledKs = ks.scale(Math.pow(-rv, nShininess));
-		return scaledKs.lowerThan(0) ? lightIntensity.scale(scaledKs.scale(-1)) : lightIntensity.scale(scaledKs);
+	private void calcSpecular(MutableDouble3 color, Double3 ks, double nl, double lv, double nv, int nShininess,
+			MutableDouble3 lightIntensity) {
+		// r = l - 2 * nl * n, so r.v = l.v - 2 * nl * n.v (no need to build r)
+		double rv = alignZero(lv - 2 * nl * nv);
+		color.addProduct(lightIntensity, ks, Math.abs(Math.pow(-rv, nShininess)));
 	}
 
 	/**
@@ -215,21 +407,22 @@ public class RayTracerBasic extends RayTracerBase {
 		Vector directionToLight = l.scale(-1); // to change direction of vector to be from point to light
 		Ray rayPointToLight = new Ray(geoPoint.point, directionToLight, n);
 		double lightDistance = ls.getDistance(geoPoint.point);
-		List<GeoPoint> intersections = scene.geometries.findGeoIntersections(rayPointToLight, lightDistance);
-		Double3 ktr = Double3.ONE;
-		// if there is no object between point and light, it is fully transparent
-		if (intersections == null)
-			return Double3.ONE;
-		for (GeoPoint gp : intersections) {
-			// diminish the transparency based on the transparency of the geometry
-			ktr = ktr.product(gp.geometry.getMaterial().kT);
-
-			// if it's mostly opaque, make it fully opaque
-			if (ktr.lowerThan(MIN_CALC_COLOR_K)) {
-				return Double3.ZERO;
-			}
+		// neighboring points are usually blocked by the same geometry - the last
+		// occluder blocks the ray by itself, so if it blocks the ray again, the ray is
+		// opaque whatever else it intersects (transparent geometries are never cached)
+		Occluders occluders = lastOccluders.get();
+		if (occluders.geometries != scene.geometries) {
+			// the geometries of the scene were replaced - the occluders may be gone
+			occluders.geometries = scene.geometries;
+			occluders.lights.clear();
 		}
-		return ktr;
+		Intersectable[] occluder = occluders.lights.computeIfAbsent(ls, light -> new Intersectable[1]);
+		if (occluder[0] != null
+				&& occluder[0].findTransparency(rayPointToLight, lightDistance, MIN_CALC_COLOR_K).lowerThan(MIN_CALC_COLOR_K))
+			return Double3.ZERO;
+		// diminish the transparency by the geometries between the point and the light,
+		// the query stops at the first geometry that makes it (mostly) opaque
+		return scene.geometries.findTransparency(rayPointToLight, lightDistance, MIN_CALC_COLOR_K, occluder);
 	}
 
 	/**
@@ -264,17 +457,37 @@ public class RayTracerBasic extends RayTracerBase {
 	}
 
 	/**
-	 * Method that receives a ray and finds a list of intersections of the ray with
-	 * geometries and returns the closest of those intersections
+	 * Method that receives a ray and finds the closest intersection of the ray with
+	 * the geometries (without building the list of all the intersections)
 	 * 
 	 * @param ray - the ray to find the closest intersection for
 	 * @return GeoPoint - a geoPoint that is from the geometry intersected by the
 	 *         ray first
 	 */
 	private GeoPoint findClosestIntersection(Ray ray) {
-		List<GeoPoint> lst = scene.geometries.findGeoIntersections(ray);
-		if (lst == null)
-			return null;
-		return ray.findClosestGeoPoint(lst);
+		return scene.geometries.findClosestGeoIntersection(ray);
+	}
+
+	/**
+	 * Work stack of the secondary rays waiting to be traced, with the throughput
+	 * and the level of every ray. The points are shaded depth first and every
+	 * point pushes at most two rays, so the stack holds at most one ray per level
+	 * and the pending sibling of each - it is allocated once per thread.
+	 */
+	private static final class PathStack {
+		private final Ray[] rays = new Ray[2 * MAX_CALC_COLOR_LEVEL];
+		private final double[] throughput = new double[2 * MAX_CALC_COLOR_LEVEL * 3];
+		private final int[] levels = new int[2 * MAX_CALC_COLOR_LEVEL];
+		private final MutableDouble3 local = new MutableDouble3();
+		private int size;
+	}
+
+	/**
+	 * The last occluders of the shadow rays of a thread towards every light, valid
+	 * for the geometries of the scene they were found in
+	 */
+	private static final class Occluders {
+		private Geometries geometries;
+		private final Map<LightSource, Intersectable[]> lights = new IdentityHashMap<>();
 	}
 }
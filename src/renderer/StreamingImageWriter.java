@@ -0,0 +1,327 @@
+package renderer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import primitives.Color;
+
+/**
+ * Image writer that streams the image into its file while it is rendered,
+ * instead of keeping the whole image in memory. The image is split into bands
+ * of {@link #BAND_HEIGHT} rows - a band is kept in memory only until all its
+ * pixels were written, then it's written to the file and dropped. So the memory
+ * is bounded by the bands being rendered (when the pixels are written roughly
+ * row by row, as the camera does for a streaming writer), and the finished
+ * bands can be watched in the file while the rest of the image is rendered.<br/>
+ * Every pixel must be written once - a band is flushed as soon as all its
+ * pixels were written, so writing a pixel again, or into a flushed band,
+ * fails. The pixels that were not written are black. The image file is
+ * complete after {@link #writeToImage()}.<br/>
+ * Two formats are supported:
+ * <ul>
+ * <li>{@link Format#PNG} - the bands are compressed into the file in order, a
+ * band that is finished before the bands above it waits for them</li>
+ * <li>{@link Format#PPM} - uncompressed binary PPM, every band is written to
+ * its place in the file as soon as it's finished</li>
+ * </ul>
+ * The pixels are tone mapped as they are written, so the tone mapping and the
+ * exposure should be set before the rendering. The writer is thread safe.
+ * 
+ * @author elana
+ */
+public class StreamingImageWriter extends ImageWriter {
+	/**
+	 * Formats of the image file
+	 */
+	public enum Format {
+		/**
+		 * PNG file (.png)
+		 */
+		PNG,
+		/**
+		 * Binary PPM file (.ppm)
+		 */
+		PPM
+	}
+
+	/**
+	 * Amount of rows in a band (the tile size of the camera, so a row of tiles
+	 * finishes a band)
+	 */
+	static final int BAND_HEIGHT = 16;
+
+	/**
+	 * Size of the compressed data chunks of a PNG file
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Placeholder of a band that was written to the file
+	 */
+	private static final AtomicIntegerArray FLUSHED = new AtomicIntegerArray(0);
+
+	/**
+	 * Alpha bits of a written pixel - a pixel of a band that was not written yet
+	 * is 0
+	 */
+	private static final int OPAQUE = 0xFF000000;
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private final Format format;
+	private final FileChannel channel;
+	private final int bandCount;
+	/**
+	 * Pixels (packed ARGB, 0 for a pixel that was not written) of the bands being
+	 * rendered
+	 */
+	private final AtomicReferenceArray<AtomicIntegerArray> bands;
+	/**
+	 * Amount of pixels of every band that were not written yet
+	 */
+	private final AtomicIntegerArray remaining;
+	/**
+	 * Offset of the pixels in a PPM file
+	 */
+	private long dataOffset;
+	/**
+	 * First band that was not written yet into a PNG file
+	 */
+	private int nextBand = 0;
+	private boolean closed = false;
+
+	// PNG compression state
+	private Deflater deflater;
+	private byte[] chunk;
+	private int chunkLength;
+	private byte[] scanline;
+
+	/**
+	 * Constructor - creates the image file and writes its header
+	 * 
+	 * @param imageName the name of the image file (without its extension)
+	 * @param nX        amount of pixels by Width
+	 * @param nY        amount of pixels by height
+	 * @param format    format of the image file
+	 * @throws IllegalStateException if the file can't be created
+	 */
+	public StreamingImageWriter(String imageName, int nX, int nY, Format format) {
+		super(imageName, nX, nY, null);
+		this.format = format;
+		bandCount = (nY + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		bands = new AtomicReferenceArray<>(bandCount);
+		remaining = new AtomicIntegerArray(bandCount);
+		for (int band = 0; band < bandCount; ++band)
+			remaining.set(band, bandRows(band) * nX);
+
+		Path path = Path.of(FOLDER_PATH, imageName + (format == Format.PNG ? ".png" : ".ppm"));
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			if (format == Format.PNG) {
+				write(ByteBuffer.wrap(PNG_SIGNATURE));
+				ByteBuffer header = ByteBuffer.allocate(13);
+				// width, height, 8 bits per sample, RGB, deflate, adaptive filtering, no
+				// interlace
+				header.putInt(nX).putInt(nY).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+				writeChunk("IHDR", header.array(), 13);
+				deflater = new Deflater();
+				chunk = new byte[CHUNK_SIZE];
+				scanline = new byte[1 + 3 * nX];
+			} else {
+				byte[] header = ("P6\n" + nX + " " + nY + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+				write(ByteBuffer.wrap(header));
+				dataOffset = header.length;
+			}
+		} catch (IOException e) {
+			throw ioError(e);
+		}
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return true;
+	}
+
+	@Override
+	public void writePixel(int xIndex, int yIndex, Color color) {
+		int band = yIndex / BAND_HEIGHT;
+		AtomicIntegerArray pixels = bands.get(band);
+		if (pixels == null) {
+			bands.compareAndSet(band, null, new AtomicIntegerArray(bandRows(band) * getNx()));
+			pixels = bands.get(band);
+		}
+		if (pixels == FLUSHED)
+			throw new IllegalStateException(
+					"Pixel (" + xIndex + ", " + yIndex + ") was written after its rows were flushed");
+		// tone mapped from single precision, like the pixels of a frame buffer
+		int rgb = OPAQUE | getToneMapping().toRGB((float) color.getRgb().d1, (float) color.getRgb().d2,
+				(float) color.getRgb().d3, getExposure());
+		// a second write would count the band's pixels twice and flush it early
+		if (!pixels.compareAndSet((yIndex % BAND_HEIGHT) * getNx() + xIndex, 0, rgb))
+			throw new IllegalStateException("Pixel (" + xIndex + ", " + yIndex + ") was written twice");
+		if (remaining.decrementAndGet(band) == 0)
+			bandDone(band);
+	}
+
+	/**
+	 * Write the bands that were not flushed yet (with black for the pixels that
+	 * were not written) and complete the image file. Further calls do nothing.
+	 */
+	@Override
+	public synchronized void writeToImage() {
+		if (closed)
+			return;
+		try {
+			for (int band = format == Format.PNG ? nextBand : 0; band < bandCount; ++band) {
+				bands.compareAndSet(band, null, new AtomicIntegerArray(bandRows(band) * getNx()));
+				if (bands.get(band) != FLUSHED)
+					flush(band);
+			}
+			if (format == Format.PNG) {
+				deflater.finish();
+				while (!deflater.finished())
+					deflateChunk();
+				writeChunk("IDAT", chunk, chunkLength);
+				writeChunk("IEND", chunk, 0);
+				deflater.end();
+			}
+			channel.close();
+			closed = true;
+		} catch (IOException e) {
+			throw ioError(e);
+		}
+	}
+
+	/**
+	 * Write a band that all its pixels were written - a PPM band is written at
+	 * once, a PNG band is written after all the bands above it
+	 * 
+	 * @param band index of the band
+	 */
+	private synchronized void bandDone(int band) {
+		if (closed)
+			throw new IllegalStateException("Pixels were written after the image was completed");
+		try {
+			if (format == Format.PPM) {
+				flush(band);
+				return;
+			}
+			while (nextBand < bandCount && remaining.get(nextBand) == 0)
+				flush(nextBand++);
+		} catch (IOException e) {
+			throw ioError(e);
+		}
+	}
+
+	/**
+	 * Write a band into the file and drop its pixels
+	 * 
+	 * @param band index of the band
+	 * @throws IOException if the file can't be written
+	 */
+	private void flush(int band) throws IOException {
+		AtomicIntegerArray pixels = bands.getAndSet(band, FLUSHED);
+		int nX = getNx();
+		int rows = bandRows(band);
+		if (format == Format.PPM) {
+			ByteBuffer buffer = ByteBuffer.allocate(pixels.length() * 3);
+			for (int i = 0; i < pixels.length(); ++i) {
+				int rgb = pixels.get(i);
+				buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+			}
+			buffer.flip();
+			long position = dataOffset + (long) band * BAND_HEIGHT * nX * 3;
+			while (buffer.hasRemaining())
+				position += channel.write(buffer, position);
+			return;
+		}
+		// PNG scanlines with the "Sub" filter - every byte is kept as its difference
+		// from the same byte of the pixel to its left, which compresses better
+		scanline[0] = 1;
+		for (int row = 0; row < rows; ++row) {
+			int left = 0;
+			for (int col = 0, offset = 1; col < nX; ++col, offset += 3) {
+				int rgb = pixels.get(row * nX + col);
+				scanline[offset] = (byte) ((rgb >> 16) - (left >> 16));
+				scanline[offset + 1] = (byte) ((rgb >> 8) - (left >> 8));
+				scanline[offset + 2] = (byte) (rgb - left);
+				left = rgb;
+			}
+			deflater.setInput(scanline);
+			deflate();
+		}
+	}
+
+	/**
+	 * Compress the pending input of the deflater into IDAT chunks
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	private void deflate() throws IOException {
+		while (!deflater.needsInput())
+			deflateChunk();
+	}
+
+	/**
+	 * Compress into the current IDAT chunk, and write the chunk when it's full
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	private void deflateChunk() throws IOException {
+		chunkLength += deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+		if (chunkLength == chunk.length) {
+			writeChunk("IDAT", chunk, chunkLength);
+			chunkLength = 0;
+		}
+	}
+
+	/**
+	 * Write a PNG chunk
+	 * 
+	 * @param type   type of the chunk
+	 * @param data   data of the chunk
+	 * @param length length of the data
+	 * @throws IOException if the file can't be written
+	 */
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		ByteBuffer header = ByteBuffer.allocate(8).putInt(length).put(typeBytes).flip();
+		ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+		write(header);
+		write(ByteBuffer.wrap(data, 0, length));
+		write(trailer);
+	}
+
+	/**
+	 * Write a buffer at the end of the file
+	 * 
+	 * @param buffer the buffer
+	 * @throws IOException if the file can't be written
+	 */
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	/**
+	 * Amount of rows in a band (the last band may be shorter)
+	 * 
+	 * @param band index of the band
+	 * @return amount of rows
+	 */
+	private int bandRows(int band) {
+		return Math.min(BAND_HEIGHT, getNy() - band * BAND_HEIGHT);
+	}
+}
@@ -0,0 +1,70 @@
+package renderer;
+
+/**
+ * Tone mapping operator - maps the linear high dynamic range radiance of a
+ * color channel into the displayable range. The radiance is in the units of
+ * {@link primitives.Color}, where 255 is the display white, and so is the
+ * result of the mapping, before it's quantized into 8 bits.
+ * 
+ * @author elana
+ */
+@FunctionalInterface
+public interface ToneMapping {
+	/**
+	 * Clamp the radiance to the display white (the mapping of
+	 * {@link primitives.Color#getColor()})
+	 */
+	ToneMapping CLAMP = value -> value > 255 ? 255 : value;
+
+	/**
+	 * Reinhard operator x / (1 + x) - compresses the highlights smoothly and
+	 * never reaches the display white
+	 */
+	ToneMapping REINHARD = value -> {
+		double x = value / 255;
+		return 255 * x / (1 + x);
+	};
+
+	/**
+	 * Filmic curve fitted to the ACES reference rendering transform (by K.
+	 * Narkowicz) - a toe in the shadows and a soft shoulder in the highlights
+	 */
+	ToneMapping ACES = value -> {
+		double x = value / 255;
+		return 255 * (x * (2.51 * x + 0.03)) / (x * (2.43 * x + 0.59) + 0.14);
+	};
+
+	/**
+	 * Map the radiance of a color channel
+	 * 
+	 * @param value the radiance (255 is the display white)
+	 * @return the display value (0..255)
+	 */
+	double map(double value);
+
+	/**
+	 * Map and quantize a color, scaled by an exposure factor, into a packed RGB
+	 * value like {@link java.awt.Color#getRGB()}
+	 * 
+	 * @param r        red radiance
+	 * @param g        green radiance
+	 * @param b        blue radiance
+	 * @param exposure factor of the radiance
+	 * @return the packed RGB value
+	 */
+	default int toRGB(double r, double g, double b, double exposure) {
+		return 0xFF000000 | quantize(r * exposure) << 16 | quantize(g * exposure) << 8 | quantize(b * exposure);
+	}
+
+	/**
+	 * Map and quantize the radiance of a color channel into 8 bits (the fraction
+	 * is truncated like in {@link primitives.Color#getColor()})
+	 * 
+	 * @param value the radiance
+	 * @return the display value (0..255)
+	 */
+	private int quantize(double value) {
+		int result = (int) map(value);
+		return result < 0 ? 0 : result > 255 ? 255 : result;
+	}
+}
@@ -0,0 +1,827 @@
+package scene;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import geometries.TriangleMesh;
+
+/**
+ * Loader of triangle meshes from Wavefront OBJ and PLY files. The files are
+ * memory-mapped and parsed directly from their bytes - the vertices and the
+ * faces are streamed into flat buffers without building a String per line.
+ * Polygons are split into triangle fans. Only the geometry is loaded (vertex
+ * positions and faces) - normals, texture coordinates, colors and materials
+ * of the file are skipped.<br/>
+ * Files must be smaller than 2GB (the size of a single mapping).
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class MeshLoader {
+	/**
+	 * Exact powers of ten for the fast path of the number parser
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Private constructor to hide the public one
+	 */
+	private MeshLoader() {
+	}
+
+	/**
+	 * Load a mesh from an OBJ or a PLY file according to the file's extension
+	 * 
+	 * @param path the file
+	 * @return the mesh
+	 * @throws IOException              if the file can't be read or is malformed
+	 * @throws IllegalArgumentException if the extension is not .obj or .ply or
+	 *                                  the mesh is illegal (e.g. it has no faces)
+	 */
+	public static TriangleMesh load(Path path) throws IOException {
+		String name = path.getFileName().toString().toLowerCase();
+		if (name.endsWith(".obj"))
+			return loadObj(path);
+		if (name.endsWith(".ply"))
+			return loadPly(path);
+		throw new IllegalArgumentException("Unknown mesh file format: " + path);
+	}
+
+	/**
+	 * Load a mesh from a Wavefront OBJ file. Vertices are read from the "v" lines
+	 * and faces from the "f" lines (with absolute or relative indices, with or
+	 * without texture and normal indices) - all the other lines are skipped.
+	 * 
+	 * @param path the file
+	 * @return the mesh
+	 * @throws IOException              if the file can't be read or is malformed
+	 * @throws IllegalArgumentException if the mesh is illegal (e.g. it has no
+	 *                                  faces or a face refers to a missing vertex)
+	 */
+	public static TriangleMesh loadObj(Path path) throws IOException {
+		ObjParser parser = new ObjParser(map(path), path);
+		parser.parse();
+		return new TriangleMesh(parser.vertices.toArray(), parser.indices.toArray());
+	}
+
+	/**
+	 * Load a mesh from a binary (little or big endian) PLY file. Vertices are
+	 * read from the x, y, z properties of the "vertex" element and faces from the
+	 * "vertex_indices" (or "vertex_index") list of the "face" element - other
+	 * properties and elements are skipped.
+	 * 
+	 * @param path the file
+	 * @return the mesh
+	 * @throws IOException              if the file can't be read, is malformed or
+	 *                                  is an ASCII PLY file
+	 * @throws IllegalArgumentException if the mesh is illegal (e.g. it has no
+	 *                                  faces or a face refers to a missing vertex)
+	 */
+	public static TriangleMesh loadPly(Path path) throws IOException {
+		PlyParser parser = new PlyParser(map(path), path);
+		parser.parse();
+		return new TriangleMesh(parser.vertices.toArray(), parser.indices.toArray());
+	}
+
+	/**
+	 * Map a whole file into memory
+	 * 
+	 * @param path the file
+	 * @return the read-only mapping of the file
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static MappedByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Mesh file is too large to map: " + path);
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * Growable buffer of doubles
+	 */
+	private static final class DoubleArray {
+		private double[] data;
+		private int size;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param capacity initial capacity
+		 */
+		DoubleArray(int capacity) {
+			data = new double[Math.max(capacity, 16)];
+		}
+
+		/**
+		 * Append a number
+		 * 
+		 * @param value the number
+		 */
+		void add(double value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+
+		/**
+		 * Get the amount of numbers
+		 * 
+		 * @return amount of numbers
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Copy the numbers into an array of their size
+		 * 
+		 * @return the numbers
+		 */
+		double[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+	/**
+	 * Growable buffer of integers
+	 */
+	private static final class IntArray {
+		private int[] data;
+		private int size;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param capacity initial capacity
+		 */
+		IntArray(int capacity) {
+			data = new int[Math.max(capacity, 16)];
+		}
+
+		/**
+		 * Append a number
+		 * 
+		 * @param value the number
+		 */
+		void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = value;
+		}
+
+		/**
+		 * Get the amount of numbers
+		 * 
+		 * @return amount of numbers
+		 */
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Get a number
+		 * 
+		 * @param index index of the number
+		 * @return the number
+		 */
+		int get(int index) {
+			return data[index];
+		}
+
+		/**
+		 * Copy the numbers into an array of their size
+		 * 
+		 * @return the numbers
+		 */
+		int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+	/**
+	 * Parser of the bytes of an OBJ file
+	 */
+	private static final class ObjParser {
+		private final ByteBuffer buffer;
+		private final Path path;
+		private final int limit;
+		private int pos = 0;
+
+		/**
+		 * Coordinates of the vertices
+		 */
+		final DoubleArray vertices;
+
+		/**
+		 * Vertex indices of the triangles
+		 */
+		final IntArray indices;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param buffer the bytes of the file
+		 * @param path   the file (for the error messages)
+		 */
+		ObjParser(ByteBuffer buffer, Path path) {
+			this.buffer = buffer;
+			this.path = path;
+			limit = buffer.limit();
+			// about 30 bytes for every coordinate line and every face line
+			vertices = new DoubleArray(limit / 30);
+			indices = new IntArray(limit / 15);
+		}
+
+		/**
+		 * Parse the whole file
+		 * 
+		 * @throws IOException if the file is malformed
+		 */
+		void parse() throws IOException {
+			while (pos < limit) {
+				skipSpaces();
+				if (pos >= limit)
+					break;
+				byte c = buffer.get(pos);
+				if (c == 'v' && isSpace(pos + 1)) {
+					pos += 1;
+					for (int i = 0; i < 3; ++i) {
+						skipSpaces();
+						vertices.add(parseDouble());
+					}
+				} else if (c == 'f' && isSpace(pos + 1)) {
+					pos += 1;
+					parseFace();
+				}
+				skipLine();
+			}
+		}
+
+		/**
+		 * Parse the vertex references of a face and split it into a triangle fan
+		 * 
+		 * @throws IOException if the face is malformed
+		 */
+		private void parseFace() throws IOException {
+			int first = -1, previous = -1, count = 0;
+			while (true) {
+				skipSpaces();
+				if (pos >= limit || isLineEnd(buffer.get(pos)))
+					break;
+				int index = parseInt();
+				if (index > 0)
+					index -= 1;
+				else if (index < 0)
+					index += vertices.size() / 3;
+				else
+					throw error("vertex index 0");
+				// skip the texture and the normal indices
+				while (pos < limit && !isSpace(pos) && !isLineEnd(buffer.get(pos)))
+					++pos;
+				if (count == 0)
+					first = index;
+				else if (count >= 2) {
+					indices.add(first);
+					indices.add(previous);
+					indices.add(index);
+				}
+				previous = index;
+				++count;
+			}
+			if (count < 3)
+				throw error("face with less than 3 vertices");
+		}
+
+		/**
+		 * Parse a decimal integer at the position
+		 * 
+		 * @return the integer
+		 * @throws IOException if there is no integer at the position
+		 */
+		private int parseInt() throws IOException {
+			boolean negative = false;
+			byte c = buffer.get(pos);
+			if (c == '-' || c == '+') {
+				negative = c == '-';
+				++pos;
+			}
+			int start = pos;
+			int value = 0;
+			while (pos < limit && (c = buffer.get(pos)) >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				++pos;
+			}
+			if (pos == start)
+				throw error("expected an integer");
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Parse a decimal number at the position. Numbers of up to 18 significant
+		 * digits with small exponents are converted exactly with a single
+		 * multiplication or division, the rest fall back to
+		 * {@link Double#parseDouble(String)}
+		 * 
+		 * @return the number
+		 * @throws IOException if there is no number at the position
+		 */
+		private double parseDouble() throws IOException {
+			int start = pos;
+			boolean negative = false;
+			byte c = pos < limit ? buffer.get(pos) : 0;
+			if (c == '-' || c == '+') {
+				negative = c == '-';
+				++pos;
+			}
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean exact = true;
+			boolean any = false;
+			while (pos < limit && (c = buffer.get(pos)) >= '0' && c <= '9') {
+				any = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0)
+						++digits;
+				} else {
+					++exponent;
+					exact &= c == '0';
+				}
+				++pos;
+			}
+			if (pos < limit && buffer.get(pos) == '.') {
+				++pos;
+				while (pos < limit && (c = buffer.get(pos)) >= '0' && c <= '9') {
+					any = true;
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (c - '0');
+						if (mantissa != 0)
+							++digits;
+						--exponent;
+					} else
+						exact &= c == '0';
+					++pos;
+				}
+			}
+			if (!any)
+				return parseDoubleSlow(start);
+			if (pos < limit && ((c = buffer.get(pos)) == 'e' || c == 'E')) {
+				++pos;
+				boolean negativeExponent = false;
+				c = pos < limit ? buffer.get(pos) : 0;
+				if (c == '-' || c == '+') {
+					negativeExponent = c == '-';
+					++pos;
+				}
+				int exponentStart = pos;
+				int value = 0;
+				while (pos < limit && (c = buffer.get(pos)) >= '0' && c <= '9') {
+					if (value < 10000)
+						value = value * 10 + (c - '0');
+					++pos;
+				}
+				if (pos == exponentStart)
+					throw error("malformed number");
+				exponent += negativeExponent ? -value : value;
+			}
+			if (pos < limit && !isSpace(pos) && !isLineEnd(buffer.get(pos)))
+				return parseDoubleSlow(start);
+			if (!exact || mantissa >= 1L << 53 || exponent > 22 || exponent < -22)
+				return parseDoubleSlow(start);
+			double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Parse the number at a position with {@link Double#parseDouble(String)}
+		 * 
+		 * @param start position of the number
+		 * @return the number
+		 * @throws IOException if there is no number at the position
+		 */
+		private double parseDoubleSlow(int start) throws IOException {
+			pos = start;
+			while (pos < limit && !isSpace(pos) && !isLineEnd(buffer.get(pos)))
+				++pos;
+			byte[] bytes = new byte[pos - start];
+			buffer.get(start, bytes);
+			try {
+				return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+			} catch (NumberFormatException e) {
+				throw error("malformed number");
+			}
+		}
+
+		/**
+		 * Skip spaces and tabs
+		 */
+		private void skipSpaces() {
+			while (pos < limit && isSpace(pos))
+				++pos;
+		}
+
+		/**
+		 * Skip to the start of the next line
+		 */
+		private void skipLine() {
+			while (pos < limit && buffer.get(pos) != '\n')
+				++pos;
+			++pos;
+		}
+
+		/**
+		 * Check whether there is a space or a tab at a position
+		 * 
+		 * @param position the position
+		 * @return true if the byte at the position is a space or a tab
+		 */
+		private boolean isSpace(int position) {
+			if (position >= limit)
+				return false;
+			byte c = buffer.get(position);
+			return c == ' ' || c == '\t';
+		}
+
+		/**
+		 * Check whether a byte ends a line
+		 * 
+		 * @param c the byte
+		 * @return true if the byte is a line feed or a carriage return
+		 */
+		private static boolean isLineEnd(byte c) {
+			return c == '\n' || c == '\r';
+		}
+
+		/**
+		 * Build the exception of a malformed file
+		 * 
+		 * @param message what is wrong
+		 * @return the exception
+		 */
+		private IOException error(String message) {
+			return new IOException("Malformed OBJ file " + path + " at byte " + pos + ": " + message);
+		}
+	}
+
+	/**
+	 * Parser of a binary PLY file
+	 */
+	private static final class PlyParser {
+		private final ByteBuffer buffer;
+		private final Path path;
+
+		/**
+		 * Coordinates of the vertices
+		 */
+		DoubleArray vertices;
+
+		/**
+		 * Vertex indices of the triangles
+		 */
+		IntArray indices;
+
+		/**
+		 * Element of the header
+		 */
+		private static final class Element {
+			final String name;
+			final int count;
+			final List<Property> properties = new ArrayList<>();
+
+			/**
+			 * Constructor
+			 * 
+			 * @param name  name of the element
+			 * @param count amount of items of the element
+			 */
+			Element(String name, int count) {
+				this.name = name;
+				this.count = count;
+			}
+		}
+
+		/**
+		 * Scalar type of a property
+		 */
+		private enum Type {
+			INT8(1), UINT8(1), INT16(2), UINT16(2), INT32(4), UINT32(4), FLOAT32(4), FLOAT64(8);
+
+			/**
+			 * Size of the type in bytes
+			 */
+			final int size;
+
+			/**
+			 * Constructor
+			 * 
+			 * @param size size of the type in bytes
+			 */
+			Type(int size) {
+				this.size = size;
+			}
+		}
+
+		/**
+		 * Property of an element - either a scalar or a list
+		 */
+		private static final class Property {
+			final String name;
+			final Type type;
+			final Type countType;
+
+			/**
+			 * Constructor
+			 * 
+			 * @param name      name of the property
+			 * @param type      type of the scalar or of the items of the list
+			 * @param countType type of the count of the list, null for a scalar
+			 */
+			Property(String name, Type type, Type countType) {
+				this.name = name;
+				this.type = type;
+				this.countType = countType;
+			}
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param buffer the bytes of the file
+		 * @param path   the file (for the error messages)
+		 */
+		PlyParser(ByteBuffer buffer, Path path) {
+			this.buffer = buffer;
+			this.path = path;
+		}
+
+		/**
+		 * Parse the whole file
+		 * 
+		 * @throws IOException if the file is malformed
+		 */
+		void parse() throws IOException {
+			List<Element> elements = new ArrayList<>();
+			int pos = parseHeader(elements);
+			try {
+				for (Element element : elements) {
+					if (element.name.equals("vertex"))
+						pos = parseVertices(element, pos);
+					else if (element.name.equals("face"))
+						pos = parseFaces(element, pos);
+					else
+						for (int i = 0; i < element.count; ++i)
+							for (Property property : element.properties)
+								pos = skipProperty(property, pos);
+				}
+			} catch (IndexOutOfBoundsException e) {
+				throw error("unexpected end of file");
+			}
+			if (vertices == null || indices == null)
+				throw error("missing vertex or face element");
+			// the elements may come in any order, so the indices are checked once all
+			// the vertices are known
+			int vertexCount = vertices.size() / 3;
+			for (int i = 0; i < indices.size(); ++i) {
+				int index = indices.get(i);
+				if (index < 0 || index >= vertexCount)
+					throw error("vertex index " + index + " out of " + vertexCount + " vertices");
+			}
+		}
+
+		/**
+		 * Parse the ASCII header and set the byte order of the buffer
+		 * 
+		 * @param elements list to collect the elements into
+		 * @return position of the data after the header
+		 * @throws IOException if the header is malformed
+		 */
+		private int parseHeader(List<Element> elements) throws IOException {
+			int pos = 0;
+			int limit = buffer.limit();
+			boolean first = true;
+			while (true) {
+				int start = pos;
+				while (pos < limit && buffer.get(pos) != '\n')
+					++pos;
+				if (pos >= limit)
+					throw error("missing end_header");
+				byte[] bytes = new byte[pos - start];
+				buffer.get(start, bytes);
+				++pos;
+				String[] words = new String(bytes, StandardCharsets.US_ASCII).trim().split("\\s+");
+				if (first) {
+					if (!words[0].equals("ply"))
+						throw error("not a PLY file");
+					first = false;
+					continue;
+				}
+				switch (words[0]) {
+				case "format" -> {
+					if (words.length < 2)
+						throw error("malformed format");
+					switch (words[1]) {
+					case "binary_little_endian" -> buffer.order(ByteOrder.LITTLE_ENDIAN);
+					case "binary_big_endian" -> buffer.order(ByteOrder.BIG_ENDIAN);
+					default -> throw error("only binary PLY files are supported, found " + words[1]);
+					}
+				}
+				case "element" -> {
+					if (words.length < 3)
+						throw error("malformed element");
+					int count;
+					try {
+						count = Integer.parseInt(words[2]);
+					} catch (NumberFormatException e) {
+						throw error("malformed element count " + words[2]);
+					}
+					if (count < 0)
+						throw error("negative element count " + count);
+					elements.add(new Element(words[1], count));
+				}
+				case "property" -> {
+					if (elements.isEmpty())
+						throw error("property before any element");
+					List<Property> properties = elements.get(elements.size() - 1).properties;
+					if (words.length >= 5 && words[1].equals("list"))
+						properties.add(new Property(words[4], type(words[3]), type(words[2])));
+					else if (words.length >= 3)
+						properties.add(new Property(words[2], type(words[1]), null));
+					else
+						throw error("malformed property");
+				}
+				case "end_header" -> {
+					return pos;
+				}
+				default -> {
+					// comments and obj_info
+				}
+				}
+			}
+		}
+
+		/**
+		 * Parse the vertex element
+		 * 
+		 * @param element the element
+		 * @param pos     position of its data
+		 * @return position after its data
+		 * @throws IOException if the element has no coordinates
+		 */
+		private int parseVertices(Element element, int pos) throws IOException {
+			vertices = new DoubleArray(element.count * 3);
+			int x = -1, y = -1, z = -1;
+			List<Property> properties = element.properties;
+			for (int i = 0; i < properties.size(); ++i) {
+				switch (properties.get(i).name) {
+				case "x" -> x = i;
+				case "y" -> y = i;
+				case "z" -> z = i;
+				default -> {
+				}
+				}
+			}
+			if (x == -1 || y == -1 || z == -1)
+				throw error("vertex without x, y, z");
+			double[] values = new double[properties.size()];
+			for (int v = 0; v < element.count; ++v) {
+				for (int i = 0; i < values.length; ++i) {
+					Property property = properties.get(i);
+					if (property.countType != null) {
+						pos = skipProperty(property, pos);
+					} else {
+						values[i] = read(property.type, pos);
+						pos += property.type.size;
+					}
+				}
+				vertices.add(values[x]);
+				vertices.add(values[y]);
+				vertices.add(values[z]);
+			}
+			return pos;
+		}
+
+		/**
+		 * Parse the face element and split the faces into triangle fans
+		 * 
+		 * @param element the element
+		 * @param pos     position of its data
+		 * @return position after its data
+		 * @throws IOException if the element has no vertex indices
+		 */
+		private int parseFaces(Element element, int pos) throws IOException {
+			indices = new IntArray(element.count * 3);
+			Property vertexIndices = null;
+			for (Property property : element.properties)
+				if (property.countType != null
+						&& (property.name.equals("vertex_indices") || property.name.equals("vertex_index")))
+					vertexIndices = property;
+			if (vertexIndices == null)
+				throw error("face without vertex_indices");
+			int itemSize = vertexIndices.type.size;
+			for (int f = 0; f < element.count; ++f) {
+				for (Property property : element.properties) {
+					if (property != vertexIndices) {
+						pos = skipProperty(property, pos);
+						continue;
+					}
+					int count = (int) read(property.countType, pos);
+					pos += property.countType.size;
+					if (count < 3)
+						throw error("face with less than 3 vertices");
+					int first = (int) read(property.type, pos);
+					int previous = (int) read(property.type, pos + itemSize);
+					for (int i = 2; i < count; ++i) {
+						int index = (int) read(property.type, pos + i * itemSize);
+						indices.add(first);
+						indices.add(previous);
+						indices.add(index);
+						previous = index;
+					}
+					pos += count * itemSize;
+				}
+			}
+			return pos;
+		}
+
+		/**
+		 * Skip the value of a property
+		 * 
+		 * @param property the property
+		 * @param pos      position of the value
+		 * @return position after the value
+		 * @throws IOException if the type of the property is unknown
+		 */
+		private int skipProperty(Property property, int pos) throws IOException {
+			if (property.countType == null)
+				return pos + property.type.size;
+			int count = (int) read(property.countType, pos);
+			return pos + property.countType.size + count * property.type.size;
+		}
+
+		/**
+		 * Read a scalar value
+		 * 
+		 * @param type type of the value
+		 * @param pos  position of the value
+		 * @return the value
+		 */
+		private double read(Type type, int pos) {
+			return switch (type) {
+			case INT8 -> buffer.get(pos);
+			case UINT8 -> buffer.get(pos) & 0xFF;
+			case INT16 -> buffer.getShort(pos);
+			case UINT16 -> buffer.getShort(pos) & 0xFFFF;
+			case INT32 -> buffer.getInt(pos);
+			case UINT32 -> buffer.getInt(pos) & 0xFFFFFFFFL;
+			case FLOAT32 -> buffer.getFloat(pos);
+			case FLOAT64 -> buffer.getDouble(pos);
+			};
+		}
+
+		/**
+		 * Find the scalar type of its name in the header
+		 * 
+		 * @param name name of the type
+		 * @return the type
+		 * @throws IOException if the type is unknown
+		 */
+		private Type type(String name) throws IOException {
+			return switch (name) {
+			case "char", "int8" -> Type.INT8;
+			case "uchar", "uint8" -> Type.UINT8;
+			case "short", "int16" -> Type.INT16;
+			case "ushort", "uint16" -> Type.UINT16;
+			case "int", "int32" -> Type.INT32;
+			case "uint", "uint32" -> Type.UINT32;
+			case "float", "float32" -> Type.FLOAT32;
+			case "double", "float64" -> Type.FLOAT64;
+			default -> throw error("unknown property type " + name);
+			};
+		}
+
+		/**
+		 * Build the exception of a malformed file
+		 * 
+		 * @param message what is wrong
+		 * @return the exception
+		 */
+		private IOException error(String message) {
+			return new IOException("Malformed PLY file " + path + ": " + message);
+		}
+	}
+}
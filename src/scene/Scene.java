@@ -5,6 +5,7 @@ import java.util.List;
 
 import geometries.Geometries;
 import lighting.AmbientLight;
+import lighting.LightBVH;
 import lighting.LightSource;
 import primitives.Color;
 
@@ -41,6 +42,12 @@ public class Scene {
      */
     public List<LightSource> lights = new LinkedList<>();
 
+    /**
+     * The hierarchy of the light sources by their influence, null to evaluate
+     * every light at every point (see {@link #buildLightBVH(double, int)})
+     */
+    public LightBVH lightBVH;
+
     /**
      * Constructor
      */
@@ -58,6 +65,34 @@ public class Scene {
         return this;
     }
 
+    /**
+     * Build the hierarchy of the light sources by their influence, so only the
+     * lights that can affect a point above the threshold are evaluated for it.
+     * Must be called again after the lights change
+     * 
+     * @param threshold the intensity below which a light doesn't affect a point
+     * @return the scene itself
+     */
+    public Scene buildLightBVH(double threshold) {
+        return buildLightBVH(threshold, 0);
+    }
+
+    /**
+     * Build the hierarchy of the light sources by their influence, so only the
+     * lights that can affect a point above the threshold are evaluated for it,
+     * and at most a max amount of them (selected stochastically by their
+     * intensity). Must be called again after the lights change
+     * 
+     * @param threshold the intensity below which a light doesn't affect a point
+     * @param maxLights max amount of lights to evaluate for a point, 0 for all of
+     *                  the affecting lights
+     * @return the scene itself
+     */
+    public Scene buildLightBVH(double threshold, int maxLights) {
+        lightBVH = new LightBVH(lights, threshold, maxLights);
+        return this;
+    }
+
     /**
      * Set the background color
      */
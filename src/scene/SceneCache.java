@@ -0,0 +1,470 @@
+package scene;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+
+/**
+ * Binary cache of a built scene - its background, ambient light, lights and
+ * geometries with their materials. The geometries are saved with their
+ * structure, so a scene whose BVH was built (nested collections, and the
+ * internal BVH of the triangle meshes) is loaded back with its BVH as is,
+ * without rebuilding it. Shared materials are saved once.<br/>
+ * Loading memory-maps the file and copies the buffers of the meshes in bulk.
+ * The format is tied to {@link #VERSION} - a cache written by another version
+ * is rejected, so it should be rebuilt from the scene's sources.
+ * 
+ * @author elana
+ * @author elish
+ */
+public final class SceneCache {
+	/**
+	 * Magic number at the start of a cache file ("RTSC")
+	 */
+	private static final int MAGIC = 0x52545343;
+
+	/**
+	 * Version of the format
+	 */
+	public static final int VERSION = 1;
+
+	// tags of the saved objects
+	private static final byte GEOMETRIES = 0;
+	private static final byte SPHERE = 1;
+	private static final byte PLANE = 2;
+	private static final byte TRIANGLE = 3;
+	private static final byte POLYGON = 4;
+	private static final byte TUBE = 5;
+	private static final byte CYLINDER = 6;
+	private static final byte TRIANGLE_MESH = 7;
+	private static final byte DIRECTIONAL_LIGHT = 0;
+	private static final byte POINT_LIGHT = 1;
+	private static final byte SPOT_LIGHT = 2;
+
+	/**
+	 * Size of a saved material - four triads and the shininess
+	 */
+	private static final int MATERIAL_BYTES = 12 * Double.BYTES + Integer.BYTES;
+
+	/**
+	 * Private constructor to hide the public one
+	 */
+	private SceneCache() {
+	}
+
+	/**
+	 * Save a scene into a cache file
+	 * 
+	 * @param scene the scene
+	 * @param path  the cache file
+	 * @throws IOException              if the file can't be written
+	 * @throws IllegalArgumentException if the scene holds a geometry or a light of
+	 *                                  an unknown type
+	 */
+	public static void save(Scene scene, Path path) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, scene.name1);
+			writeDouble3(out, scene.background.getRgb());
+			writeDouble3(out, scene.ambientLight.getIntensity().getRgb());
+
+			out.writeInt(scene.lights.size());
+			for (LightSource light : scene.lights)
+				writeLight(out, light);
+
+			// materials are shared by many geometries - they are saved once, before the
+			// geometries, and referred to by their index
+			Map<Material, Integer> materials = new IdentityHashMap<>();
+			List<Material> materialList = new ArrayList<>();
+			collectMaterials(scene.geometries, materials, materialList);
+			out.writeInt(materialList.size());
+			for (Material material : materialList)
+				writeMaterial(out, material);
+
+			writeIntersectable(out, scene.geometries, materials);
+		}
+	}
+
+	/**
+	 * Load a scene from a cache file
+	 * 
+	 * @param path the cache file
+	 * @return the scene
+	 * @throws IOException if the file can't be read, is not a cache file, is of
+	 *                     another version or is truncated
+	 */
+	public static Scene load(Path path) throws IOException {
+		ByteBuffer in = map(path);
+		try {
+			if (in.getInt() != MAGIC)
+				throw new IOException("Not a scene cache file: " + path);
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new IOException("Scene cache " + path + " is of version " + version + ", expected " + VERSION);
+			Scene scene = new Scene(readString(in));
+			scene.setBackground(new Color(in.getDouble(), in.getDouble(), in.getDouble()));
+			scene.setAmbientLight(new AmbientLight(new Color(in.getDouble(), in.getDouble(), in.getDouble()), 1));
+
+			// a light is at least its tag
+			int lightCount = readCount(in, 1);
+			List<LightSource> lights = new LinkedList<>();
+			for (int i = 0; i < lightCount; ++i)
+				lights.add(readLight(in));
+			scene.setLights(lights);
+
+			Material[] materials = new Material[readCount(in, MATERIAL_BYTES)];
+			for (int i = 0; i < materials.length; ++i)
+				materials[i] = readMaterial(in);
+
+			Intersectable geometries = readIntersectable(in, materials);
+			if (!(geometries instanceof Geometries))
+				throw new IOException("Malformed scene cache " + path);
+			scene.setGeometries((Geometries) geometries);
+			return scene;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Malformed scene cache " + path, e);
+		}
+	}
+
+	/**
+	 * Map a whole file into memory
+	 * 
+	 * @param path the file
+	 * @return the read-only mapping of the file
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static MappedByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("Scene cache is too large to map: " + path);
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * Collect the distinct materials of the geometries, in the order they are
+	 * met
+	 * 
+	 * @param intersectable the geometries
+	 * @param materials     map of the collected materials to their index
+	 * @param materialList  list of the collected materials
+	 */
+	private static void collectMaterials(Intersectable intersectable, Map<Material, Integer> materials,
+			List<Material> materialList) {
+		if (intersectable instanceof Geometries geometries) {
+			for (Intersectable child : geometries.getGeometries())
+				collectMaterials(child, materials, materialList);
+		} else if (intersectable instanceof Geometry geometry && !materials.containsKey(geometry.getMaterial())) {
+			materials.put(geometry.getMaterial(), materialList.size());
+			materialList.add(geometry.getMaterial());
+		}
+	}
+
+	/**
+	 * Write a geometry or a collection of geometries (recursively)
+	 * 
+	 * @param out           the output
+	 * @param intersectable the geometry
+	 * @param materials     indices of the materials
+	 * @throws IOException if the output fails
+	 */
+	private static void writeIntersectable(DataOutput out, Intersectable intersectable,
+			Map<Material, Integer> materials) throws IOException {
+		if (intersectable instanceof Geometries geometries) {
+			out.writeByte(GEOMETRIES);
+			List<Intersectable> children = geometries.getGeometries();
+			out.writeInt(children.size());
+			for (Intersectable child : children)
+				writeIntersectable(out, child, materials);
+			return;
+		}
+		// the order of the checks matters - subclasses before their superclasses
+		if (intersectable instanceof TriangleMesh mesh) {
+			out.writeByte(TRIANGLE_MESH);
+			mesh.write(out);
+		} else if (intersectable instanceof Triangle triangle) {
+			out.writeByte(TRIANGLE);
+			for (Point vertex : triangle.getVertices())
+				writeDouble3(out, vertex.xyz);
+		} else if (intersectable instanceof Polygon polygon) {
+			out.writeByte(POLYGON);
+			out.writeInt(polygon.getVertices().size());
+			for (Point vertex : polygon.getVertices())
+				writeDouble3(out, vertex.xyz);
+		} else if (intersectable instanceof Sphere sphere) {
+			out.writeByte(SPHERE);
+			writeDouble3(out, sphere.getCenter().xyz);
+			out.writeDouble(sphere.getRadius());
+		} else if (intersectable instanceof Plane plane) {
+			out.writeByte(PLANE);
+			writeDouble3(out, plane.getQ0().xyz);
+			writeDouble3(out, plane.getNormal().xyz);
+		} else if (intersectable instanceof Cylinder cylinder) {
+			out.writeByte(CYLINDER);
+			writeDouble3(out, cylinder.getAxisRay().p0.xyz);
+			writeDouble3(out, cylinder.getAxisRay().dir.xyz);
+			out.writeDouble(cylinder.getRadius());
+			out.writeDouble(cylinder.getHeight());
+		} else if (intersectable instanceof Tube tube) {
+			out.writeByte(TUBE);
+			writeDouble3(out, tube.getAxisRay().p0.xyz);
+			writeDouble3(out, tube.getAxisRay().dir.xyz);
+			out.writeDouble(tube.getRadius());
+		} else {
+			throw new IllegalArgumentException("Can't cache a geometry of type " + intersectable.getClass().getName());
+		}
+		Geometry geometry = (Geometry) intersectable;
+		writeDouble3(out, geometry.getEmission().getRgb());
+		out.writeInt(materials.get(geometry.getMaterial()));
+	}
+
+	/**
+	 * Read a geometry or a collection of geometries (recursively)
+	 * 
+	 * @param in        the input
+	 * @param materials the materials by their index
+	 * @return the geometry
+	 * @throws IOException if the tag of the geometry is unknown
+	 */
+	private static Intersectable readIntersectable(ByteBuffer in, Material[] materials) throws IOException {
+		byte tag = in.get();
+		if (tag == GEOMETRIES) {
+			// a geometry is at least its tag
+			int count = readCount(in, 1);
+			Intersectable[] children = new Intersectable[count];
+			for (int i = 0; i < count; ++i)
+				children[i] = readIntersectable(in, materials);
+			return new Geometries(children);
+		}
+		Geometry geometry = switch (tag) {
+		case TRIANGLE_MESH -> TriangleMesh.read(in);
+		case TRIANGLE -> new Triangle(readPoint(in), readPoint(in), readPoint(in));
+		case POLYGON -> {
+			Point[] vertices = new Point[readCount(in, 3 * Double.BYTES)];
+			for (int i = 0; i < vertices.length; ++i)
+				vertices[i] = readPoint(in);
+			yield new Polygon(vertices);
+		}
+		case SPHERE -> new Sphere(readPoint(in), in.getDouble());
+		case PLANE -> new Plane(readPoint(in), readVector(in));
+		case CYLINDER -> {
+			Ray axis = new Ray(readPoint(in), readVector(in));
+			double radius = in.getDouble();
+			yield new Cylinder(radius, axis, in.getDouble());
+		}
+		case TUBE -> new Tube(new Ray(readPoint(in), readVector(in)), in.getDouble());
+		default -> throw new IOException("Unknown geometry tag in scene cache: " + tag);
+		};
+		geometry.setEmission(new Color(in.getDouble(), in.getDouble(), in.getDouble()));
+		geometry.setMaterial(materials[in.getInt()]);
+		return geometry;
+	}
+
+	/**
+	 * Write a light source
+	 * 
+	 * @param out   the output
+	 * @param light the light
+	 * @throws IOException if the output fails
+	 */
+	private static void writeLight(DataOutput out, LightSource light) throws IOException {
+		// the order of the checks matters - a spot light is a point light
+		if (light instanceof SpotLight spot) {
+			out.writeByte(SPOT_LIGHT);
+			writePointLight(out, spot);
+			writeDouble3(out, spot.getDirection().xyz);
+			out.writeDouble(spot.getNarrowBeam());
+		} else if (light instanceof PointLight point) {
+			out.writeByte(POINT_LIGHT);
+			writePointLight(out, point);
+		} else if (light instanceof DirectionalLight directional) {
+			out.writeByte(DIRECTIONAL_LIGHT);
+			writeDouble3(out, directional.getIntensity().getRgb());
+			writeDouble3(out, directional.getDirection().xyz);
+		} else {
+			throw new IllegalArgumentException("Can't cache a light of type " + light.getClass().getName());
+		}
+	}
+
+	/**
+	 * Write the fields of a point light
+	 * 
+	 * @param out   the output
+	 * @param light the light
+	 * @throws IOException if the output fails
+	 */
+	private static void writePointLight(DataOutput out, PointLight light) throws IOException {
+		writeDouble3(out, light.getIntensity().getRgb());
+		writeDouble3(out, light.getPosition().xyz);
+		out.writeDouble(light.getKC());
+		out.writeDouble(light.getKL());
+		out.writeDouble(light.getKQ());
+	}
+
+	/**
+	 * Read a light source
+	 * 
+	 * @param in the input
+	 * @return the light
+	 * @throws IOException if the tag of the light is unknown
+	 */
+	private static LightSource readLight(ByteBuffer in) throws IOException {
+		byte tag = in.get();
+		switch (tag) {
+		case SPOT_LIGHT, POINT_LIGHT:
+			Color intensity = new Color(in.getDouble(), in.getDouble(), in.getDouble());
+			Point position = readPoint(in);
+			double kC = in.getDouble(), kL = in.getDouble(), kQ = in.getDouble();
+			PointLight light = tag == POINT_LIGHT ? new PointLight(intensity, position)
+					: new SpotLight(intensity, position, readVector(in));
+			if (tag == SPOT_LIGHT)
+				((SpotLight) light).setNarrowBeam((int) in.getDouble());
+			return light.setKC(kC).setKL(kL).setKQ(kQ);
+		case DIRECTIONAL_LIGHT:
+			return new DirectionalLight(new Color(in.getDouble(), in.getDouble(), in.getDouble()), readVector(in));
+		default:
+			throw new IOException("Unknown light tag in scene cache: " + tag);
+		}
+	}
+
+	/**
+	 * Write a material
+	 * 
+	 * @param out      the output
+	 * @param material the material
+	 * @throws IOException if the output fails
+	 */
+	private static void writeMaterial(DataOutput out, Material material) throws IOException {
+		writeDouble3(out, material.kD);
+		writeDouble3(out, material.kS);
+		writeDouble3(out, material.kT);
+		writeDouble3(out, material.kR);
+		out.writeInt(material.nShininess);
+	}
+
+	/**
+	 * Read a material
+	 * 
+	 * @param in the input
+	 * @return the material
+	 */
+	private static Material readMaterial(ByteBuffer in) {
+		return new Material().setKD(readDouble3(in)).setKS(readDouble3(in)).setKT(readDouble3(in))
+				.setKR(readDouble3(in)).setNShininess(in.getInt());
+	}
+
+	/**
+	 * Write a triad of numbers
+	 * 
+	 * @param out the output
+	 * @param d   the triad
+	 * @throws IOException if the output fails
+	 */
+	private static void writeDouble3(DataOutput out, Double3 d) throws IOException {
+		out.writeDouble(d.d1);
+		out.writeDouble(d.d2);
+		out.writeDouble(d.d3);
+	}
+
+	/**
+	 * Read a triad of numbers
+	 * 
+	 * @param in the input
+	 * @return the triad
+	 */
+	private static Double3 readDouble3(ByteBuffer in) {
+		return new Double3(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	/**
+	 * Read a point
+	 * 
+	 * @param in the input
+	 * @return the point
+	 */
+	private static Point readPoint(ByteBuffer in) {
+		return new Point(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	/**
+	 * Read a vector
+	 * 
+	 * @param in the input
+	 * @return the vector
+	 */
+	private static Vector readVector(ByteBuffer in) {
+		return new Vector(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	/**
+	 * Write a string as its UTF-8 length and bytes
+	 * 
+	 * @param out    the output
+	 * @param string the string (may be null)
+	 * @throws IOException if the output fails
+	 */
+	private static void writeString(DataOutput out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read the amount of the elements of an array, before the array is allocated
+	 * 
+	 * @param in   the input
+	 * @param size the least amount of bytes of an element
+	 * @return the amount
+	 * @throws IllegalArgumentException if the amount is negative
+	 * @throws BufferUnderflowException if the input is too short for the elements
+	 */
+	private static int readCount(ByteBuffer in, int size) {
+		int count = in.getInt();
+		if (count < 0)
+			throw new IllegalArgumentException("Negative amount of elements: " + count);
+		if (count > in.remaining() / size)
+			throw new BufferUnderflowException();
+		return count;
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutput, String)}
+	 * 
+	 * @param in the input
+	 * @return the string
+	 */
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0)
+			return null;
+		if (length > in.remaining())
+			throw new BufferUnderflowException();
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -5,7 +5,9 @@ import static java.awt.Color.YELLOW;
 // import org.junit.jupiter.api.Test;
 import org.junit.Test;
 
+import geometries.Geometries;
 import geometries.Triangle;
+import geometries.TriangleMesh;
 import lighting.PointLight;
 import primitives.Color;
 import primitives.Material;
@@ -570,11 +572,12 @@ public class TeapotTest {
 	};
 
 	/**
-	 * Produce a scene with a 3D model and render it into a png image
+	 * Build the triangles of the teapot model (shared with the benchmarks)
+	 * 
+	 * @return the teapot model
 	 */
-	@Test
-	public void teapot() {
-		scene.geometries.add( //
+	public static Geometries teapotModel() {
+		return new Geometries( //
 				new Triangle(pnts[7], pnts[6], pnts[1]).setEmission(color).setMaterial(mat), //
 				new Triangle(pnts[1], pnts[2], pnts[7]).setEmission(color).setMaterial(mat), //
 				new Triangle(pnts[8], pnts[7], pnts[2]).setEmission(color).setMaterial(mat), //
@@ -1568,6 +1571,27 @@ public class TeapotTest {
 				new Triangle(pnts[470], pnts[469], pnts[529]).setEmission(color).setMaterial(mat), //
 				new Triangle(pnts[529], pnts[530], pnts[470]).setEmission(color).setMaterial(mat) //
 		);
+	}
+
+	/**
+	 * Build the teapot model as a single triangle mesh, from the triangles of
+	 * {@link #teapotModel()} (shared with the benchmarks)
+	 * 
+	 * @return the teapot mesh
+	 */
+	public static TriangleMesh teapotMesh() {
+		Triangle[] triangles = teapotModel().getGeometries().stream().map(geometry -> (Triangle) geometry)
+				.toArray(Triangle[]::new);
+		return (TriangleMesh) TriangleMesh.of(triangles).setEmission(color).setMaterial(mat);
+	}
+
+	/**
+	 * Produce a scene with a 3D model and render it into a png image
+	 */
+	@Test
+	public void teapot() {
+		scene.geometries.add(teapotModel());
+		scene.geometries.buildBVH();
 		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(100, 0, -100)).setKQ(0.000001));
 
 		camera.setRayTracer(new RayTracerBasic(scene));
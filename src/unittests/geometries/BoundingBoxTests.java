@@ -0,0 +1,126 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import primitives.*;
+
+/**
+ * Unit tests for {@link geometries.BoundingBox}
+ * 
+ * @author elana
+ */
+class BoundingBoxTests {
+	private final BoundingBox box = new BoundingBox(new Point(-1, -1, -1), new Point(1, 1, 1));
+
+	/**
+	 * Test method for {@link geometries.BoundingBox#intersects(primitives.Ray, double)}.
+	 */
+	@Test
+	void testIntersects() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: ray goes through the box
+		assertTrue(box.intersects(new Ray(new Point(-5, 0, 0), new Vector(1, 0.1, 0.1)), Double.POSITIVE_INFINITY),
+				"TC01: ray through the box");
+		// TC02: ray misses the box
+		assertFalse(box.intersects(new Ray(new Point(-5, 3, 0), new Vector(1, 0, 0)), Double.POSITIVE_INFINITY),
+				"TC02: ray outside the box");
+		// TC03: ray starts after the box
+		assertFalse(box.intersects(new Ray(new Point(5, 0, 0), new Vector(1, 0, 0)), Double.POSITIVE_INFINITY),
+				"TC03: ray after the box");
+		// TC04: ray starts inside the box
+		assertTrue(box.intersects(new Ray(Point.ZERO, new Vector(1, 2, 3)), Double.POSITIVE_INFINITY),
+				"TC04: ray inside the box");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: box is further than the max distance
+		assertFalse(box.intersects(new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0)), 3),
+				"TC11: box beyond max distance");
+		// TC12: ray on a face of the box
+		assertTrue(box.intersects(new Ray(new Point(-5, 1, 0), new Vector(1, 0, 0)), Double.POSITIVE_INFINITY),
+				"TC12: ray on a face of the box");
+		// TC13: flat box (e.g. of an axis aligned triangle)
+		BoundingBox flat = BoundingBox.of(new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0));
+		assertTrue(flat.intersects(new Ray(new Point(0.2, 0.2, 1), new Vector(0, 0, -1)), Double.POSITIVE_INFINITY),
+				"TC13: ray through a flat box");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.BoundingBox#intersectionDistance(primitives.RayPacket)}.
+	 */
+	@Test
+	void testIntersectionDistancePacket() {
+		Ray hit = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+		Ray nearHit = new Ray(new Point(0, -3, 0), new Vector(0, 1, 0));
+		Ray miss = new Ray(new Point(-5, 5, 0), new Vector(1, 0, 0));
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the distance of the nearest ray that hits the box
+		assertEquals(2, box.intersectionDistance(new RayPacket(hit, miss, nearHit)), 0.00001, "TC01: nearest ray");
+		// TC02: the whole packet misses the box
+		assertEquals(Double.POSITIVE_INFINITY, box.intersectionDistance(new RayPacket(miss, miss)),
+				"TC02: packet misses");
+		// TC03: the box is beyond the max distance of the rays
+		RayPacket packet = new RayPacket(hit, nearHit);
+		packet.maxDistance[0] = 3;
+		packet.maxDistance[1] = 1;
+		assertEquals(Double.POSITIVE_INFINITY, box.intersectionDistance(packet), "TC03: box beyond max distance");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: packet that starts inside the box
+		assertEquals(0, box.intersectionDistance(new RayPacket(new Ray(Point.ZERO, new Vector(0, 0, 1)), hit)),
+				0.00001, "TC11: packet inside the box");
+	}
+
+	/**
+	 * Test method for {@link geometries.BoundingBox#union(geometries.BoundingBox)}.
+	 */
+	@Test
+	void testUnion() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: union of two disjoint boxes
+		BoundingBox other = new BoundingBox(new Point(2, 0, -3), new Point(4, 5, 0));
+		BoundingBox union = box.union(other);
+		assertEquals(-1, union.getMin(0), 0.00001, "TC01: wrong min x");
+		assertEquals(-3, union.getMin(2), 0.00001, "TC01: wrong min z");
+		assertEquals(4, union.getMax(0), 0.00001, "TC01: wrong max x");
+		assertEquals(5, union.getMax(1), 0.00001, "TC01: wrong max y");
+		assertEquals(1, union.getMax(2), 0.00001, "TC01: wrong max z");
+		assertEquals(2 * (5 * 6 + 6 * 4 + 4 * 5), union.surfaceArea(), 0.00001, "TC01: wrong surface area");
+	}
+
+	/**
+	 * Test method for {@link geometries.Intersectable#getBoundingBox()}.
+	 */
+	@Test
+	void testGetBoundingBox() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: unbounded geometries have an infinite box
+		assertTrue(new Plane(Point.ZERO, new Vector(0, 0, 1)).getBoundingBox().isInfinite(), "TC01: plane box");
+		assertTrue(new Tube(new Ray(Point.ZERO, new Vector(0, 0, 1)), 1).getBoundingBox().isInfinite(),
+				"TC01: tube box");
+		// TC02: a collection with an unbounded geometry is unbounded
+		Geometries geometries = new Geometries(new Sphere(Point.ZERO, 1),
+				new Plane(Point.ZERO, new Vector(0, 0, 1)));
+		assertTrue(geometries.getBoundingBox().isInfinite(), "TC02: collection with a plane");
+		// TC03: cylinder box is bounded by its bases
+		BoundingBox cylinderBox = new Cylinder(1, new Ray(Point.ZERO, new Vector(0, 0, 1)), 5).getBoundingBox();
+		assertFalse(cylinderBox.isInfinite(), "TC03: cylinder box is finite");
+		assertEquals(-1, cylinderBox.getMin(0), 0.00001, "TC03: wrong min x");
+		assertEquals(0, cylinderBox.getMin(2), 0.00001, "TC03: wrong min z");
+		assertEquals(5, cylinderBox.getMax(2), 0.00001, "TC03: wrong max z");
+		// TC04: collection of finite geometries is bounded by their boxes
+		BoundingBox spheresBox = new Geometries(new Sphere(Point.ZERO, 1), new Sphere(new Point(5, 0, 0), 2))
+				.getBoundingBox();
+		assertEquals(-1, spheresBox.getMin(0), 0.00001, "TC04: wrong min x");
+		assertEquals(7, spheresBox.getMax(0), 0.00001, "TC04: wrong max x");
+		assertEquals(2, spheresBox.getMax(1), 0.00001, "TC04: wrong max y");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: ray rejected by the box of a collection
+		assertNull(new Geometries(new Sphere(Point.ZERO, 1))
+				.findGeoIntersections(new Ray(new Point(0, 5, 5), new Vector(1, 0, 0))), "TC11: ray misses box");
+	}
+}
@@ -8,6 +8,7 @@ import java.util.List;
 
 import primitives.*;
 import geometries.*;
+import geometries.Intersectable.GeoPoint;
 
 
 
@@ -57,6 +58,167 @@ public class GeometriesTest {
         List<Point> actual4 = geometries3.findIntersections(ray3, 5);
         assertEquals("only one shape intersects at max distance", expected3, actual4);
     }
+
+    /**
+     * Test method for {@link geometries.Geometries#getBoundingBox()}.
+     */
+    @Test
+    public void testNestedGrowth() {
+        // a collection that grows after it was added to another collection
+        Geometries nested = new Geometries(new Sphere(new Point(0, 0, 0), 1));
+        Geometries geometries = new Geometries(nested);
+        nested.add(new Sphere(new Point(10, 0, 0), 1));
+        Ray ray = new Ray(new Point(10, 0, 5), new Vector(0, 0, -1));
+
+        // ======================== EP =============================
+        // the box of the collection follows the nested collection
+        assertEquals("wrong box", 11, geometries.getBoundingBox().getMax(0), 0.00001);
+        assertEquals("wrong amount of intersections", 2, geometries.findIntersections(ray).size());
+        assertNotNull("no closest intersection", geometries.findClosestGeoIntersection(ray));
+
+        // the box of a collection follows a collection nested two levels below it
+        Geometries outer = new Geometries(geometries);
+        nested.add(new Sphere(new Point(0, 20, 0), 1));
+        assertEquals("wrong box two levels up", 21, outer.getBoundingBox().getMax(1), 0.00001);
+        assertNotNull("no intersection two levels down",
+                outer.findIntersections(new Ray(new Point(0, 20, 5), new Vector(0, 0, -1))));
+    }
+
+    /**
+     * Test method for {@link geometries.Geometries#buildBVH()}.
+     */
+    @Test
+    public void testBuildBVH() {
+        // a row of spheres along the x axis behind a plane, nested in a collection
+        Geometries spheres = new Geometries();
+        for (int i = 0; i < 20; ++i) {
+            spheres.add(new Sphere(new Point(10 * i, 0, 0), 2));
+        }
+        Plane plane = new Plane(new Point(0, 0, -10), new Vector(0, 0, 1));
+        Geometries geometries = new Geometries(spheres, plane);
+
+        Ray hitRay = new Ray(new Point(50, 0, 10), new Vector(0, 0, -1));
+        Ray missRay = new Ray(new Point(55, 0, 10), new Vector(0, 0, -1));
+        Ray alongRay = new Ray(new Point(-10, 0, 0), new Vector(1, 0, 0));
+        List<Point> hitBefore = geometries.findIntersections(hitRay);
+        List<Point> missBefore = geometries.findIntersections(missRay);
+        List<Point> alongBefore = geometries.findIntersections(alongRay);
+
+        geometries.buildBVH();
+
+        // ======================== EP =============================
+        // ray hits a sphere and the plane
+        List<Point> hitAfter = geometries.findIntersections(hitRay);
+        assertEquals("wrong amount of intersections after BVH build", hitBefore.size(), hitAfter.size());
+        assertTrue("wrong intersections after BVH build", hitAfter.containsAll(hitBefore));
+
+        // ray passes between the spheres and hits only the plane
+        assertEquals("ray between spheres should hit only the plane", missBefore,
+                geometries.findIntersections(missRay));
+
+        // ray goes through all the spheres
+        List<Point> alongAfter = geometries.findIntersections(alongRay);
+        assertEquals("ray along the spheres should hit all of them", 40, alongAfter.size());
+        assertTrue("wrong intersections along the spheres after BVH build", alongAfter.containsAll(alongBefore));
+
+        // ======================== BVA =============================
+        // building an empty collection
+        assertNull("an empty collection", new Geometries().buildBVH().findIntersections(hitRay));
+    }
+
+    /**
+     * Test method for {@link geometries.Intersectable#findClosestGeoIntersection(Ray)}.
+     */
+    @Test
+    public void testFindClosestGeoIntersection() {
+        Geometries geometries = new Geometries();
+        for (int i = 0; i < 10; ++i) {
+            geometries.add(new Sphere(new Point(10 * i, 0, 0), 2),
+                    new Triangle(new Point(10 * i + 5, -3, -3), new Point(10 * i + 5, 3, -3),
+                            new Point(10 * i + 5, 0, 3)));
+        }
+        geometries.add(new Plane(new Point(0, -1, 0), new Vector(0, 1, 0)));
+        geometries.buildBVH();
+
+        // ======================== EP =============================
+        // rays from both sides along the row and through a single sphere
+        Ray[] rays = { new Ray(new Point(-10, 0, 0), new Vector(1, 0, 0)),
+                new Ray(new Point(200, 0, 0), new Vector(-1, 0, 0)),
+                new Ray(new Point(30, 0, 20), new Vector(0, -0.05, -1)),
+                new Ray(new Point(33, 5, 0), new Vector(0, -1, 0)) };
+        for (Ray ray : rays) {
+            GeoPoint expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+            GeoPoint actual = geometries.findClosestGeoIntersection(ray);
+            assertEquals("wrong closest geometry", expected.geometry, actual.geometry);
+            assertEquals("wrong closest point", expected.point, actual.point);
+        }
+        assertEquals("wrong closest point from the left", new Point(-2, 0, 0),
+                geometries.findClosestGeoIntersection(rays[0]).point);
+
+        // ======================== BVA =============================
+        // no intersections at all
+        assertNull("ray missing all the geometries",
+                geometries.findClosestGeoIntersection(new Ray(new Point(0, 5, 0), new Vector(1, 0, 0))));
+        // closest intersection is beyond the max distance
+        assertNull("intersection beyond the max distance",
+                geometries.findClosestGeoIntersection(rays[0], 5));
+    }
+
+    /**
+     * Test method for {@link geometries.Intersectable#findTransparency(Ray, double, double)}.
+     */
+    @Test
+    public void testFindTransparency() {
+        Sphere glass = new Sphere(new Point(0, 0, 0), 1);
+        glass.setMaterial(new Material().setKT(0.5));
+        Sphere glass2 = new Sphere(new Point(5, 0, 0), 1);
+        glass2.setMaterial(new Material().setKT(0.5));
+        Sphere opaque = new Sphere(new Point(10, 0, 0), 1);
+        Geometries geometries = new Geometries(glass, glass2, opaque).buildBVH();
+        Ray ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+
+        // ======================== EP =============================
+        // nothing between the point and the light
+        assertEquals("no occluders", Double3.ONE, geometries.findTransparency(ray, 3, 0.001));
+        // one transparent sphere (two intersections)
+        assertEquals("one transparent occluder", new Double3(0.25), geometries.findTransparency(ray, 7, 0.001));
+        // two transparent spheres
+        assertEquals("two transparent occluders", new Double3(0.0625), geometries.findTransparency(ray, 12, 0.001));
+        // an opaque sphere behind the transparent ones
+        assertEquals("opaque occluder", Double3.ZERO, geometries.findTransparency(ray, 20, 0.001));
+
+        // ======================== BVA =============================
+        // transparency below the threshold is opaque
+        assertEquals("mostly opaque", Double3.ZERO, geometries.findTransparency(ray, 12, 0.1));
+    }
+
+    /**
+     * Test method for
+     * {@link geometries.Intersectable#findTransparency(Ray, double, double, Intersectable[])}.
+     */
+    @Test
+    public void testFindTransparencyOccluder() {
+        Sphere glass = new Sphere(new Point(0, 0, 0), 1);
+        glass.setMaterial(new Material().setKT(0.5));
+        Sphere opaque = new Sphere(new Point(10, 0, 0), 1);
+        Geometries geometries = new Geometries(glass, opaque).buildBVH();
+        Ray ray = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+        Intersectable[] occluder = new Intersectable[1];
+
+        // ======================== EP =============================
+        // a transparent occluder is not cached
+        assertEquals("transparent occluder", new Double3(0.25), geometries.findTransparency(ray, 7, 0.001, occluder));
+        assertNull("transparent occluder cached", occluder[0]);
+        // the opaque sphere blocks the ray by itself
+        assertEquals("opaque occluder", Double3.ZERO, geometries.findTransparency(ray, 20, 0.001, occluder));
+        assertSame("wrong occluder", opaque, occluder[0]);
+
+        // ======================== BVA =============================
+        // transparent spheres that are opaque together - no single occluder
+        occluder[0] = null;
+        assertEquals("mostly opaque", Double3.ZERO, geometries.findTransparency(ray, 7, 0.3, occluder));
+        assertNull("transparent occluders cached", occluder[0]);
+    }
 }
 
 
@@ -0,0 +1,300 @@
+package unittests.geometries;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Unit tests for {@link geometries.TriangleMesh}
+ * 
+ * @author elana
+ */
+class TriangleMeshTests {
+	/**
+	 * Square of two faces in the plane z = 0: (0,0) (2,0) (2,2) (0,2)
+	 */
+	private final TriangleMesh square = new TriangleMesh(new double[] { 0, 0, 0, 2, 0, 0, 2, 2, 0, 0, 2, 0 },
+			new int[] { 0, 1, 2, 0, 2, 3 });
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#TriangleMesh(double[], int[])}.
+	 */
+	@Test
+	void testConstructor() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: correct mesh
+		assertEquals(2, square.getFaceCount(), "TC01: wrong amount of faces");
+		assertEquals(2, square.getBoundingBox().getMax(0), 0.00001, "TC01: wrong bounding box");
+
+		// TC02: index out of the vertex buffer
+		assertThrows(IllegalArgumentException.class,
+				() -> new TriangleMesh(new double[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, new int[] { 0, 1, 3 }),
+				"TC02: index out of the vertex buffer");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: no faces
+		assertThrows(IllegalArgumentException.class, () -> new TriangleMesh(new double[] { 0, 0, 0 }, new int[0]),
+				"TC11: mesh without faces");
+		// TC12: buffer that is not made of triads
+		assertThrows(IllegalArgumentException.class,
+				() -> new TriangleMesh(new double[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }, new int[] { 0, 1 }),
+				"TC12: incomplete face");
+	}
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#of(geometries.Triangle...)}.
+	 * 
+	 * @throws IOException if the mesh can't be written
+	 */
+	@Test
+	void testOf() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a grid of 200x200 squares in a unit square - the faces share the
+		// vertices, and the close vertices don't slow the sharing down
+		int n = 200;
+		Triangle[] triangles = new Triangle[n * n * 2];
+		for (int i = 0; i < n; ++i)
+			for (int j = 0; j < n; ++j) {
+				Point p00 = new Point((double) i / n, (double) j / n, 0);
+				Point p10 = new Point((double) (i + 1) / n, (double) j / n, 0);
+				Point p11 = new Point((double) (i + 1) / n, (double) (j + 1) / n, 0);
+				Point p01 = new Point((double) i / n, (double) (j + 1) / n, 0);
+				triangles[(i * n + j) * 2] = new Triangle(p00, p10, p11);
+				triangles[(i * n + j) * 2 + 1] = new Triangle(p00, p11, p01);
+			}
+		TriangleMesh mesh = assertTimeout(Duration.ofSeconds(10), () -> TriangleMesh.of(triangles),
+				"TC01: too slow");
+		assertEquals(n * n * 2, mesh.getFaceCount(), "TC01: wrong amount of faces");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		mesh.write(new DataOutputStream(bytes));
+		// the buffers are written from the length of the vertex buffer
+		int coordinates = ByteBuffer.wrap(bytes.toByteArray()).getInt();
+		assertEquals((n + 1) * (n + 1) * 3, coordinates, "TC01: the vertices are not shared");
+	}
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#read(java.nio.ByteBuffer)}.
+	 * 
+	 * @throws IOException if the mesh can't be written
+	 */
+	@Test
+	void testRead() throws IOException {
+		// a mesh of 18 faces - a BVH with inner nodes
+		double[] vertices = new double[16 * 3];
+		for (int i = 0; i < 16; ++i) {
+			vertices[i * 3] = i % 4;
+			vertices[i * 3 + 1] = i / 4;
+		}
+		int[] indices = new int[18 * 3];
+		for (int i = 0; i < 9; ++i) {
+			int corner = i / 3 * 4 + i % 3;
+			System.arraycopy(new int[] { corner, corner + 1, corner + 5, corner, corner + 5, corner + 4 }, 0, indices,
+					i * 6, 6);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new TriangleMesh(vertices, indices).write(new DataOutputStream(out));
+		byte[] bytes = out.toByteArray();
+		// positions of the lengths of the buffers: vertices, indices, node bounds and
+		// node contents, and of the depth
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int indicesAt = 4 + buffer.getInt(0) * Double.BYTES;
+		int boundsAt = indicesAt + 4 + buffer.getInt(indicesAt) * Integer.BYTES;
+		int contentsAt = boundsAt + 4 + buffer.getInt(boundsAt) * Double.BYTES;
+		int depthAt = contentsAt + 4 + buffer.getInt(contentsAt) * Integer.BYTES;
+		Ray ray = new Ray(new Point(1.25, 1.5, 1), new Vector(0, 0, -1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a mesh that was written
+		TriangleMesh mesh = TriangleMesh.read(ByteBuffer.wrap(bytes));
+		assertEquals(18, mesh.getFaceCount(), "TC01: wrong amount of faces");
+		assertEquals(List.of(new Point(1.25, 1.5, 0)), mesh.findIntersections(ray), "TC01: wrong intersection");
+
+		// TC02: negative length of a buffer
+		assertThrows(IllegalArgumentException.class, () -> TriangleMesh.read(corrupt(bytes, indicesAt, -1)),
+				"TC02: negative length");
+
+		// TC03: buffer longer than the input
+		assertThrows(BufferUnderflowException.class,
+				() -> TriangleMesh.read(corrupt(bytes, indicesAt, Integer.MAX_VALUE)), "TC03: too long buffer");
+
+		// TC04: face index out of the vertices
+		assertThrows(IllegalArgumentException.class, () -> TriangleMesh.read(corrupt(bytes, indicesAt + 4, 16)),
+				"TC04: index out of the vertices");
+
+		// TC05: inner node (the root) whose second child is out of the nodes
+		assertThrows(IllegalArgumentException.class,
+				() -> TriangleMesh.read(corrupt(bytes, contentsAt + 4, buffer.getInt(contentsAt) / 2)),
+				"TC05: child out of the nodes");
+
+		// TC06: BVH deeper than its depth
+		assertThrows(IllegalArgumentException.class,
+				() -> TriangleMesh.read(corrupt(bytes, depthAt, buffer.getInt(depthAt) - 1)), "TC06: wrong depth");
+	}
+
+	/**
+	 * Copy the bytes of a written mesh with an integer replaced
+	 * 
+	 * @param bytes    the bytes of the mesh
+	 * @param position position of the integer
+	 * @param value    the new value of the integer
+	 * @return the input of the copy
+	 */
+	private static ByteBuffer corrupt(byte[] bytes, int position, int value) {
+		return ByteBuffer.wrap(bytes.clone()).putInt(position, value);
+	}
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#getNormal(primitives.Point)}.
+	 */
+	@Test
+	void testGetNormal() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: point on the second face
+		assertEquals(new Vector(0, 0, 1), square.getNormal(new Point(0.5, 1.5, 0)), "TC01: wrong normal");
+		// TC02: normal of an intersection is its face's normal
+		GeoPoint gp = square.findClosestGeoIntersection(new Ray(new Point(1.5, 0.5, 1), new Vector(0, 0, -1)));
+		assertEquals(new Vector(0, 0, 1), gp.getNormal(), "TC02: wrong normal of the intersection");
+		// TC03: point outside the mesh
+		assertThrows(IllegalArgumentException.class, () -> square.getNormal(new Point(3, 3, 0)),
+				"TC03: point outside the mesh");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findGeoIntersections(primitives.Ray)}.
+	 */
+	@Test
+	void testFindGeoIntersections() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: ray through the first face
+		List<Point> result = square.findIntersections(new Ray(new Point(1.5, 0.5, 1), new Vector(0, 0, -1)));
+		assertEquals(List.of(new Point(1.5, 0.5, 0)), result, "TC01: wrong intersection");
+		// TC02: ray misses the mesh
+		assertNull(square.findIntersections(new Ray(new Point(3, 3, 1), new Vector(0, 0, -1))),
+				"TC02: ray outside the mesh");
+		// TC03: mesh is behind the ray
+		assertNull(square.findIntersections(new Ray(new Point(1, 0.5, 1), new Vector(0, 0, 1))),
+				"TC03: mesh behind the ray");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: mesh is further than the max distance
+		assertNull(square.findIntersections(new Ray(new Point(1.5, 0.5, 1), new Vector(0, 0, -1)), 0.5),
+				"TC11: mesh beyond max distance");
+		// TC12: ray through the edge shared by the two faces (no crack between them)
+		GeoPoint gp = square.findClosestGeoIntersection(new Ray(new Point(1, 1, 1), new Vector(0, 0, -1)));
+		assertNotNull(gp, "TC12: ray through the shared edge");
+		assertEquals(new Point(1, 1, 0), gp.point, "TC12: wrong intersection on the shared edge");
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestGeoIntersection(primitives.Ray)}
+	 * - a mesh must find the same intersections as the same triangles
+	 */
+	@Test
+	void testFindClosestGeoIntersection() {
+		// random triangles in a cube
+		Random random = new Random(7);
+		Triangle[] triangles = new Triangle[200];
+		for (int i = 0; i < triangles.length; ++i) {
+			Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+			triangles[i] = new Triangle(p, p.add(new Vector(random.nextDouble() * 10 + 1, 0, random.nextDouble())),
+					p.add(new Vector(0, random.nextDouble() * 10 + 1, random.nextDouble())));
+		}
+		TriangleMesh mesh = TriangleMesh.of(triangles);
+		Geometries geometries = new Geometries(triangles);
+		Point origin = new Point(50, 50, -100);
+		for (int i = 0; i < 500; ++i) {
+			Ray ray = new Ray(origin, new Point(random.nextDouble() * 100, random.nextDouble() * 100, 50)
+					.subtract(origin));
+			GeoPoint expected = geometries.findClosestGeoIntersection(ray);
+			GeoPoint actual = mesh.findClosestGeoIntersection(ray);
+			if (expected == null) {
+				assertNull(actual, "mesh intersection where the triangles have none");
+			} else {
+				assertNotNull(actual, "no mesh intersection where the triangles have one");
+				assertEquals(expected.point, actual.point, "wrong closest intersection");
+				assertEquals(expected.getNormal(), actual.getNormal(), "wrong normal");
+				assertEquals(expected.t, actual.t, 1e-9, "wrong distance of the hit record");
+				assertEquals(expected.u, actual.u, 1e-9, "wrong barycentric u of the hit record");
+				assertEquals(expected.v, actual.v, 1e-9, "wrong barycentric v of the hit record");
+				assertEquals(geometries.findIntersections(ray).size(), mesh.findIntersections(ray).size(),
+						"wrong amount of intersections");
+			}
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findClosestGeoIntersections(primitives.RayPacket, GeoPoint[])}
+	 * - a packet must find the same intersections as its rays one by one
+	 */
+	@Test
+	void testFindClosestGeoIntersections() {
+		// random triangles in a cube, a mesh of them and spheres in a BVH
+		Random random = new Random(11);
+		Triangle[] triangles = new Triangle[200];
+		for (int i = 0; i < triangles.length; ++i) {
+			Point p = new Point(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100);
+			triangles[i] = new Triangle(p, p.add(new Vector(random.nextDouble() * 10 + 1, 0, random.nextDouble())),
+					p.add(new Vector(0, random.nextDouble() * 10 + 1, random.nextDouble())));
+		}
+		TriangleMesh mesh = TriangleMesh.of(triangles);
+		Geometries scene = new Geometries(mesh, new Sphere(new Point(30, 30, 20), 8),
+				new Sphere(new Point(70, 40, 60), 12), new Plane(new Point(0, 0, 120), new Vector(0, 0, 1)))
+				.buildBVH();
+		Point origin = new Point(50, 50, -100);
+		for (Intersectable geometry : new Intersectable[] { mesh, scene }) {
+			for (int packetIndex = 0; packetIndex < 30; ++packetIndex) {
+				// a packet of 4x4 rays through a small square
+				double x = random.nextDouble() * 95, y = random.nextDouble() * 95;
+				Ray[] rays = new Ray[16];
+				for (int i = 0; i < rays.length; ++i)
+					rays[i] = new Ray(origin, new Point(x + i % 4 * 1.5, y + i / 4 * 1.5, 50).subtract(origin));
+				GeoPoint[] closest = new GeoPoint[rays.length];
+				geometry.findClosestGeoIntersections(new RayPacket(rays), closest);
+				for (int i = 0; i < rays.length; ++i) {
+					GeoPoint expected = geometry.findClosestGeoIntersection(rays[i]);
+					if (expected == null) {
+						assertNull(closest[i], "packet intersection where the ray has none");
+					} else {
+						assertNotNull(closest[i], "no packet intersection where the ray has one");
+						assertEquals(expected.point, closest[i].point, "wrong closest intersection");
+						assertEquals(expected.getNormal(), closest[i].getNormal(), "wrong normal");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Intersectable#findTransparency(primitives.Ray, double, double)}.
+	 */
+	@Test
+	void testFindTransparency() {
+		Ray ray = new Ray(new Point(1.5, 0.5, 1), new Vector(0, 0, -1));
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: opaque mesh blocks the ray
+		assertEquals(Double3.ZERO, square.findTransparency(ray, 10, 0.001), "TC01: opaque mesh");
+		// TC02: transparent mesh
+		square.setMaterial(new Material().setKT(0.5));
+		assertEquals(new Double3(0.5), square.findTransparency(ray, 10, 0.001), "TC02: transparent mesh");
+		// TC03: mesh beyond the max distance
+		square.setMaterial(new Material());
+		assertEquals(Double3.ONE, square.findTransparency(ray, 0.5, 0.001), "TC03: mesh beyond max distance");
+	}
+}
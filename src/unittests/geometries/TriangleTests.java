@@ -7,6 +7,7 @@ import java.util.List;
 import org.junit.Test;
 
 import geometries.*;
+import geometries.Intersectable.GeoPoint;
 import primitives.*;
 
 /**
@@ -80,5 +81,38 @@ public class TriangleTests {
 		result = t1.findIntersections(ray, 1);
 		assertNull("Ray should not instersect if point is past the max distance", result);
 
+		// Ray parallel to the triangle's plane
+		ray = new Ray(new Point(1.5, -1, 1), new Vector(1, 0, 0));
+		result = t1.findIntersections(ray);
+		assertNull("Ray parallel to the triangle should not intersect", result);
+
+		// Ray starts behind the triangle
+		ray = new Ray(new Point(1.5, -0.5, 1), new Vector(0, 0, 1));
+		result = t1.findIntersections(ray);
+		assertNull("Ray starting after the triangle should not intersect", result);
+
+	}
+
+	/**
+	 * Test method for the hit record of
+	 * {@link geometries.Intersectable#findClosestGeoIntersection(Ray)} - the
+	 * intersection keeps its distance, barycentric coordinates and normal
+	 */
+	@Test
+	public void testHitRecord() {
+		Triangle triangle = new Triangle(new Point(0, 0, 0), new Point(2, 0, 0), new Point(0, 2, 0));
+		Ray ray = new Ray(new Point(0.5, 1, -2), new Vector(0, 0, 1));
+		GeoPoint gp = triangle.findClosestGeoIntersection(ray);
+		assertNotNull("TC01: there should be an intersection", gp);
+		assertEquals("TC01: wrong distance", 2, gp.t, 1e-10);
+		assertEquals("TC01: wrong distance", 2, gp.getDistance(ray), 1e-10);
+		assertEquals("TC01: wrong barycentric u", 0.25, gp.u, 1e-10);
+		assertEquals("TC01: wrong barycentric v", 0.5, gp.v, 1e-10);
+		assertSame("TC01: the normal should be calculated once", gp.getNormal(), gp.getNormal());
+
+		// TC02: an intersection without a recorded distance is measured from the point
+		GeoPoint point = new GeoPoint(triangle, new Point(0.5, 1, 0));
+		assertTrue("TC02: the distance should not be recorded", Double.isNaN(point.t));
+		assertEquals("TC02: wrong distance", 2, point.getDistance(ray), 1e-10);
 	}
 }
@@ -0,0 +1,127 @@
+package unittests.lighting;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import lighting.*;
+import primitives.*;
+
+/**
+ * Unit tests for {@link lighting.LightBVH}
+ * 
+ * @author elish
+ */
+class LightBVHTests {
+	private static final double THRESHOLD = 1;
+
+	/**
+	 * Get the lights of a selection
+	 * 
+	 * @param selection the selection
+	 * @return the selected lights
+	 */
+	private static Set<LightSource> lights(LightBVH.Selection selection) {
+		Set<LightSource> lights = new HashSet<>();
+		for (int i = 0; i < selection.size(); ++i)
+			lights.add(selection.getLight(i));
+		return lights;
+	}
+
+	/**
+	 * Test method for {@link lighting.LightBVH#select(primitives.Point)}.
+	 */
+	@Test
+	void testSelect() {
+		// a row of point lights 10 apart of radius about 3 (100 / (1 + 10 * d^2)),
+		// a spot light, a directional light and a light that is too weak
+		List<LightSource> sources = new ArrayList<>();
+		for (int i = 0; i < 20; ++i)
+			sources.add(new PointLight(new Color(100, 50, 0), new Point(i * 10, 0, 0)).setKQ(10));
+		SpotLight spot = new SpotLight(new Color(100, 100, 100), new Point(0, 50, 0), new Vector(0, 1, 0));
+		spot.setNarrowBeam(2).setKQ(0.01);
+		DirectionalLight directional = new DirectionalLight(new Color(10, 10, 10), new Vector(0, 0, -1));
+		PointLight weak = new PointLight(new Color(0.5, 0.5, 0.5), new Point(0, 0, 0));
+		sources.add(spot);
+		sources.add(directional);
+		sources.add(weak);
+		LightBVH bvh = new LightBVH(sources, THRESHOLD, 0);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the weak light is dropped
+		assertEquals(22, bvh.getLightCount(), "TC01: wrong amount of lights");
+
+		// TC02: a point near a point light - the light and the directional light
+		assertEquals(Set.of(sources.get(7), directional), lights(bvh.select(new Point(71, 1, 0))),
+				"TC02: wrong lights near a point light");
+
+		// TC03: a point between the point lights - only the directional light
+		assertEquals(Set.of(directional), lights(bvh.select(new Point(75, 0, 0))),
+				"TC03: wrong lights between the point lights");
+
+		// TC04: a point in the cone of the spot light
+		assertEquals(Set.of(spot, directional), lights(bvh.select(new Point(1, 60, 0))),
+				"TC04: wrong lights in the cone of the spot light");
+
+		// TC05: a point behind the spot light
+		assertEquals(Set.of(directional), lights(bvh.select(new Point(0, 45, 0))),
+				"TC05: wrong lights behind the spot light");
+
+		// TC06: every light above the threshold at a point is selected, with no scale
+		for (int x = -5; x < 200; x += 3) {
+			Point p = new Point(x, 0.5, 0.5);
+			LightBVH.Selection selection = bvh.select(p);
+			Set<LightSource> selected = lights(selection);
+			for (LightSource light : sources) {
+				Double3 rgb = light.getIntensity(p).getRgb();
+				if (Math.max(rgb.d1, Math.max(rgb.d2, rgb.d3)) >= THRESHOLD)
+					assertTrue(selected.contains(light), "TC06: a light above the threshold is not selected");
+			}
+			for (int i = 0; i < selection.size(); ++i)
+				assertEquals(1, selection.getScale(i), "TC06: wrong scale");
+		}
+	}
+
+	/**
+	 * Test method for {@link lighting.LightBVH#select(primitives.Point)} with a max
+	 * amount of lights.
+	 */
+	@Test
+	void testSelectStochastic() {
+		// lights without attenuation - every light affects every point
+		List<LightSource> sources = new ArrayList<>();
+		for (int i = 0; i < 10; ++i)
+			sources.add(new PointLight(new Color(10 * (i + 1), 10, 10), new Point(i, 0, 0)));
+		LightBVH bvh = new LightBVH(sources, THRESHOLD, 2);
+		Point p = new Point(0, 0, 5);
+		double expected = 0;
+		for (LightSource light : sources)
+			expected += light.getIntensity(p).getRgb().d1;
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: at most the max amount of lights is selected, and the scaled intensity
+		// is the same as the intensity of all the lights on average
+		RandomSequence random = RandomSequence.current();
+		double sum = 0;
+		int samples = 4000;
+		for (int sample = 0; sample < samples; ++sample) {
+			random.start(7, sample);
+			LightBVH.Selection selection = bvh.select(p);
+			assertTrue(selection.size() >= 1 && selection.size() <= 2, "TC01: wrong amount of lights");
+			for (int i = 0; i < selection.size(); ++i)
+				sum += selection.getLight(i).getIntensity(p).getRgb().d1 * selection.getScale(i);
+		}
+		assertEquals(expected, sum / samples, expected * 0.05, "TC01: the selection is biased");
+
+		// TC02: the selection is deterministic by the random sequence
+		random.start(3, 1);
+		Set<LightSource> first = lights(bvh.select(p));
+		random.start(3, 1);
+		assertEquals(first, lights(bvh.select(p)), "TC02: the selection is not deterministic");
+	}
+}
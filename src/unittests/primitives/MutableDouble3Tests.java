@@ -0,0 +1,44 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.*;
+
+/**
+ * Unit tests for {@link primitives.MutableDouble3}
+ * 
+ * @author elish
+ */
+class MutableDouble3Tests {
+
+	/**
+	 * Test method for the in-place arithmetic of {@link primitives.MutableDouble3}.
+	 */
+	@Test
+	void testArithmetic() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: operations change the triad in place and return it
+		MutableDouble3 m = new MutableDouble3(1, 2, 3);
+		assertSame(m, m.add(new Double3(1, 1, 1)), "TC01: add should return the same object");
+		assertEquals(new Double3(2, 3, 4), m.toDouble3(), "TC01: wrong add");
+		m.product(new Double3(2, 0, 1)).scale(0.5);
+		assertEquals(new Double3(2, 0, 2), m.toDouble3(), "TC02: wrong product and scale");
+		m.addProduct(new Double3(1, 2, 3), new Double3(3, 2, 1));
+		assertEquals(new Double3(5, 4, 5), m.toDouble3(), "TC03: wrong addProduct");
+		m.addProduct(new MutableDouble3(1, 1, 1), new Double3(1, 2, 3), 2);
+		assertEquals(new Double3(7, 8, 11), m.toDouble3(), "TC04: wrong scaled addProduct");
+
+		// TC05: vector operations
+		m.setSubtract(new Double3(4, 5, 6), new Double3(1, 1, 6));
+		assertEquals(25, m.lengthSquared(), 0.00001, "TC05: wrong length squared");
+		assertEquals(7, m.dotProduct(new Double3(1, 1, 0)), 0.00001, "TC05: wrong dot product");
+		assertEquals(new Double3(0.6, 0.8, 0), m.normalize().toDouble3(), "TC05: wrong normalize");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: normalizing a zero triad
+		assertThrows(IllegalArgumentException.class, () -> new MutableDouble3().normalize(),
+				"TC11: zero triad can't be normalized");
+	}
+}
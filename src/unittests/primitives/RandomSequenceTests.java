@@ -0,0 +1,87 @@
+package unittests.primitives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.RandomSequence;
+
+/**
+ * Unit tests for {@link primitives.RandomSequence}
+ * 
+ * @author elish
+ */
+class RandomSequenceTests {
+
+	/**
+	 * Test method for {@link primitives.RandomSequence#get(long, int, int)}.
+	 */
+	@Test
+	void testGet() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the numbers are in [0, 1) and depend on every part of the key
+		for (int dimension = 0; dimension < 4; ++dimension) {
+			double value = RandomSequence.get(17, 5, dimension);
+			assertTrue(value >= 0 && value < 1, "TC01: number out of range");
+			assertEquals(value, RandomSequence.get(17, 5, dimension), "TC01: number is not deterministic");
+			assertNotEquals(value, RandomSequence.get(18, 5, dimension), "TC01: number doesn't depend on the pixel");
+			assertNotEquals(value, RandomSequence.get(17, 6, dimension), "TC01: number doesn't depend on the sample");
+		}
+		assertNotEquals(RandomSequence.get(17, 5, 2), RandomSequence.get(17, 5, 3),
+				"TC01: number doesn't depend on the dimension");
+
+		// TC02: the first two dimensions of 16 samples of a pixel are stratified - one
+		// sample in every cell of a 4x4 grid and in every 1/16 of each dimension
+		for (long pixel = 0; pixel < 8; ++pixel) {
+			boolean[] cells = new boolean[16];
+			boolean[] columns = new boolean[16];
+			boolean[] rows = new boolean[16];
+			for (int sample = 0; sample < 16; ++sample) {
+				double x = RandomSequence.get(pixel, sample, 0);
+				double y = RandomSequence.get(pixel, sample, 1);
+				cells[(int) (y * 4) * 4 + (int) (x * 4)] = true;
+				columns[(int) (x * 16)] = true;
+				rows[(int) (y * 16)] = true;
+			}
+			for (int i = 0; i < 16; ++i) {
+				assertTrue(cells[i], "TC02: a cell of the grid has no sample");
+				assertTrue(columns[i], "TC02: a column has no sample");
+				assertTrue(rows[i], "TC02: a row has no sample");
+			}
+		}
+
+		// TC03: the hashed dimensions are uniform
+		double sum = 0;
+		int count = 10000;
+		for (int sample = 0; sample < count; ++sample)
+			sum += RandomSequence.get(3, sample, 2);
+		assertEquals(0.5, sum / count, 0.02, "TC03: hashed dimension is not uniform");
+	}
+
+	/**
+	 * Test method for {@link primitives.RandomSequence#next()}.
+	 */
+	@Test
+	void testNext() throws InterruptedException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the sequence walks the dimensions of the sample
+		RandomSequence sequence = RandomSequence.current().start(42, 3);
+		assertSame(sequence, RandomSequence.current(), "TC01: the sequence is not per thread");
+		assertEquals(RandomSequence.get(42, 3, 0), sequence.next(), "TC01: wrong first dimension");
+		assertEquals(RandomSequence.get(42, 3, 1), sequence.next(), "TC01: wrong second dimension");
+		assertEquals(RandomSequence.get(42, 3, 2) * 4 - 2, sequence.next(-2, 2), 1e-12, "TC01: wrong range");
+
+		// TC02: the next sample starts from its first dimension
+		sequence.nextSample();
+		assertEquals(4, sequence.getSample(), "TC02: wrong sample");
+		assertEquals(RandomSequence.get(42, 4, 0), sequence.next(), "TC02: wrong first dimension");
+
+		// TC03: another thread has its own sequence with the same numbers
+		double[] other = new double[1];
+		Thread thread = new Thread(() -> other[0] = RandomSequence.current().start(42, 4).next());
+		thread.start();
+		thread.join();
+		assertEquals(42, sequence.getPixel(), "TC03: another thread changed the sequence");
+		assertEquals(RandomSequence.get(42, 4, 0), other[0], "TC03: wrong number in another thread");
+	}
+}
@@ -4,7 +4,15 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
 
-import renderer.Camera;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import renderer.*;
+import renderer.Camera.SUPERSAMPLING_TYPE;
+import renderer.StreamingImageWriter.Format;
+import scene.Scene;
+import geometries.*;
+import lighting.*;
 import primitives.*;
 
 /**
@@ -57,4 +65,251 @@ class CameraTests {
 
 	}
 
+	/**
+	 * Build a scene of a lit sphere
+	 * 
+	 * @return the scene
+	 */
+	private static Scene sphereScene() {
+		Scene scene = new Scene("Test scene");
+		scene.geometries.add(new Sphere(new Point(0, 0, -100), 50).setEmission(new Color(20, 40, 100))
+				.setMaterial(new Material().setKD(0.5).setKS(0.5).setNShininess(30)));
+		scene.lights.add(new PointLight(new Color(500, 300, 0), new Point(-50, 50, 50)).setKL(0.0004));
+		return scene;
+	}
+
+	/**
+	 * Build a camera of a scene of a lit sphere
+	 * 
+	 * @return the camera
+	 */
+	private static Camera sphereCamera() {
+		Scene scene = sphereScene();
+		return new Camera(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(150, 150).setViewPlaneDistance(200) //
+				.setRayTracer(new RayTracerBasic(scene));
+	}
+
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} with progressive
+	 * rendering.
+	 */
+	@Test
+	void testRenderProgressive() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: every pass adds a sample to every pixel
+		AtomicInteger passes = new AtomicInteger();
+		ImageWriter imageWriter = new ImageWriter("progressive", 40, 30);
+		sphereCamera().setImageWriter(imageWriter).setMultithreading(2).setProgressive(6)
+				.setPassListener(passes::set).renderImage();
+		assertEquals(6, passes.get(), "TC01: wrong amount of passes");
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 40; ++col)
+				assertEquals(6, imageWriter.getFrameBuffer().getSamples(col, row), "TC01: wrong amount of samples");
+
+		// TC02: the first pass is the image without supersampling
+		ImageWriter expected = new ImageWriter("progressiveExpected", 40, 30);
+		sphereCamera().setImageWriter(expected).setSupersampling(SUPERSAMPLING_TYPE.NONE).renderImage();
+		sphereCamera().setImageWriter(imageWriter).setProgressive(1).renderImage();
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 40; ++col)
+				assertEquals(expected.getFrameBuffer().getColor(col, row).getRgb(),
+						imageWriter.getFrameBuffer().getColor(col, row).getRgb(), "TC02: wrong first pass");
+
+		// TC03: the rendering stops on the time budget
+		passes.set(0);
+		long start = System.nanoTime();
+		sphereCamera().setImageWriter(imageWriter).setProgressive(Integer.MAX_VALUE).setRenderTimeBudget(0.3)
+				.setPassListener(passes::set).renderImage();
+		assertTrue(System.nanoTime() - start < 10e9, "TC03: the time budget was ignored");
+		assertTrue(passes.get() >= 1, "TC03: the first pass was not completed");
+
+		// TC04: image without noise stops on the noise budget after two passes
+		passes.set(0);
+		Scene flat = new Scene("Flat scene").setBackground(new Color(30, 60, 90));
+		new Camera(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setViewPlaneSize(150, 150)
+				.setViewPlaneDistance(200).setRayTracer(new RayTracerBasic(flat)).setImageWriter(imageWriter)
+				.setProgressive(100).setNoiseBudget(0.1).setPassListener(passes::set).renderImage();
+		assertEquals(2, passes.get(), "TC04: the noise budget was ignored");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: image writer without a frame buffer
+		Camera streaming = sphereCamera().setImageWriter(new StreamingImageWriter("progressiveStream", 40, 30,
+				Format.PPM)).setProgressive(2);
+		assertThrows(IllegalStateException.class, streaming::renderImage, "TC11: writer without a frame buffer");
+	}
+
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} with a time budget.
+	 */
+	@Test
+	void testRenderWithBudget() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: with enough time every tile gets the full supersampling
+		ImageWriter expected = new ImageWriter("budgetExpected", 40, 30);
+		sphereCamera().setImageWriter(expected).setSupersampling(SUPERSAMPLING_TYPE.REGULAR)
+				.setSupersamplingGridSize(3).renderImage();
+		ImageWriter actual = new ImageWriter("budget", 40, 30);
+		sphereCamera().setImageWriter(actual).setSupersampling(SUPERSAMPLING_TYPE.REGULAR).setSupersamplingGridSize(3)
+				.setRenderTimeBudget(1000).setMultithreading(2).renderImage();
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 40; ++col)
+				assertEquals(expected.getFrameBuffer().getColor(col, row).getRgb(),
+						actual.getFrameBuffer().getColor(col, row).getRgb(),
+						"TC01: wrong pixel (" + col + ", " + row + ")");
+
+		// TC02: the rendering stops at the deadline with a complete image
+		ImageWriter imageWriter = new ImageWriter("budgetDeadline", 200, 200);
+		long start = System.nanoTime();
+		sphereCamera().setImageWriter(imageWriter).setSupersampling(SUPERSAMPLING_TYPE.REGULAR)
+				.setSupersamplingGridSize(100).setRenderTimeBudget(0.2).renderImage();
+		assertTrue(System.nanoTime() - start < 5e9, "TC02: the deadline was ignored");
+		for (int row = 0; row < 200; ++row)
+			for (int col = 0; col < 200; ++col)
+				assertEquals(1, imageWriter.getFrameBuffer().getSamples(col, row), "TC02: pixel was not rendered");
+
+		// TC03: with enough time every tile gets the full adaptive supersampling,
+		// with the center of the single ray pass as one more sample
+		assertAdaptiveBudget(2, "TC03");
+		assertAdaptiveBudget(3, "TC03");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: streaming image writer
+		Camera streaming = sphereCamera().setImageWriter(new StreamingImageWriter("budgetStream", 40, 30,
+				Format.PPM)).setSupersampling(SUPERSAMPLING_TYPE.REGULAR).setRenderTimeBudget(10);
+		assertThrows(IllegalStateException.class, streaming::renderImage, "TC11: streaming image writer");
+
+		// TC12: adaptive supersampling that can't split the pixels - the corners alone
+		// don't replace the centers of the single ray pass
+		assertAdaptiveBudget(1, "TC12");
+	}
+
+	/**
+	 * Check a time-budgeted rendering with ADAPTIVE supersampling and enough time
+	 * - every pixel must be its adaptive supersampling merged with the ray
+	 * through its center as one of the samples of the level
+	 * 
+	 * @param depth the max recursion depth of the adaptive supersampling
+	 * @param test  name of the test case
+	 */
+	private static void assertAdaptiveBudget(int depth, String test) {
+		ImageWriter single = new ImageWriter("budgetSingle", 40, 30);
+		sphereCamera().setImageWriter(single).setSupersampling(SUPERSAMPLING_TYPE.NONE).renderImage();
+		ImageWriter adaptive = new ImageWriter("budgetAdaptive", 40, 30);
+		sphereCamera().setImageWriter(adaptive).setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE)
+				.setAdaptiveSupersamplingMaxRecursionDepth(depth).renderImage();
+		ImageWriter actual = new ImageWriter("budget", 40, 30);
+		sphereCamera().setImageWriter(actual).setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE)
+				.setAdaptiveSupersamplingMaxRecursionDepth(depth).setRenderTimeBudget(1000).setMultithreading(2)
+				.renderImage();
+		// the rays of a level of the adaptive supersampling
+		double samples = Math.pow(4, depth - 1);
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 40; ++col) {
+				Double3 expected = single.getFrameBuffer().getColor(col, row)
+						.add(adaptive.getFrameBuffer().getColor(col, row).scale(samples)).reduce(samples + 1).getRgb();
+				Double3 rgb = actual.getFrameBuffer().getColor(col, row).getRgb();
+				// the frame buffers keep the colors in single precision
+				String message = test + ": wrong pixel (" + col + ", " + row + ") with depth " + depth;
+				assertEquals(expected.d1, rgb.d1, 1e-4, message);
+				assertEquals(expected.d2, rgb.d2, 1e-4, message);
+				assertEquals(expected.d3, rgb.d3, 1e-4, message);
+			}
+	}
+
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} with a failing tile.
+	 */
+	@Test
+	void testRenderFailure() {
+		// a ray tracer that fails on the rays through the bottom of the image
+		RayTracerBasic failing = new RayTracerBasic(sphereScene()) {
+			@Override
+			public Color traceRay(Ray ray) {
+				if (ray.dir.xyz.d2 < -0.2)
+					throw new IllegalStateException("failed ray");
+				return super.traceRay(ray);
+			}
+		};
+		Camera camera = sphereCamera().setRayTracer(failing).setImageWriter(new ImageWriter("failure", 40, 30))
+				.setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE).setAdaptiveSupersamplingMaxRecursionDepth(2)
+				.setMultithreading(2).setDebugPrint(0.01);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the failure of a tile is thrown while the progress is printed
+		assertTimeoutPreemptively(Duration.ofSeconds(20),
+				() -> assertThrows(IllegalStateException.class, camera::renderImage, "TC01: no failure"),
+				"TC01: the rendering waits for the failed tile");
+	}
+
+	/**
+	 * Ray tracer that counts the traced rays
+	 */
+	private static class CountingRayTracer extends RayTracerBasic {
+		private final AtomicInteger rays = new AtomicInteger();
+
+		CountingRayTracer(Scene scene) {
+			super(scene);
+		}
+
+		@Override
+		public Color traceRay(Ray ray) {
+			rays.incrementAndGet();
+			return super.traceRay(ray);
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} with adaptive
+	 * supersampling.
+	 */
+	@Test
+	void testRenderAdaptive() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the samples of an image without edges are the pixel corners, every
+		// corner is traced once (also on the edges of the tiles)
+		for (int threads : new int[] { 0, 2 }) {
+			CountingRayTracer rayTracer = new CountingRayTracer(new Scene("Flat scene").setBackground(new Color(30,
+					60, 90)));
+			new Camera(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setViewPlaneSize(150, 150)
+					.setViewPlaneDistance(200).setRayTracer(rayTracer).setImageWriter(new ImageWriter("adaptive", 70,
+							50)).setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE)
+					.setAdaptiveSupersamplingMaxRecursionDepth(3).setMultithreading(threads).renderImage();
+			assertEquals(71 * 51, rayTracer.rays.get(), "TC01: wrong amount of rays with " + threads + " threads");
+		}
+
+		// TC02: the image is close to a densely supersampled image, with a fraction
+		// of its rays
+		ImageWriter expected = new ImageWriter("adaptiveExpected", 40, 30);
+		sphereCamera().setImageWriter(expected).setSupersampling(SUPERSAMPLING_TYPE.REGULAR)
+				.setSupersamplingGridSize(8).renderImage();
+		ImageWriter actual = new ImageWriter("adaptive", 40, 30);
+		CountingRayTracer rayTracer = new CountingRayTracer(sphereScene());
+		sphereCamera().setRayTracer(rayTracer).setImageWriter(actual).setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE)
+				.setAdaptiveSupersamplingMaxRecursionDepth(4).setMultithreading(2).renderImage();
+		double error = 0;
+		for (int row = 0; row < 30; ++row)
+			for (int col = 0; col < 40; ++col) {
+				Double3 difference = expected.getFrameBuffer().getColor(col, row).getRgb()
+						.subtract(actual.getFrameBuffer().getColor(col, row).getRgb());
+				error += Math.abs(difference.d1) + Math.abs(difference.d2) + Math.abs(difference.d3);
+			}
+		assertTrue(error / (40 * 30 * 3) < 3, "TC02: the image is too far from the supersampled image");
+		assertTrue(rayTracer.rays.get() < 40 * 30 * 16, "TC02: too many rays");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: a ray cast after a rendering of another camera doesn't get its samples
+		new Camera(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setViewPlaneSize(150, 150)
+				.setViewPlaneDistance(200).setRayTracer(new RayTracerBasic(new Scene("Red").setBackground(new Color(
+						255, 0, 0)))).setImageWriter(new ImageWriter("adaptiveRed", 20, 20))
+				.setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE).setAdaptiveSupersamplingMaxRecursionDepth(2)
+				.renderImage();
+		ImageWriter blue = new ImageWriter("adaptiveBlue", 20, 20);
+		new Camera(new Point(0, 0, 200), new Vector(0, 0, -1), new Vector(0, 1, 0)).setViewPlaneSize(150, 150)
+				.setViewPlaneDistance(200).setRayTracer(new RayTracerBasic(new Scene("Blue").setBackground(new Color(
+						0, 0, 255)))).setImageWriter(blue).setSupersampling(SUPERSAMPLING_TYPE.ADAPTIVE)
+				.setAdaptiveSupersamplingMaxRecursionDepth(2).castRay(20, 20, 19, 19);
+		assertEquals(new Double3(0, 0, 255), blue.getFrameBuffer().getColor(19, 19).getRgb(),
+				"TC11: a sample of another rendering");
+	}
 }
@@ -0,0 +1,90 @@
+package unittests.renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.Color;
+import primitives.Double3;
+import renderer.FrameBuffer;
+import renderer.ToneMapping;
+
+/**
+ * Unit tests for {@link renderer.FrameBuffer}
+ * 
+ * @author elana
+ */
+class FrameBufferTests {
+	/**
+	 * Test method for
+	 * {@link renderer.FrameBuffer#add(int, int, primitives.Color)}.
+	 */
+	@Test
+	void testAdd() {
+		FrameBuffer frameBuffer = new FrameBuffer(4, 3);
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the color of a pixel is the average of its samples
+		frameBuffer.add(2, 1, new Color(100, 0, 300));
+		frameBuffer.add(2, 1, new Color(200, 50, 500));
+		assertEquals(2, frameBuffer.getSamples(2, 1), "TC01: wrong amount of samples");
+		assertEquals(new Double3(150, 25, 400), frameBuffer.getColor(2, 1).getRgb(), "TC01: wrong average");
+		// TC02: the high dynamic range is kept until the pixel is tone mapped
+		assertEquals(new Color(150, 25, 255).getRGB(), frameBuffer.toRGB(2, 1, ToneMapping.CLAMP, 1),
+				"TC02: wrong clamped pixel");
+		assertEquals(new Color(75, 12.5, 200).getRGB(), frameBuffer.toRGB(2, 1, ToneMapping.CLAMP, 0.5),
+				"TC02: wrong exposed pixel");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: pixel without samples is black
+		assertEquals(0, frameBuffer.getSamples(1, 2), "TC11: samples of an empty pixel");
+		assertEquals(Color.BLACK, frameBuffer.getColor(1, 2), "TC11: color of an empty pixel");
+		assertEquals(0xFF000000, frameBuffer.toRGB(1, 2, ToneMapping.REINHARD, 1), "TC11: empty pixel is not black");
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.FrameBuffer#set(int, int, primitives.Color)}.
+	 */
+	@Test
+	void testSet() {
+		FrameBuffer frameBuffer = new FrameBuffer(4, 3);
+		frameBuffer.add(3, 2, new Color(100, 100, 100));
+		frameBuffer.add(3, 2, new Color(100, 100, 100));
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: setting a pixel replaces its samples
+		frameBuffer.set(3, 2, new Color(10, 20, 30));
+		assertEquals(1, frameBuffer.getSamples(3, 2), "TC01: wrong amount of samples");
+		assertEquals(new Double3(10, 20, 30), frameBuffer.getColor(3, 2).getRgb(), "TC01: wrong color");
+	}
+
+	/**
+	 * Test method for {@link renderer.FrameBuffer#getNoise()}.
+	 */
+	@Test
+	void testGetNoise() {
+		FrameBuffer frameBuffer = new FrameBuffer(4, 3);
+		for (int row = 0; row < 3; ++row)
+			for (int col = 0; col < 4; ++col) {
+				frameBuffer.add(col, row, new Color(0, 0, 0));
+				frameBuffer.add(col, row, new Color(30, 0, 0));
+			}
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: intensities 0 and 10 - variance 50, standard error 5
+		assertEquals(5, frameBuffer.getNoise(), 1e-5, "TC01: wrong noise");
+		// TC02: the noise falls with more samples
+		for (int row = 0; row < 3; ++row)
+			for (int col = 0; col < 4; ++col) {
+				frameBuffer.add(col, row, new Color(0, 0, 0));
+				frameBuffer.add(col, row, new Color(30, 0, 0));
+			}
+		assertTrue(frameBuffer.getNoise() < 5, "TC02: noise doesn't fall");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: pixel with a single sample
+		frameBuffer.set(1, 1, Color.BLACK);
+		assertEquals(Double.POSITIVE_INFINITY, frameBuffer.getNoise(), "TC11: noise of a single sample");
+		// TC12: cleared frame buffer
+		frameBuffer.clear();
+		assertEquals(0, frameBuffer.getSamples(1, 1), "TC12: samples after clearing");
+	}
+}
@@ -0,0 +1,182 @@
+package unittests.renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import renderer.RayTracerBasic;
+import renderer.RayTracerBasic.BRANCHING_TYPE;
+import scene.Scene;
+
+/**
+ * Unit tests for {@link renderer.RayTracerBasic}
+ * 
+ * @author elish
+ */
+class RayTracerBasicTests {
+
+	/**
+	 * Test method for {@link renderer.RayTracerBasic#traceRay(primitives.Ray)}.
+	 */
+	@Test
+	void testTraceRay() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a mirror reflects the background - emission + kR * background +
+		// ambient
+		Scene scene = new Scene("Mirror");
+		scene.background = new Color(100, 50, 20);
+		scene.setAmbientLight(new AmbientLight(new Color(10, 10, 10), 1));
+		scene.geometries.add(new Plane(new Point(0, 0, -10), new Vector(0, 0, 1)).setEmission(new Color(5, 5, 5))
+				.setMaterial(new Material().setKR(0.5)));
+		Color color = new RayTracerBasic(scene).traceRay(new Ray(Point.ZERO, new Vector(1, 0, -1)));
+		assertEquals(new Double3(65, 40, 25), color.getRgb(), "TC01: wrong reflection");
+
+		// TC02: two facing mirrors - the reflections stop at the max level
+		scene = new Scene("Mirrors");
+		scene.geometries.add(
+				new Plane(new Point(0, 0, -10), new Vector(0, 0, 1)).setEmission(new Color(64, 64, 64))
+						.setMaterial(new Material().setKR(0.5)),
+				new Plane(new Point(0, 0, 10), new Vector(0, 0, -1)).setMaterial(new Material().setKR(1)));
+		color = new RayTracerBasic(scene).traceRay(new Ray(Point.ZERO, new Vector(0, 0, -1)));
+		// the emitting mirror is seen at levels 10, 8, 6, 4 and 2: 64 * (1 + 0.5 + ... +
+		// 0.5^4)
+		assertEquals(124, color.getRgb().d1, 1e-9, "TC02: wrong reflections");
+	}
+
+	/**
+	 * Test method for {@link renderer.RayTracerBasic#traceRay(primitives.Ray)} with
+	 * shadows.
+	 */
+	@Test
+	void testTraceRayShadow() {
+		Plane floor = new Plane(new Point(0, 0, -100), new Vector(0, 0, 1));
+		floor.setMaterial(new Material().setKD(0.5));
+		Scene scene = new Scene("Shadow");
+		scene.geometries.add(floor, new Sphere(new Point(0, 0, -50), 10d));
+		scene.lights.add(new PointLight(new Color(100, 100, 100), new Point(0, 0, 0)));
+		RayTracerBasic tracer = new RayTracerBasic(scene);
+		// a ray that passes by the sphere to a point of the floor below it
+		Ray ray = new Ray(new Point(30, 0, 0), new Vector(-28, 0, -100));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the point is in the shadow of the sphere
+		assertEquals(Double3.ZERO, tracer.traceRay(ray).getRgb(), "TC01: the point is not in the shadow");
+
+		// TC02: the geometries of the scene were replaced - the sphere doesn't block
+		// the light anymore
+		scene.setGeometries(new Geometries(floor));
+		assertEquals(new RayTracerBasic(scene).traceRay(ray).getRgb(), tracer.traceRay(ray).getRgb(),
+				"TC02: the shadow of a removed geometry");
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.RayTracerBasic#calcColor(geometries.Intersectable.GeoPoint, primitives.Ray)}.
+	 */
+	@Test
+	void testCalcColorFailure() {
+		// a glass sphere whose normal fails once - after the first point of the path
+		// pushed its reflected and refracted rays
+		int[] normals = { 0 };
+		Sphere sphere = new Sphere(new Point(0, 0, -100), 40d) {
+			@Override
+			public Vector getNormal(Point point) {
+				if (++normals[0] == 2)
+					throw new IllegalArgumentException("failed normal");
+				return super.getNormal(point);
+			}
+		};
+		sphere.setEmission(new Color(0, 0, 80)).setMaterial(new Material().setKD(0.2).setKT(0.5).setKR(0.3));
+		Scene scene = new Scene("Failure");
+		scene.background = new Color(30, 60, 90);
+		scene.geometries.add(sphere);
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(50, 100, 0)));
+		RayTracerBasic tracer = new RayTracerBasic(scene);
+		Ray ray = new Ray(Point.ZERO, new Vector(0.1, 0.05, -1));
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a failed path doesn't leave its rays to the next path of the thread
+		assertThrows(IllegalArgumentException.class, () -> tracer.traceRay(ray), "TC01: no failure");
+		Color color = tracer.traceRay(ray);
+		assertEquals(new RayTracerBasic(scene).traceRay(ray).getRgb(), color.getRgb(), "TC01: wrong color");
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.RayTracerBasic#setBranching(renderer.RayTracerBasic.BRANCHING_TYPE)}.
+	 */
+	@Test
+	void testSetBranching() {
+		Scene scene = new Scene("Glass");
+		scene.background = new Color(30, 60, 90);
+		scene.setAmbientLight(new AmbientLight(new Color(20, 20, 20), 0.1));
+		Material glass = new Material().setKD(0.2).setKS(0.2).setNShininess(20).setKT(0.5).setKR(0.3);
+		scene.geometries.add(
+				new Sphere(new Point(0, 0, -100), 40d).setEmission(new Color(0, 0, 80)).setMaterial(glass),
+				new Sphere(new Point(30, 10, -200), 50d).setEmission(new Color(80, 0, 0)).setMaterial(glass),
+				new Plane(new Point(0, 0, -400), new Vector(0, 0, 1)).setEmission(new Color(20, 40, 20))
+						.setMaterial(new Material().setKD(0.5).setKR(0.4)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(50, 100, 0)).setKL(0.001));
+		Ray ray = new Ray(Point.ZERO, new Vector(0.1, 0.05, -1));
+		Color full = new RayTracerBasic(scene).traceRay(ray);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the Russian roulette has the color of the full tree on average
+		RayTracerBasic roulette = new RayTracerBasic(scene).setBranching(BRANCHING_TYPE.RUSSIAN_ROULETTE);
+		RandomSequence random = RandomSequence.current();
+		MutableDouble3 sum = new MutableDouble3();
+		int samples = 20000;
+		for (int sample = 0; sample < samples; ++sample) {
+			random.start(11, sample);
+			sum.add(roulette.traceRay(ray));
+		}
+		Double3 average = sum.scale(1.0 / samples).toDouble3();
+		Double3 expected = full.getRgb();
+		assertEquals(expected.d1, average.d1, expected.d1 * 0.03, "TC01: wrong red on average");
+		assertEquals(expected.d2, average.d2, expected.d2 * 0.03, "TC01: wrong green on average");
+		assertEquals(expected.d3, average.d3, expected.d3 * 0.03, "TC01: wrong blue on average");
+
+		// TC02: the Russian roulette is deterministic by the random sequence
+		random.start(5, 2);
+		Color first = roulette.traceRay(ray);
+		random.start(5, 2);
+		assertEquals(first.getRgb(), roulette.traceRay(ray).getRgb(), "TC02: the path is not deterministic");
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.RayTracerBasic#traceRays(primitives.Ray[], long[], int[], primitives.Color[])}.
+	 */
+	@Test
+	void testTraceRays() {
+		Scene scene = new Scene("Glass");
+		Material glass = new Material().setKD(0.2).setKT(0.5).setKR(0.3);
+		scene.geometries.add(
+				new Sphere(new Point(0, 0, -100), 40d).setEmission(new Color(0, 0, 80)).setMaterial(glass),
+				new Plane(new Point(0, 0, -400), new Vector(0, 0, 1)).setEmission(new Color(20, 40, 20))
+						.setMaterial(new Material().setKD(0.5).setKR(0.4)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point(50, 100, 0)).setKL(0.001));
+		RayTracerBasic tracer = new RayTracerBasic(scene).setBranching(BRANCHING_TYPE.RUSSIAN_ROULETTE);
+		Ray[] rays = new Ray[16];
+		long[] pixels = new long[rays.length];
+		int[] samples = new int[rays.length];
+		for (int i = 0; i < rays.length; ++i) {
+			rays[i] = new Ray(Point.ZERO, new Vector(0.01 * i, 0.02, -1));
+			pixels[i] = 100 + i % 4;
+			samples[i] = i / 4;
+		}
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: every ray is traced as the sample of its own key, as it is traced alone
+		Color[] colors = new Color[rays.length];
+		tracer.traceRays(rays, pixels, samples, colors);
+		RandomSequence random = RandomSequence.current();
+		for (int i = 0; i < rays.length; ++i) {
+			random.start(pixels[i], samples[i]);
+			assertEquals(tracer.traceRay(rays[i]).getRgb(), colors[i].getRgb(), "TC01: wrong color of ray " + i);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package unittests.renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.*;
+import lighting.*;
+import primitives.*;
+import renderer.*;
+import renderer.Camera.SUPERSAMPLING_TYPE;
+import renderer.StreamingImageWriter.Format;
+import scene.Scene;
+
+/**
+ * Unit tests for {@link renderer.StreamingImageWriter}
+ * 
+ * @author elana
+ */
+class StreamingImageWriterTests {
+	private static final Path FOLDER = Path.of(System.getProperty("user.dir"), "images");
+
+	private static final int NX = 40;
+	private static final int NY = 37;
+
+	/**
+	 * Color of a pixel of the test image
+	 * 
+	 * @param col column of the pixel
+	 * @param row row of the pixel
+	 * @return the color
+	 */
+	private static Color color(int col, int row) {
+		return new Color(col * 6, row * 7, (col * row) % 300);
+	}
+
+	/**
+	 * Write the test image from its bottom row to its top row, so the bands are
+	 * finished in reverse order
+	 * 
+	 * @param writer the writer
+	 */
+	private static void writeBottomUp(ImageWriter writer) {
+		for (int row = NY - 1; row >= 0; --row)
+			for (int col = 0; col < NX; ++col)
+				writer.writePixel(col, row, color(col, row));
+		writer.writeToImage();
+	}
+
+	/**
+	 * Test method for {@link renderer.StreamingImageWriter#writeToImage()} with a
+	 * PNG file.
+	 * 
+	 * @throws IOException if the image can't be read
+	 */
+	@Test
+	void testWritePng() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: image with a partial last band, bands finished in reverse order
+		writeBottomUp(new StreamingImageWriter("streamingPng", NX, NY, Format.PNG));
+		BufferedImage image = ImageIO.read(FOLDER.resolve("streamingPng.png").toFile());
+		assertEquals(NX, image.getWidth(), "TC01: wrong width");
+		assertEquals(NY, image.getHeight(), "TC01: wrong height");
+		for (int row = 0; row < NY; ++row)
+			for (int col = 0; col < NX; ++col)
+				assertEquals(color(col, row).getRGB(), image.getRGB(col, row),
+						"TC01: wrong pixel (" + col + ", " + row + ")");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: pixels that were not written are black
+		ImageWriter writer = new StreamingImageWriter("streamingPngEmpty", NX, NY, Format.PNG);
+		writer.writePixel(3, 20, color(3, 20));
+		writer.writeToImage();
+		image = ImageIO.read(FOLDER.resolve("streamingPngEmpty.png").toFile());
+		assertEquals(color(3, 20).getRGB(), image.getRGB(3, 20), "TC11: wrong written pixel");
+		assertEquals(0xFF000000, image.getRGB(4, 20), "TC11: pixel that was not written");
+	}
+
+	/**
+	 * Test method for {@link renderer.StreamingImageWriter#writeToImage()} with a
+	 * PPM file.
+	 * 
+	 * @throws IOException if the image can't be read
+	 */
+	@Test
+	void testWritePpm() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: image with a partial last band, bands finished in reverse order
+		writeBottomUp(new StreamingImageWriter("streamingPpm", NX, NY, Format.PPM));
+		byte[] bytes = Files.readAllBytes(FOLDER.resolve("streamingPpm.ppm"));
+		byte[] header = ("P6\n" + NX + " " + NY + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+		assertEquals(header.length + NX * NY * 3, bytes.length, "TC01: wrong file size");
+		for (int row = 0; row < NY; ++row)
+			for (int col = 0; col < NX; ++col) {
+				int offset = header.length + (row * NX + col) * 3;
+				int rgb = 0xFF000000 | (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8
+						| (bytes[offset + 2] & 0xFF);
+				assertEquals(color(col, row).getRGB(), rgb, "TC01: wrong pixel (" + col + ", " + row + ")");
+			}
+
+		// =============== Boundary Values Tests ==================
+		// TC11: pixel written into rows that were already flushed
+		ImageWriter writer = new StreamingImageWriter("streamingPpmTwice", NX, NY, Format.PPM);
+		for (int row = 0; row < 16; ++row)
+			for (int col = 0; col < NX; ++col)
+				writer.writePixel(col, row, color(col, row));
+		assertThrows(IllegalStateException.class, () -> writer.writePixel(0, 0, Color.BLACK),
+				"TC11: pixel written after its rows were flushed");
+		writer.writeToImage();
+
+		// TC12: pixel written twice - its band isn't flushed before the other pixels
+		ImageWriter twice = new StreamingImageWriter("streamingPpmDouble", NX, NY, Format.PPM);
+		for (int col = 0; col < NX; ++col)
+			twice.writePixel(col, 0, color(col, 0));
+		assertThrows(IllegalStateException.class, () -> twice.writePixel(5, 0, Color.BLACK),
+				"TC12: pixel written twice");
+		for (int row = 1; row < 16; ++row)
+			for (int col = 0; col < NX; ++col)
+				twice.writePixel(col, row, color(col, row));
+		twice.writeToImage();
+		bytes = Files.readAllBytes(FOLDER.resolve("streamingPpmDouble.ppm"));
+		int offset = header.length + 5 * 3;
+		assertEquals(color(5, 0).getRGB(),
+				0xFF000000 | (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF),
+				"TC12: the first write of the pixel was lost");
+	}
+
+	/**
+	 * Test method for {@link renderer.Camera#renderImage()} - a streamed render
+	 * must be the same as a render in memory.
+	 * 
+	 * @throws IOException if the images can't be read
+	 */
+	@Test
+	void testRenderImage() throws IOException {
+		Scene scene = new Scene("Test scene");
+		scene.geometries.add( //
+				new Sphere(new Point(0, 0, -200), 60) //
+						.setEmission(new Color(java.awt.Color.BLUE)) //
+						.setMaterial(new Material().setKD(0.5).setKS(0.5).setNShininess(30)), //
+				new Triangle(new Point(-70, -40, 0), new Point(-40, -70, 0), new Point(-68, -68, -4)) //
+						.setEmission(new Color(java.awt.Color.BLUE)) //
+						.setMaterial(new Material().setKD(0.5).setKS(0.5).setNShininess(30)));
+		scene.lights.add(new SpotLight(new Color(400, 240, 0), new Point(-100, -100, 200), new Vector(1, 1, -3)) //
+				.setKL(1E-5).setKQ(1.5E-7));
+		Camera camera = new Camera(new Point(0, 0, 1000), new Vector(0, 0, -1), new Vector(0, 1, 0)) //
+				.setViewPlaneSize(200, 200).setViewPlaneDistance(1000) //
+				.setRayTracer(new RayTracerBasic(scene)).setSupersampling(SUPERSAMPLING_TYPE.NONE) //
+				.setMultithreading(2);
+
+		camera.setImageWriter(new ImageWriter("streamingRenderMemory", 150, 100)).renderImage().writeToImage();
+		camera.setImageWriter(new StreamingImageWriter("streamingRender", 150, 100, Format.PNG)).renderImage()
+				.writeToImage();
+		BufferedImage expected = ImageIO.read(new File(FOLDER.toFile(), "streamingRenderMemory.png"));
+		BufferedImage actual = ImageIO.read(new File(FOLDER.toFile(), "streamingRender.png"));
+		for (int row = 0; row < 100; ++row)
+			for (int col = 0; col < 150; ++col)
+				assertEquals(expected.getRGB(col, row), actual.getRGB(col, row),
+						"wrong pixel (" + col + ", " + row + ")");
+	}
+}
@@ -0,0 +1,45 @@
+package unittests.renderer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import primitives.Color;
+import renderer.ToneMapping;
+
+/**
+ * Unit tests for {@link renderer.ToneMapping}
+ * 
+ * @author elana
+ */
+class ToneMappingTests {
+	/**
+	 * Test method for
+	 * {@link renderer.ToneMapping#toRGB(double, double, double, double)}.
+	 */
+	@Test
+	void testToRGB() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: clamping is the conversion of Color
+		Color color = new Color(12.7, 200.2, 1000);
+		assertEquals(color.getColor().getRGB(), ToneMapping.CLAMP.toRGB(12.7, 200.2, 1000, 1),
+				"TC01: wrong clamped color");
+		// TC02: exposure scales the radiance
+		assertEquals(new Color(25.4, 255, 255).getRGB(), ToneMapping.CLAMP.toRGB(12.7, 200.2, 1000, 2),
+				"TC02: wrong exposed color");
+		// TC03: Reinhard keeps the highlights apart
+		int bright = ToneMapping.REINHARD.toRGB(1000, 1000, 1000, 1) & 0xFF;
+		int brighter = ToneMapping.REINHARD.toRGB(2000, 2000, 2000, 1) & 0xFF;
+		assertTrue(bright < brighter && brighter < 255, "TC03: Reinhard highlights are not compressed");
+		// TC04: ACES maps white into the displayable range
+		int white = ToneMapping.ACES.toRGB(255, 255, 255, 1) & 0xFF;
+		assertTrue(white > 128 && white < 255, "TC04: wrong ACES white");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: black stays black
+		for (ToneMapping toneMapping : new ToneMapping[] { ToneMapping.CLAMP, ToneMapping.REINHARD, ToneMapping.ACES })
+			assertEquals(0xFF000000, toneMapping.toRGB(0, 0, 0, 1), "TC11: black is not black");
+		// TC12: very bright radiance is displayed as white by ACES
+		assertEquals(0xFFFFFFFF, ToneMapping.ACES.toRGB(1e6, 1e6, 1e6, 1), "TC12: ACES out of range");
+	}
+}
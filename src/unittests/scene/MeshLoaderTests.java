@@ -0,0 +1,197 @@
+package unittests.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import geometries.TriangleMesh;
+import primitives.*;
+import scene.MeshLoader;
+
+/**
+ * Unit tests for {@link scene.MeshLoader}
+ * 
+ * @author elana
+ */
+class MeshLoaderTests {
+	@TempDir
+	Path folder;
+
+	/**
+	 * Ray through the point (0.75, 0.25, 0) from above (off the diagonal of the
+	 * square, which is an edge of both its faces)
+	 */
+	private final Ray down = new Ray(new Point(0.75, 0.25, 1), new Vector(0, 0, -1));
+
+	/**
+	 * Ray through the point (-0.5, -0.5, 0) from above
+	 */
+	private final Ray downOutside = new Ray(new Point(-0.5, -0.5, 1), new Vector(0, 0, -1));
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadObj(java.nio.file.Path)}.
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	@Test
+	void testLoadObj() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: unit square quad in the plane z = 0, with comments, normals and
+		// texture coordinates, relative indices and exponents
+		Path path = folder.resolve("square.obj");
+		Files.writeString(path, """
+				# square
+				mtllib square.mtl
+				o square
+				v 0 0 0
+				v 1.0 0.0 0.0
+				v\t1e0 1 -0.0
+				vt 0 0
+				vn 0 0 1
+				v 0.000 100e-2 0
+				usemtl red
+				f -4/1/1 -3/1/1 -2/1/1 -1/1/1
+				""");
+		TriangleMesh mesh = MeshLoader.loadObj(path);
+		assertEquals(2, mesh.getFaceCount(), "TC01: wrong amount of faces");
+		assertEquals(List.of(new Point(0.75, 0.25, 0)), mesh.findIntersections(down), "TC01: wrong intersection");
+		assertNull(mesh.findIntersections(downOutside), "TC01: intersection outside the mesh");
+
+		// TC02: triangles with absolute indices, Windows line ends and no final line
+		// end
+		path = folder.resolve("triangles.obj");
+		Files.writeString(path, "v 0 0 0\r\nv 1 0 0\r\nv 1 1 0\r\nv 0 1 0\r\nf 1//1 2//1 3//1\r\nf 1 3 4");
+		mesh = MeshLoader.load(path);
+		assertEquals(2, mesh.getFaceCount(), "TC02: wrong amount of faces");
+		assertEquals(List.of(new Point(0.75, 0.25, 0)), mesh.findIntersections(down), "TC02: wrong intersection");
+
+		// TC03: malformed number
+		Path malformed = folder.resolve("malformed.obj");
+		Files.writeString(malformed, "v 0 0 x\nv 1 0 0\nv 1 1 0\nf 1 2 3\n");
+		assertThrows(IOException.class, () -> MeshLoader.loadObj(malformed), "TC03: malformed number");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: face with two vertices
+		Path line = folder.resolve("line.obj");
+		Files.writeString(line, "v 0 0 0\nv 1 0 0\nf 1 2\n");
+		assertThrows(IOException.class, () -> MeshLoader.loadObj(line), "TC11: face with two vertices");
+		// TC12: face of a missing vertex
+		Path missing = folder.resolve("missing.obj");
+		Files.writeString(missing, "v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1 2 4\n");
+		assertThrows(IllegalArgumentException.class, () -> MeshLoader.loadObj(missing), "TC12: missing vertex");
+	}
+
+	/**
+	 * Test method for {@link scene.MeshLoader#loadPly(java.nio.file.Path)}.
+	 * 
+	 * @throws IOException if the file can't be written
+	 */
+	@Test
+	void testLoadPly() throws IOException {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: little endian square with float coordinates, a color per vertex and an
+		// extra element
+		Path path = folder.resolve("square.ply");
+		Files.write(path, plySquare(ByteOrder.LITTLE_ENDIAN));
+		TriangleMesh mesh = MeshLoader.loadPly(path);
+		assertEquals(2, mesh.getFaceCount(), "TC01: wrong amount of faces");
+		assertEquals(List.of(new Point(0.75, 0.25, 0)), mesh.findIntersections(down), "TC01: wrong intersection");
+		assertNull(mesh.findIntersections(downOutside), "TC01: intersection outside the mesh");
+
+		// TC02: big endian square
+		path = folder.resolve("big.ply");
+		Files.write(path, plySquare(ByteOrder.BIG_ENDIAN));
+		mesh = MeshLoader.load(path);
+		assertEquals(2, mesh.getFaceCount(), "TC02: wrong amount of faces");
+		assertEquals(List.of(new Point(0.75, 0.25, 0)), mesh.findIntersections(down), "TC02: wrong intersection");
+
+		// TC03: ASCII PLY file
+		Path ascii = folder.resolve("ascii.ply");
+		Files.writeString(ascii, """
+				ply
+				format ascii 1.0
+				element vertex 3
+				property float x
+				property float y
+				property float z
+				element face 1
+				property list uchar int vertex_indices
+				end_header
+				0 0 0
+				1 0 0
+				1 1 0
+				3 0 1 2
+				""");
+		assertThrows(IOException.class, () -> MeshLoader.loadPly(ascii), "TC03: ASCII file");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: truncated file
+		byte[] bytes = plySquare(ByteOrder.LITTLE_ENDIAN);
+		Path truncated = folder.resolve("truncated.ply");
+		Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 10));
+		assertThrows(IOException.class, () -> MeshLoader.loadPly(truncated), "TC11: truncated file");
+
+		// TC12: malformed element count in the header
+		String text = new String(bytes, StandardCharsets.ISO_8859_1);
+		Path count = folder.resolve("count.ply");
+		Files.write(count,
+				text.replace("element vertex 4", "element vertex four").getBytes(StandardCharsets.ISO_8859_1));
+		IOException e = assertThrows(IOException.class, () -> MeshLoader.loadPly(count), "TC12: malformed count");
+		assertTrue(e.getMessage().contains(count.toString()), "TC12: the error doesn't name the file");
+
+		// TC13: face of a missing vertex
+		ByteBuffer data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		data.putInt(bytes.length - 12, 4);
+		Path missing = folder.resolve("missing.ply");
+		Files.write(missing, bytes);
+		e = assertThrows(IOException.class, () -> MeshLoader.loadPly(missing), "TC13: missing vertex");
+		assertTrue(e.getMessage().contains(missing.toString()), "TC13: the error doesn't name the file");
+	}
+
+	/**
+	 * Build a binary PLY file of the unit square as one quad face
+	 * 
+	 * @param order byte order of the file
+	 * @return the bytes of the file
+	 */
+	private static byte[] plySquare(ByteOrder order) {
+		String header = "ply\n" //
+				+ "format " + (order == ByteOrder.LITTLE_ENDIAN ? "binary_little_endian" : "binary_big_endian")
+				+ " 1.0\n" //
+				+ "comment unit square\n" //
+				+ "element vertex 4\n" //
+				+ "property float x\n" //
+				+ "property float y\n" //
+				+ "property float z\n" //
+				+ "property uchar red\n" //
+				+ "element face 1\n" //
+				+ "property uchar flags\n" //
+				+ "property list uchar int vertex_indices\n" //
+				+ "element edge 1\n" //
+				+ "property int vertex1\n" //
+				+ "property int vertex2\n" //
+				+ "end_header\n";
+		ByteBuffer data = ByteBuffer.allocate(4 * 13 + 2 + 4 * 4 + 8).order(order);
+		float[][] vertices = { { 0, 0, 0 }, { 1, 0, 0 }, { 1, 1, 0 }, { 0, 1, 0 } };
+		for (float[] vertex : vertices) {
+			data.putFloat(vertex[0]).putFloat(vertex[1]).putFloat(vertex[2]).put((byte) 255);
+		}
+		data.put((byte) 0).put((byte) 4).putInt(0).putInt(1).putInt(2).putInt(3);
+		data.putInt(0).putInt(1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+		out.writeBytes(data.array());
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,180 @@
+package unittests.scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import lighting.*;
+import primitives.*;
+import scene.Scene;
+import scene.SceneCache;
+
+/**
+ * Unit tests for {@link scene.SceneCache}
+ * 
+ * @author elana
+ */
+class SceneCacheTests {
+	@TempDir
+	Path folder;
+
+	/**
+	 * Build a scene with every kind of geometry and light
+	 * 
+	 * @return the scene
+	 */
+	private static Scene scene() {
+		Material shiny = new Material().setKD(0.5).setKS(0.5).setNShininess(30);
+		Material glass = new Material().setKT(new Double3(0.6, 0.7, 0.8)).setKR(0.2);
+		Geometries geometries = new Geometries( //
+				new Sphere(new Point(0, 0, -50), 10).setEmission(new Color(100, 20, 20)).setMaterial(glass),
+				new Plane(new Point(0, -20, 0), new Vector(0, 1, 0)).setMaterial(shiny),
+				new Triangle(new Point(-30, 0, -60), new Point(-10, 0, -60), new Point(-20, 20, -60))
+						.setEmission(new Color(0, 50, 0)).setMaterial(shiny),
+				new Polygon(new Point(10, 0, -70), new Point(30, 0, -70), new Point(30, 20, -70),
+						new Point(10, 20, -70)).setMaterial(shiny),
+				new Tube(new Ray(new Point(-40, 0, -80), new Vector(0, 1, 0)), 3).setMaterial(glass),
+				new Cylinder(4, new Ray(new Point(40, -10, -80), new Vector(0, 1, 0)), 15),
+				new TriangleMesh(new double[] { -10, 25, -40, 10, 25, -40, 10, 45, -40, -10, 45, -40 },
+						new int[] { 0, 1, 2, 0, 2, 3 }).setEmission(new Color(10, 10, 60)).setMaterial(glass));
+		return new Scene("cache test") //
+				.setBackground(new Color(10, 20, 30)) //
+				.setAmbientLight(new AmbientLight(new Color(255, 255, 255), 0.1)) //
+				.setGeometries(geometries.buildBVH()) //
+				.setLights(new LinkedList<>(List.of( //
+						new DirectionalLight(new Color(50, 50, 50), new Vector(1, -1, -1)),
+						new PointLight(new Color(400, 300, 200), new Point(0, 50, 0)).setKL(0.001).setKQ(0.0002),
+						new SpotLight(new Color(300, 300, 300), new Point(20, 50, -20), new Vector(0, -1, -1))
+								.setNarrowBeam(10).setKL(0.0005))));
+	}
+
+	/**
+	 * Test method for {@link scene.SceneCache#load(java.nio.file.Path)} - a loaded
+	 * scene must be the same as the saved one.
+	 * 
+	 * @throws IOException if the cache can't be written or read
+	 */
+	@Test
+	void testSaveLoad() throws IOException {
+		Scene expected = scene();
+		Path path = folder.resolve("scene.cache");
+		SceneCache.save(expected, path);
+		Scene actual = SceneCache.load(path);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: scene properties
+		assertEquals(expected.name1, actual.name1, "TC01: wrong name");
+		assertEquals(expected.background.getRgb(), actual.background.getRgb(), "TC01: wrong background");
+		assertEquals(expected.ambientLight.getIntensity().getRgb(), actual.ambientLight.getIntensity().getRgb(),
+				"TC01: wrong ambient light");
+
+		// TC02: lights
+		assertEquals(expected.lights.size(), actual.lights.size(), "TC02: wrong amount of lights");
+		Point p = new Point(5, 0, -45);
+		for (int i = 0; i < expected.lights.size(); ++i) {
+			LightSource e = expected.lights.get(i), a = actual.lights.get(i);
+			assertEquals(e.getClass(), a.getClass(), "TC02: wrong light type");
+			assertEquals(e.getIntensity(p).getRgb(), a.getIntensity(p).getRgb(), "TC02: wrong light intensity");
+			assertEquals(e.getL(p), a.getL(p), "TC02: wrong light direction");
+		}
+
+		// TC03: geometries - same closest intersections, normals, emission and
+		// materials for random rays
+		Random random = new Random(3);
+		Point origin = new Point(0, 5, 50);
+		for (int i = 0; i < 2000; ++i) {
+			Ray ray = new Ray(origin, new Point(random.nextDouble() * 120 - 60, random.nextDouble() * 80 - 30, -60)
+					.subtract(origin));
+			GeoPoint e = expected.geometries.findClosestGeoIntersection(ray);
+			GeoPoint a = actual.geometries.findClosestGeoIntersection(ray);
+			if (e == null) {
+				assertNull(a, "TC03: intersection where the saved scene has none");
+				continue;
+			}
+			assertNotNull(a, "TC03: no intersection where the saved scene has one");
+			assertEquals(e.point, a.point, "TC03: wrong intersection");
+			assertEquals(e.geometry.getClass(), a.geometry.getClass(), "TC03: wrong geometry type");
+			assertEquals(e.getNormal(), a.getNormal(), "TC03: wrong normal");
+			assertEquals(e.geometry.getEmission().getRgb(), a.geometry.getEmission().getRgb(), "TC03: wrong emission");
+			Material em = e.geometry.getMaterial(), am = a.geometry.getMaterial();
+			assertEquals(List.of(em.kD, em.kS, em.kT, em.kR), List.of(am.kD, am.kS, am.kT, am.kR),
+					"TC03: wrong material");
+			assertEquals(em.nShininess, am.nShininess, "TC03: wrong shininess");
+		}
+
+		// TC04: a material shared by geometries is loaded once
+		List<Intersectable> top = actual.geometries.getGeometries();
+		Plane plane = (Plane) top.stream().filter(g -> g instanceof Plane).findFirst().orElseThrow();
+		GeoPoint triangle = actual.geometries
+				.findClosestGeoIntersection(new Ray(new Point(-20, 5, 0), new Vector(0, 0, -1)));
+		assertSame(plane.getMaterial(), triangle.geometry.getMaterial(), "TC04: shared material loaded twice");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: empty scene
+		Scene empty = new Scene("empty").setAmbientLight(new AmbientLight(Color.BLACK, 0))
+				.setGeometries(new Geometries());
+		SceneCache.save(empty, path);
+		Scene loaded = SceneCache.load(path);
+		assertTrue(loaded.lights.isEmpty(), "TC11: lights in an empty scene");
+		assertTrue(loaded.geometries.getGeometries().isEmpty(), "TC11: geometries in an empty scene");
+	}
+
+	/**
+	 * Test method for {@link scene.SceneCache#load(java.nio.file.Path)} with
+	 * invalid files.
+	 * 
+	 * @throws IOException if the cache can't be written
+	 */
+	@Test
+	void testLoadInvalid() throws IOException {
+		Path path = folder.resolve("scene.cache");
+		SceneCache.save(scene(), path);
+		byte[] bytes = Files.readAllBytes(path);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: not a cache file
+		Path other = folder.resolve("other.cache");
+		Files.writeString(other, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\n");
+		assertThrows(IOException.class, () -> SceneCache.load(other), "TC01: not a cache file");
+
+		// TC02: cache of another version
+		Path version = folder.resolve("version.cache");
+		byte[] versionBytes = bytes.clone();
+		versionBytes[7] = (byte) (SceneCache.VERSION + 1);
+		Files.write(version, versionBytes);
+		assertThrows(IOException.class, () -> SceneCache.load(version), "TC02: another version");
+
+		// =============== Boundary Values Tests ==================
+		// TC11: truncated file
+		Path truncated = folder.resolve("truncated.cache");
+		Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 10));
+		assertThrows(IOException.class, () -> SceneCache.load(truncated), "TC11: truncated file");
+
+		// TC12: negative and too large amounts of materials - the amount follows the
+		// magic number, the version, the name, the background, the ambient light and
+		// the amount of lights of a scene without lights
+		Scene dark = new Scene("dark").setAmbientLight(new AmbientLight(Color.BLACK, 0))
+				.setGeometries(new Geometries(new Sphere(new Point(0, 0, -50), 10)));
+		SceneCache.save(dark, path);
+		bytes = Files.readAllBytes(path);
+		int materialsAt = 4 + 4 + 4 + "dark".length() + 3 * 8 + 3 * 8 + 4;
+		assertEquals(1, ByteBuffer.wrap(bytes).getInt(materialsAt), "TC12: wrong position of the materials");
+		for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+			Path corrupt = folder.resolve("count.cache");
+			Files.write(corrupt, ByteBuffer.wrap(bytes.clone()).putInt(materialsAt, count).array());
+			assertThrows(IOException.class, () -> SceneCache.load(corrupt), "TC12: wrong amount " + count);
+		}
+	}
+}